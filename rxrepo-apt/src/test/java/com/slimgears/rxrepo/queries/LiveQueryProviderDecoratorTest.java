@@ -0,0 +1,132 @@
+package com.slimgears.rxrepo.queries;
+
+import com.google.common.collect.ImmutableSet;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LiveQueryProviderDecoratorTest {
+    @Mock(answer = Answers.RETURNS_MOCKS) private QueryProvider mockQueryProvider;
+    private final PublishSubject<Notification<TestEntity>> notificationSubject = PublishSubject.create();
+    private QueryProvider queryProvider;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mockQueryProvider.<TestKey, TestEntity, TestEntity>liveQuery(any())).thenReturn(notificationSubject);
+        queryProvider = LiveQueryProviderDecorator.create(Duration.ofMillis(100), Duration.ofMillis(10)).apply(mockQueryProvider);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLiveQueriesShareUpstreamWithReferencedProperties() {
+        TestObserver<Notification<TestEntity>> entity1Tester = liveQuery(TestEntity.$.text.eq(TestEntities.textEntity1)).test();
+        TestObserver<Notification<TestEntity>> entity2Tester = liveQuery(TestEntity.$.text.eq("Entity 2")).test();
+
+        ArgumentCaptor<QueryInfo<TestKey, TestEntity, TestEntity>> queryCaptor = ArgumentCaptor.forClass(QueryInfo.class);
+        verify(mockQueryProvider, times(1)).liveQuery(queryCaptor.capture());
+        Assert.assertTrue(queryCaptor.getValue().properties().contains(TestEntity.$.text));
+
+        entity1Tester.dispose();
+        entity2Tester.dispose();
+    }
+
+    @Test
+    public void testNotificationFanOut() {
+        TestObserver<Notification<TestEntity>> routedTester = liveQuery(TestEntity.$.text.eq(TestEntities.textEntity1)).test();
+        TestObserver<Notification<TestEntity>> unroutedTester = liveQuery(TestEntity.$.text.contains("Entity")).test();
+
+        notificationSubject.onNext(Notification.ofCreated(TestEntities.testEntity1, 1L));
+
+        routedTester.assertValueCount(1).assertNoErrors();
+        unroutedTester.assertValueCount(1).assertNoErrors();
+    }
+
+    @Test
+    public void testNotificationFiltering() {
+        TestObserver<Notification<TestEntity>> entity1Tester = liveQuery(TestEntity.$.text.eq(TestEntities.textEntity1)).test();
+        TestObserver<Notification<TestEntity>> entity2Tester = liveQuery(TestEntity.$.text.in(TestEntities.textEntity1, "Entity 2")).test();
+        TestObserver<Notification<TestEntity>> entity3Tester = liveQuery(TestEntity.$.text.eq("Entity 3")).test();
+
+        notificationSubject.onNext(Notification.ofCreated(TestEntities.testEntity2, 1L));
+
+        entity1Tester.assertNoValues();
+        entity2Tester.assertValueCount(1).assertValueAt(0, n -> n.newValue().text().equals("Entity 2"));
+        entity3Tester.assertNoValues();
+    }
+
+    @Test
+    public void testUnsubscribeReleasesUpstream() {
+        TestObserver<Notification<TestEntity>> entity1Tester = liveQuery(TestEntity.$.text.eq(TestEntities.textEntity1)).test();
+        TestObserver<Notification<TestEntity>> unroutedTester = liveQuery(TestEntity.$.text.contains("Entity")).test();
+        Assert.assertTrue(notificationSubject.hasObservers());
+
+        entity1Tester.dispose();
+        Assert.assertTrue(notificationSubject.hasObservers());
+        notificationSubject.onNext(Notification.ofCreated(TestEntities.testEntity1, 1L));
+        entity1Tester.assertNoValues();
+        unroutedTester.assertValueCount(1);
+
+        unroutedTester.dispose();
+        Assert.assertFalse(notificationSubject.hasObservers());
+
+        TestObserver<Notification<TestEntity>> resubscribedTester = liveQuery(TestEntity.$.text.eq(TestEntities.textEntity1)).test();
+        Assert.assertTrue(notificationSubject.hasObservers());
+        notificationSubject.onNext(Notification.ofCreated(TestEntities.testEntity1, 2L));
+        resubscribedTester.assertValueCount(1);
+    }
+
+    @Test
+    public void testReferencedNotificationsKeepOriginalSequenceNumbers() {
+        PublishSubject<Notification<TestRefEntity>> refNotificationSubject = PublishSubject.create();
+        when(mockQueryProvider.<Integer, TestRefEntity, TestRefEntity>liveQuery(argThat(q -> q != null && q.metaClass() == TestRefEntity.metaClass)))
+                .thenReturn(refNotificationSubject);
+        when(mockQueryProvider.<TestKey, TestEntity, TestEntity>query(any()))
+                .thenAnswer(invocation -> Observable.just(Notification.ofCreated(TestEntities.testEntity1, 1L)));
+
+        TestObserver<Notification<TestEntity>> tester = queryProvider.liveQuery(QueryInfo.<TestKey, TestEntity, TestEntity>builder()
+                .metaClass(TestEntity.metaClass)
+                .properties(ImmutableSet.of(TestEntity.$.refEntity.text))
+                .build())
+                .test();
+
+        TestRefEntity refEntity = TestEntities.testEntity1.refEntity();
+        TestRefEntity refEntityModified1 = refEntity.toBuilder().text("Description 1a").build();
+        TestRefEntity refEntityModified2 = refEntity.toBuilder().text("Description 1b").build();
+        refNotificationSubject.onNext(Notification.create(refEntity, refEntityModified1, 5L));
+        refNotificationSubject.onNext(Notification.create(refEntityModified1, refEntityModified2, 7L));
+
+        tester.awaitCount(2)
+                .assertNoErrors()
+                .assertValueCount(2)
+                .assertValueAt(0, n -> n.sequenceNumber() == 5L && n.newValue().refEntity().text().equals("Description 1a"))
+                .assertValueAt(1, n -> n.sequenceNumber() == 7L && n.newValue().refEntity().text().equals("Description 1b"));
+    }
+
+    private Observable<Notification<TestEntity>> liveQuery(ObjectExpression<TestEntity, Boolean> predicate) {
+        return queryProvider.liveQuery(QueryInfo.<TestKey, TestEntity, TestEntity>builder()
+                .metaClass(TestEntity.metaClass)
+                .predicate(predicate)
+                .build());
+    }
+}
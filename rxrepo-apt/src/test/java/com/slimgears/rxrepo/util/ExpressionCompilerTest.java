@@ -0,0 +1,80 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.QueryParameter;
+import com.slimgears.rxrepo.queries.TestEntity;
+import com.slimgears.rxrepo.queries.TestKey;
+import com.slimgears.rxrepo.queries.TestRefEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class ExpressionCompilerTest {
+    private final TestEntity testEntity = TestEntity.builder()
+            .key(TestKey.create("Key 1"))
+            .number(3)
+            .text("Entity 1")
+            .refEntity(TestRefEntity.builder().id(10).text("Description 1").build())
+            .refEntities(Collections.emptyList())
+            .build();
+
+    @Test
+    public void testExpressionsWithDifferentConstantsShareCacheEntry() {
+        Function<TestEntity, Boolean> lessThan5 = Expressions.compile(TestEntity.$.number.lessThan(5).and(TestEntity.$.text.eq("Entity 1")));
+        long cacheSize = ExpressionCompiler.cacheSize();
+        Function<TestEntity, Boolean> lessThan2 = Expressions.compile(TestEntity.$.number.lessThan(2).and(TestEntity.$.text.eq("Entity 1")));
+        Function<TestEntity, Boolean> otherText = Expressions.compile(TestEntity.$.number.lessThan(5).and(TestEntity.$.text.eq("Entity 2")));
+        Assert.assertEquals(cacheSize, ExpressionCompiler.cacheSize());
+
+        Assert.assertTrue(lessThan5.apply(testEntity));
+        Assert.assertFalse(lessThan2.apply(testEntity));
+        Assert.assertFalse(otherText.apply(testEntity));
+    }
+
+    @Test
+    public void testConstantCollectionsAreNotRetainedByCache() {
+        Expressions.compile(TestEntity.$.number.in(Collections.singletonList(0)));
+        long cacheSize = ExpressionCompiler.cacheSize();
+        for (int i = 0; i < 100; ++i) {
+            ObjectExpression<TestEntity, Boolean> exp = TestEntity.$.number.in(IntStream.range(i, i + 10).boxed().collect(Collectors.toList()));
+            Assert.assertEquals(i <= 3 && i + 10 > 3, Expressions.compile(exp).apply(testEntity));
+        }
+        Assert.assertEquals(cacheSize, ExpressionCompiler.cacheSize());
+    }
+
+    @Test
+    public void testConstantTypeIsPartOfShape() {
+        Function<TestEntity, Boolean> longComparison = Expressions.compile(TestEntity.$.refEntity.id.greaterThan(5));
+        Function<TestEntity, Boolean> stringComparison = Expressions.compile(TestEntity.$.text.greaterThan("Entity 0"));
+        Function<TestEntity, Boolean> stringInComparison = Expressions.compile(TestEntity.$.text.in(Arrays.asList("Entity 0", "Entity 1")));
+        Assert.assertTrue(longComparison.apply(testEntity));
+        Assert.assertTrue(stringComparison.apply(testEntity));
+        Assert.assertTrue(stringInComparison.apply(testEntity));
+    }
+
+    @Test
+    public void testQueryParametersAreBoundToArguments() {
+        ObjectExpression<TestEntity, Boolean> predicate = TestEntity.$.number.lessThan(QueryParameter.of(0))
+                .and(TestEntity.$.text.eq(QueryParameter.of(1)));
+        Function<TestEntity, Boolean> matching = Expressions.compile(predicate, Arrays.<Object>asList(5, "Entity 1"));
+        long cacheSize = ExpressionCompiler.cacheSize();
+        Function<TestEntity, Boolean> notMatching = Expressions.compile(predicate, Arrays.<Object>asList(2, "Entity 1"));
+        Function<TestEntity, Boolean> constantPredicate = Expressions.compile(TestEntity.$.number.lessThan(2).and(TestEntity.$.text.eq("Entity 1")));
+        Assert.assertEquals(cacheSize, ExpressionCompiler.cacheSize());
+
+        Assert.assertTrue(matching.apply(testEntity));
+        Assert.assertFalse(notMatching.apply(testEntity));
+        Assert.assertFalse(constantPredicate.apply(testEntity));
+    }
+
+    @Test
+    public void testConstantFreeExpressionIsCompiledOnce() {
+        Assert.assertSame(Expressions.compile(TestEntity.$.refEntity.text), Expressions.compile(TestEntity.$.refEntity.text));
+        Assert.assertEquals("Description 1", Expressions.compile(TestEntity.$.refEntity.text).apply(testEntity));
+    }
+}
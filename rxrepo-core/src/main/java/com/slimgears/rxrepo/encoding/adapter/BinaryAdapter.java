@@ -0,0 +1,258 @@
+package com.slimgears.rxrepo.encoding.adapter;
+
+import com.slimgears.rxrepo.encoding.MetaElementType;
+import com.slimgears.rxrepo.encoding.MetaReader;
+import com.slimgears.rxrepo.encoding.MetaWriter;
+import com.slimgears.util.generic.MoreStrings;
+import com.slimgears.util.stream.Safe;
+
+import java.io.DataOutput;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+public class BinaryAdapter {
+    private final static MetaElementType[] elementTypes = MetaElementType.values();
+
+    public static MetaWriter writer(DataOutput output) {
+        return new MetaWriter() {
+            @Override
+            public MetaWriter writeBeginObject() {
+                return writeElement(MetaElementType.BeginObject);
+            }
+
+            @Override
+            public MetaWriter writeEndObject() {
+                return writeElement(MetaElementType.EndObject);
+            }
+
+            @Override
+            public MetaWriter writeBeginArray() {
+                return writeElement(MetaElementType.BeginArray);
+            }
+
+            @Override
+            public MetaWriter writeEndArray() {
+                return writeElement(MetaElementType.EndArray);
+            }
+
+            @Override
+            public MetaWriter writeName(String name) {
+                return writeElement(MetaElementType.Name, o -> writeUtf8(o, name));
+            }
+
+            @Override
+            public MetaWriter writeLong(long value) {
+                return writeElement(MetaElementType.Long, o -> o.writeLong(value));
+            }
+
+            @Override
+            public MetaWriter writeInt(int value) {
+                return writeElement(MetaElementType.Integer, o -> o.writeInt(value));
+            }
+
+            @Override
+            public MetaWriter writeShort(short value) {
+                return writeElement(MetaElementType.Short, o -> o.writeShort(value));
+            }
+
+            @Override
+            public MetaWriter writeFloat(float value) {
+                return writeElement(MetaElementType.Float, o -> o.writeFloat(value));
+            }
+
+            @Override
+            public MetaWriter writeDouble(double value) {
+                return writeElement(MetaElementType.Double, o -> o.writeDouble(value));
+            }
+
+            @Override
+            public MetaWriter writeBoolean(boolean value) {
+                return writeElement(MetaElementType.Boolean, o -> o.writeBoolean(value));
+            }
+
+            @Override
+            public MetaWriter writeString(String value) {
+                return value != null
+                        ? writeElement(MetaElementType.String, o -> writeUtf8(o, value))
+                        : writeNull();
+            }
+
+            @Override
+            public MetaWriter writeNull() {
+                return writeElement(MetaElementType.Null);
+            }
+
+            @Override
+            public MetaWriter writeBytes(byte[] bytes) {
+                return bytes != null
+                        ? writeElement(MetaElementType.Binary, o -> {
+                            o.writeInt(bytes.length);
+                            o.write(bytes);
+                        })
+                        : writeNull();
+            }
+
+            private MetaWriter writeElement(MetaElementType type) {
+                return writeElement(type, o -> {});
+            }
+
+            private MetaWriter writeElement(MetaElementType type, Safe.UnsafeConsumer<DataOutput> invocation) {
+                try {
+                    output.writeByte(type.ordinal());
+                    invocation.accept(output);
+                    return this;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    public static MetaReader reader(ByteBuffer buffer) {
+        return new MetaReader() {
+            @Override
+            public MetaElementType currentElement() {
+                return buffer.hasRemaining()
+                        ? elementTypes[buffer.get(buffer.position())]
+                        : MetaElementType.End;
+            }
+
+            @Override
+            public void readBeginObject() {
+                readElement(MetaElementType.BeginObject);
+            }
+
+            @Override
+            public void readEndObject() {
+                readElement(MetaElementType.EndObject);
+            }
+
+            @Override
+            public void readBeginArray() {
+                readElement(MetaElementType.BeginArray);
+            }
+
+            @Override
+            public void readEndArray() {
+                readElement(MetaElementType.EndArray);
+            }
+
+            @Override
+            public String readName() {
+                readElement(MetaElementType.Name);
+                return readUtf8(buffer);
+            }
+
+            @Override
+            public long readLong() {
+                switch (readElement(MetaElementType.Long, MetaElementType.Integer, MetaElementType.Short)) {
+                    case Integer: return buffer.getInt();
+                    case Short: return buffer.getShort();
+                    default: return buffer.getLong();
+                }
+            }
+
+            @Override
+            public int readInt() {
+                switch (readElement(MetaElementType.Integer, MetaElementType.Short, MetaElementType.Long)) {
+                    case Short: return buffer.getShort();
+                    case Long: return Math.toIntExact(buffer.getLong());
+                    default: return buffer.getInt();
+                }
+            }
+
+            @Override
+            public short readShort() {
+                readElement(MetaElementType.Short);
+                return buffer.getShort();
+            }
+
+            @Override
+            public float readFloat() {
+                return readElement(MetaElementType.Float, MetaElementType.Double) == MetaElementType.Double
+                        ? (float)buffer.getDouble()
+                        : buffer.getFloat();
+            }
+
+            @Override
+            public double readDouble() {
+                return readElement(MetaElementType.Double, MetaElementType.Float) == MetaElementType.Float
+                        ? buffer.getFloat()
+                        : buffer.getDouble();
+            }
+
+            @Override
+            public boolean readBoolean() {
+                readElement(MetaElementType.Boolean);
+                return buffer.get() != 0;
+            }
+
+            @Override
+            public String readString() {
+                readElement(MetaElementType.String);
+                return readUtf8(buffer);
+            }
+
+            @Override
+            public void readNull() {
+                readElement(MetaElementType.Null);
+            }
+
+            @Override
+            public byte[] readBytes() {
+                readElement(MetaElementType.Binary);
+                return readByteArray(buffer);
+            }
+
+            @Override
+            public void skipValue() {
+                int depth = 0;
+                do {
+                    switch (currentElement()) {
+                        case BeginObject: readBeginObject(); ++depth; break;
+                        case BeginArray: readBeginArray(); ++depth; break;
+                        case EndObject: readEndObject(); --depth; break;
+                        case EndArray: readEndArray(); --depth; break;
+                        case Name: readName(); break;
+                        case End: return;
+                        default: readValue(); break;
+                    }
+                } while (depth > 0);
+            }
+
+            private MetaElementType readElement(MetaElementType... expectedTypes) {
+                MetaElementType type = currentElement();
+                if (!Arrays.asList(expectedTypes).contains(type)) {
+                    throw new IllegalStateException(MoreStrings.format("Expected one of: ({}), actual element: {}",
+                            Arrays.stream(expectedTypes).map(Objects::toString).collect(Collectors.joining(", ")),
+                            type));
+                }
+                buffer.get();
+                return type;
+            }
+        };
+    }
+
+    private static void writeUtf8(DataOutput output, String value) throws Exception {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readUtf8(ByteBuffer buffer) {
+        return new String(readByteArray(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readByteArray(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException(MoreStrings.format("Invalid length: {} (remaining: {})", length, buffer.remaining()));
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,183 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Opaque position of the last row of a {@link Page}: values of sort properties and of entity key,
+ * in the order they are compared by {@link SelectQueryBuilder#retrievePage(ContinuationToken, long)}.
+ * {@link #toString()} encodes the token into URL safe string, which is decoded back by {@link #parse(String)},
+ * so tokens can be passed to clients and returned with the next page request.
+ */
+public final class ContinuationToken {
+    private final static byte formatVersion = 1;
+    private final ImmutableList<String> paths;
+    private final ImmutableList<Object> values;
+
+    private ContinuationToken(ImmutableList<String> paths, ImmutableList<Object> values) {
+        this.paths = paths;
+        this.values = values;
+    }
+
+    static ContinuationToken create(ImmutableList<String> paths, ImmutableList<Object> values) {
+        return new ContinuationToken(paths, values);
+    }
+
+    public static ContinuationToken parse(String token) {
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)));
+            if (input.readByte() != formatVersion) {
+                throw new IllegalArgumentException("Unsupported continuation token format: " + token);
+            }
+            int count = input.readInt();
+            ImmutableList.Builder<String> paths = ImmutableList.builder();
+            ImmutableList.Builder<Object> values = ImmutableList.builder();
+            for (int i = 0; i < count; ++i) {
+                paths.add(input.readUTF());
+                values.add(readValue(input));
+            }
+            if (input.available() > 0) {
+                throw new IllegalArgumentException("Invalid continuation token: " + token);
+            }
+            return new ContinuationToken(paths.build(), values.build());
+        } catch (IOException | IllegalArgumentException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token, e);
+        }
+    }
+
+    ImmutableList<String> paths() {
+        return paths;
+    }
+
+    ImmutableList<Object> values() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ContinuationToken)) return false;
+        ContinuationToken that = (ContinuationToken)o;
+        return paths.equals(that.paths) && values.equals(that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(paths, values);
+    }
+
+    @Override
+    public String toString() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(formatVersion);
+            output.writeInt(paths.size());
+            for (int i = 0; i < paths.size(); ++i) {
+                output.writeUTF(paths.get(i));
+                writeValue(output, values.get(i));
+            }
+            output.flush();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Values of sort properties are comparable, so only scalar types (and enums) are expected
+    private static void writeValue(DataOutputStream output, Object value) throws IOException {
+        if (value instanceof String) {
+            output.writeByte('s');
+            output.writeUTF((String)value);
+        } else if (value instanceof Integer) {
+            output.writeByte('i');
+            output.writeInt((Integer)value);
+        } else if (value instanceof Long) {
+            output.writeByte('l');
+            output.writeLong((Long)value);
+        } else if (value instanceof Short) {
+            output.writeByte('h');
+            output.writeShort((Short)value);
+        } else if (value instanceof Byte) {
+            output.writeByte('y');
+            output.writeByte((Byte)value);
+        } else if (value instanceof Double) {
+            output.writeByte('d');
+            output.writeDouble((Double)value);
+        } else if (value instanceof Float) {
+            output.writeByte('f');
+            output.writeFloat((Float)value);
+        } else if (value instanceof Boolean) {
+            output.writeByte('b');
+            output.writeBoolean((Boolean)value);
+        } else if (value instanceof Character) {
+            output.writeByte('c');
+            output.writeChar((Character)value);
+        } else if (value instanceof BigDecimal) {
+            output.writeByte('D');
+            output.writeUTF(value.toString());
+        } else if (value instanceof BigInteger) {
+            output.writeByte('I');
+            output.writeUTF(value.toString());
+        } else if (value instanceof Date) {
+            output.writeByte('t');
+            output.writeLong(((Date)value).getTime());
+        } else if (value instanceof UUID) {
+            output.writeByte('u');
+            output.writeLong(((UUID)value).getMostSignificantBits());
+            output.writeLong(((UUID)value).getLeastSignificantBits());
+        } else if (value instanceof Enum) {
+            output.writeByte('e');
+            output.writeUTF(((Enum<?>)value).getDeclaringClass().getName());
+            output.writeUTF(((Enum<?>)value).name());
+        } else {
+            throw new IllegalStateException("Cannot encode value " + value + " of sort property into continuation token");
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readValue(DataInputStream input) throws IOException {
+        byte type = input.readByte();
+        switch (type) {
+            case 's': return input.readUTF();
+            case 'i': return input.readInt();
+            case 'l': return input.readLong();
+            case 'h': return input.readShort();
+            case 'y': return input.readByte();
+            case 'd': return input.readDouble();
+            case 'f': return input.readFloat();
+            case 'b': return input.readBoolean();
+            case 'c': return input.readChar();
+            case 'D': return new BigDecimal(input.readUTF());
+            case 'I': return new BigInteger(input.readUTF());
+            case 't': return new Date(input.readLong());
+            case 'u': return new UUID(input.readLong(), input.readLong());
+            case 'e': return Enum.valueOf((Class<? extends Enum>)enumClass(input.readUTF()), input.readUTF());
+            default: throw new IllegalArgumentException("Unknown value type: " + (char)type);
+        }
+    }
+
+    // Class is not initialized before it is known to be enum, as the name comes from the token
+    private static Class<?> enumClass(String className) {
+        try {
+            Class<?> cls = Class.forName(className, false, ContinuationToken.class.getClassLoader());
+            if (!cls.isEnum()) {
+                throw new IllegalArgumentException(className + " is not an enum");
+            }
+            return cls;
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown enum " + className, e);
+        }
+    }
+}
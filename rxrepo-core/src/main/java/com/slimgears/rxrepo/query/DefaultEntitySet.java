@@ -14,6 +14,8 @@ import io.reactivex.functions.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
@@ -202,9 +204,60 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                                 .query(builder.build())
                                 .map(Notification::newValue);
                     }
+
+                    @Override
+                    public PreparedQuery<T> prepare() {
+                        QueryInfo<K, S, T> query = builder.build();
+                        QueryInfo<K, S, T> firstQuery = query.toBuilder().limit(1L).build();
+                        return new PreparedQuery<T>() {
+                            @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
+                            @Override
+                            public Observable<T> retrieve(Object... arguments) {
+                                return queryProvider
+                                        .query(withArguments(query, arguments))
+                                        .map(Notification::newValue);
+                            }
+
+                            @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
+                            @Override
+                            public Maybe<T> first(Object... arguments) {
+                                return queryProvider
+                                        .query(withArguments(firstQuery, arguments))
+                                        .map(Notification::newValue)
+                                        .singleElement();
+                            }
+
+                            @Override
+                            public <R> Maybe<R> aggregate(Aggregator<T, T, R> aggregator, Object... arguments) {
+                                return queryProvider.aggregate(withArguments(query, arguments), aggregator);
+                            }
+                        };
+                    }
                 };
             }
 
+            @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
+            @Override
+            public Single<Page<S>> retrievePage(@Nullable ContinuationToken token, long pageSize) {
+                return Single.defer(() -> {
+                    KeysetPagination<S> pagination = KeysetPagination.create(metaClass, sortingInfos.build());
+                    AtomicReference<ObjectExpression<S, Boolean>> pagePredicate = new AtomicReference<>(predicate.get());
+                    if (token != null) {
+                        updatePredicate(pagePredicate, pagination.seekPredicate(token));
+                    }
+                    QueryInfo<K, S, S> query = QueryInfo.<K, S, S>builder()
+                            .metaClass(metaClass)
+                            .predicate(pagePredicate.get())
+                            .sorting(pagination.sorting())
+                            .limit(pageSize)
+                            .build();
+                    return queryProvider.query(query)
+                            .map(Notification::newValue)
+                            .toList()
+                            .map(items -> pagination.toPage(items, pageSize));
+                });
+            }
+
             @Override
             public LiveSelectQuery<S> liveSelect() {
                 return liveSelect(ObjectExpression.arg(metaClass.asType()));
@@ -271,7 +324,7 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                                 .flatMapObservable(count -> {
                                     AtomicBoolean retrieveComplete = new AtomicBoolean();
                                     ObservableTransformer<List<Notification<S>>, R> transformer = queryTransformer
-                                            .transformer(transformQuery, count);
+                                            .transformer(transformQuery, count, queryProvider);
                                     return queryProvider
                                             .queryAndObserve(retrieveQuery, observeQuery)
                                             .doOnNext(n -> log.trace("{}", Notifications.toBriefString(retrieveQuery.metaClass(), n)))
@@ -404,6 +457,10 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                 .orElse(predicate));
     }
 
+    private static <K, S, T> QueryInfo<K, S, T> withArguments(QueryInfo<K, S, T> query, Object[] arguments) {
+        return query.toBuilder().arguments(ImmutableList.copyOf(arguments)).build();
+    }
+
     private static <S, T> ObjectExpression<S, T> omitEmptyMapping(ObjectExpression<S, T> expression) {
         return Optional.ofNullable(expression)
                 .filter(m -> m.type().operationType() != Expression.OperationType.Argument)
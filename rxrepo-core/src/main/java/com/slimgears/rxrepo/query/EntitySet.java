@@ -55,6 +55,10 @@ public interface EntitySet<K, S> {
         return query().where(predicate).limit(1).select().properties(properties).first();
     }
 
+    default <T> PreparedQuery<T> prepare(java.util.function.Function<SelectQueryBuilder<S>, SelectQuery<T>> query) {
+        return query.apply(query()).prepare();
+    }
+
     default Completable update(S[] entities) {
         return update(Arrays.asList(entities));
     }
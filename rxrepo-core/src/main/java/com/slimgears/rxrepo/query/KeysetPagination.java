@@ -0,0 +1,128 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.BooleanExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.expressions.internal.BooleanBinaryOperationExpression;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.PropertyExpressions;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keyset (seek) pagination: sorting is completed with entity key (or its embedded properties), so that row order is total,
+ * and next page is selected by predicate {@code (p1, p2, ..., key) > (v1, v2, ..., k)} of the last row values instead of
+ * skipping preceding rows. Predicate is expanded into {@code p1 > v1 or (p1 = v1 and (p2 > v2 or ...))}, so it can be
+ * translated by every query provider, and mixed sort directions are supported.
+ */
+@SuppressWarnings("UnstableApiUsage")
+class KeysetPagination<S> {
+    private final ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sorting;
+    private final ImmutableList<String> paths;
+    private final ImmutableList<Function<S, ?>> getters;
+
+    private KeysetPagination(ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sorting) {
+        this.sorting = sorting;
+        this.paths = sorting.stream()
+                .map(s -> s.property().path())
+                .collect(ImmutableList.toImmutableList());
+        this.getters = sorting.stream()
+                .<Function<S, ?>>map(s -> Expressions.compile(s.property()))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    static <K, S> KeysetPagination<S> create(MetaClassWithKey<K, S> metaClass, List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting) {
+        sorting.forEach(s -> requireMandatory(s.property()));
+        Set<String> sortedPaths = sorting.stream().map(s -> s.property().path()).collect(Collectors.toSet());
+        ImmutableList.Builder<SortingInfo<S, ?, ? extends Comparable<?>>> builder = ImmutableList.builder();
+        builder.addAll(sorting);
+        keyProperties(PropertyExpressions.keyOf(metaClass))
+                .filter(p -> !sortedPaths.contains(p.path()))
+                .forEach(p -> builder.add(ascending(p)));
+        return new KeysetPagination<>(builder.build());
+    }
+
+    ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sorting() {
+        return sorting;
+    }
+
+    ObjectExpression<S, Boolean> seekPredicate(ContinuationToken token) {
+        if (!paths.equals(token.paths())) {
+            throw new IllegalArgumentException("Continuation token " + token + " does not match query sorting " + paths);
+        }
+        BooleanExpression<S> predicate = null;
+        for (int i = sorting.size() - 1; i >= 0; --i) {
+            ObjectExpression<S, Object> property = propertyAt(i);
+            Object value = token.values().get(i);
+            BooleanExpression<S> after = compare(property, value, sorting.get(i).ascending());
+            predicate = predicate != null
+                    ? after.or(property.eq(value).and(predicate))
+                    : after;
+        }
+        return predicate;
+    }
+
+    Page<S> toPage(List<S> items, long pageSize) {
+        ContinuationToken next = items.size() >= pageSize && !items.isEmpty()
+                ? tokenOf(items.get(items.size() - 1))
+                : null;
+        return Page.create(ImmutableList.copyOf(items), next);
+    }
+
+    private ContinuationToken tokenOf(S entity) {
+        return ContinuationToken.create(paths, getters.stream()
+                .map(getter -> getter.apply(entity))
+                .collect(ImmutableList.toImmutableList()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ObjectExpression<S, Object> propertyAt(int index) {
+        return (ObjectExpression<S, Object>)sorting.get(index).property();
+    }
+
+    // Nulls are ordered differently by different databases, so the seek predicate cannot be built for nullable properties
+    private static <S> void requireMandatory(PropertyExpression<S, ?, ?> property) {
+        if (Stream.concat(Stream.of(property), PropertyExpressions.parentProperties(property))
+                .anyMatch(p -> !PropertyMetas.isMandatory(p.property()))) {
+            throw new IllegalArgumentException("Nullable property " + property.path() + " cannot be used for keyset pagination sorting");
+        }
+    }
+
+    private static <S> BooleanExpression<S> compare(ObjectExpression<S, Object> property, Object value, boolean ascending) {
+        if (value == null) {
+            throw new IllegalArgumentException("Cannot seek after null value of " + property);
+        }
+        return BooleanBinaryOperationExpression.create(
+                ascending ? Expression.Type.GreaterThan : Expression.Type.LessThan,
+                property,
+                ConstantExpression.of(value));
+    }
+
+    private static <S> Stream<PropertyExpression<S, ?, ?>> keyProperties(PropertyExpression<S, ?, ?> property) {
+        TypeToken<?> type = property.property().type();
+        if (Comparable.class.isAssignableFrom(Primitives.wrap(type.getRawType()))) {
+            return Stream.of(property);
+        }
+        if (PropertyMetas.isEmbedded(type)) {
+            return PropertyExpressions.ownPropertiesOf(property).flatMap(KeysetPagination::keyProperties);
+        }
+        throw new IllegalArgumentException("Key " + property.path() + " of type " + type + " is not comparable and cannot be used for keyset pagination");
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <S> SortingInfo<S, ?, ? extends Comparable<?>> ascending(PropertyExpression<S, ?, ?> property) {
+        return SortingInfo.create((PropertyExpression)property, true);
+    }
+}
@@ -0,0 +1,45 @@
+package com.slimgears.rxrepo.query;
+
+import com.slimgears.rxrepo.annotations.PrototypeWithBuilder;
+
+import javax.annotation.Nullable;
+import java.util.function.Function;
+
+/**
+ * Single change of a live list. Changes of a batch are applied in order:
+ * {@code Move} removes the item at {@link #previousIndex()} and then inserts it at {@link #index()}.
+ */
+@PrototypeWithBuilder
+public interface ListChangePrototype<T> {
+    enum Type {
+        Insert,
+        Remove,
+        Move,
+        Update
+    }
+
+    Type type();
+    int index();
+    @Nullable Integer previousIndex();
+    T value();
+
+    default <R> ListChange<R> map(Function<T, R> mapper) {
+        return ListChange.create(type(), index(), previousIndex(), mapper.apply(value()));
+    }
+
+    static <T> ListChange<T> ofInsert(int index, T value) {
+        return ListChange.create(Type.Insert, index, null, value);
+    }
+
+    static <T> ListChange<T> ofRemove(int index, T value) {
+        return ListChange.create(Type.Remove, index, null, value);
+    }
+
+    static <T> ListChange<T> ofMove(int previousIndex, int index, T value) {
+        return ListChange.create(Type.Move, index, previousIndex, value);
+    }
+
+    static <T> ListChange<T> ofUpdate(int index, T value) {
+        return ListChange.create(Type.Update, index, null, value);
+    }
+}
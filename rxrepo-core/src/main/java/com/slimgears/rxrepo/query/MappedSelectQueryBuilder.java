@@ -4,8 +4,11 @@ import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.filters.Filter;
 import com.slimgears.rxrepo.util.Expressions;
+import io.reactivex.Single;
 
+import javax.annotation.Nullable;
 import java.util.Optional;
+import java.util.function.Function;
 
 class MappedSelectQueryBuilder<T, S> extends SelectQueryBuilder<T> {
     private final SelectQueryBuilder<S> underlying;
@@ -42,6 +45,12 @@ class MappedSelectQueryBuilder<T, S> extends SelectQueryBuilder<T> {
         return underlying.select(Expressions.compose(mapper, expression), distinct);
     }
 
+    @Override
+    public Single<Page<T>> retrievePage(@Nullable ContinuationToken token, long pageSize) {
+        Function<S, T> compiledMapper = Expressions.compile(mapper);
+        return underlying.retrievePage(token, pageSize).map(page -> page.map(compiledMapper));
+    }
+
     @Override
     public LiveSelectQuery<T> liveSelect() {
         return underlying.liveSelect(mapper);
@@ -4,6 +4,8 @@ import com.google.common.collect.ImmutableList;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfos;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.SortingInfo;
 import com.slimgears.rxrepo.util.Expressions;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
@@ -56,6 +58,18 @@ public class Notifications {
             .map(objects -> objects.stream().map(mapper).collect(Collectors.toList()));
     }
 
+    public static <K, S, T> ObservableTransformer<List<Notification<S>>, List<ListChange<T>>> toListChanges(
+            MetaClassWithKey<K, S> metaClass,
+            ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable ObjectExpression<S, T> mapping,
+            @Nullable Long limit) {
+        Function<S, T> mapper = Expressions.compile(mapping);
+        ObservableTransformer<List<Notification<S>>, List<ListChange<S>>> transformer = NotificationsToListChangesTransformer.create(metaClass, sortingInfos, limit);
+        return src -> src
+            .compose(transformer)
+            .map(changes -> changes.stream().map(change -> change.map(mapper)).collect(Collectors.toList()));
+    }
+
     public static <K, S> ObservableTransformer<List<Notification<S>>, List<S>> toList(QueryInfo<K, S, S> queryInfo, AtomicLong count) {
         return Notifications.toList(queryInfo.metaClass(), queryInfo.sorting(), queryInfo.mapping(), queryInfo.limit());
     }
@@ -73,6 +87,38 @@ public class Notifications {
         };
     }
 
+    public static <T> QueryTransformer<T, List<T>> toTopList() {
+        return new QueryTransformer<T, List<T>>() {
+            @Override
+            public <K, S> ObservableTransformer<List<Notification<S>>, List<T>> transformer(QueryInfo<K, S, T> query, AtomicLong count) {
+                return toSlidingList(query.metaClass(), query.sorting(), query.mapping(), query.limit());
+            }
+
+            @Override
+            public <K, S> ObservableTransformer<List<Notification<S>>, List<T>> transformer(QueryInfo<K, S, T> query, AtomicLong count, QueryProvider queryProvider) {
+                if (query.limit() == null || query.skip() != null || query.sorting().isEmpty()) {
+                    return transformer(query, count);
+                }
+                Function<S, T> mapper = Expressions.compile(query.mapping());
+                QueryInfo<K, S, S> unmappedQuery = QueryInfos.unmapQuery(query);
+                int lookAhead = (int)Math.max(Math.min(query.limit() / 2, Integer.MAX_VALUE), 1);
+                ObservableTransformer<List<Notification<S>>, List<S>> transformer = NotificationsToTopListTransformer.create(queryProvider, unmappedQuery, lookAhead);
+                return src -> src
+                        .compose(transformer)
+                        .map(objects -> objects.stream().map(mapper).collect(Collectors.toList()));
+            }
+        };
+    }
+
+    public static <T> QueryTransformer<T, List<ListChange<T>>> toListChanges() {
+        return new QueryTransformer<T, List<ListChange<T>>>() {
+            @Override
+            public <K, S> ObservableTransformer<List<Notification<S>>, List<ListChange<T>>> transformer(QueryInfo<K, S, T> query, AtomicLong count) {
+                return toListChanges(query.metaClass(), query.sorting(), query.mapping(), query.limit());
+            }
+        };
+    }
+
     public static <T> QueryTransformer<T, List<T>> toSlidingList() {
         return new QueryTransformer<T, List<T>>() {
             @Override
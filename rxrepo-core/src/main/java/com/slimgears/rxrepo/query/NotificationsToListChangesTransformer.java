@@ -0,0 +1,127 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.query.provider.SortingInfos;
+import com.slimgears.rxrepo.util.OrderStatisticTree;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class NotificationsToListChangesTransformer<K, T> implements ObservableTransformer<List<Notification<T>>, List<ListChange<T>>> {
+    private final static Logger log = LoggerFactory.getLogger(NotificationsToListChangesTransformer.class);
+    private final int window;
+    private final Map<K, Entry<T>> entries = new HashMap<>();
+    private final OrderStatisticTree<Entry<T>> tree;
+    private final MetaClassWithKey<K, T> metaClass;
+    private long nextOrder;
+
+    private NotificationsToListChangesTransformer(MetaClassWithKey<K, T> metaClass,
+                                                  ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
+                                                  @Nullable Long limit) {
+        log.trace("Creating instance of list changes transformer for {}", metaClass.simpleName());
+        this.metaClass = metaClass;
+        this.window = Optional.ofNullable(limit).map(l -> (int)Math.min(l, Integer.MAX_VALUE)).orElse(Integer.MAX_VALUE);
+        Comparator<Entry<T>> orderComparator = Comparator.comparingLong(entry -> entry.order);
+        this.tree = OrderStatisticTree.create(Optional
+                .ofNullable(SortingInfos.toComparator(sortingInfos))
+                .map(comparator -> Comparator.<Entry<T>, T>comparing(entry -> entry.value, comparator).thenComparing(orderComparator))
+                .orElse(orderComparator));
+    }
+
+    public static <K, T> NotificationsToListChangesTransformer<K, T> create(
+            MetaClassWithKey<K, T> metaClass,
+            ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable Long limit) {
+        return new NotificationsToListChangesTransformer<>(metaClass, sortingInfos, limit);
+    }
+
+    @Override
+    public ObservableSource<List<ListChange<T>>> apply(Observable<List<Notification<T>>> src) {
+        AtomicBoolean initial = new AtomicBoolean(true);
+        return src
+                .map(this::onNotifications)
+                .filter(changes -> initial.getAndSet(false) || !changes.isEmpty())
+                .doOnNext(changes -> log.trace("List changes: {} items", changes.size()));
+    }
+
+    private synchronized List<ListChange<T>> onNotifications(List<Notification<T>> notifications) {
+        List<ListChange<T>> changes = new ArrayList<>();
+        notifications.forEach(notification -> onNotification(notification, changes));
+        return changes;
+    }
+
+    private void onNotification(Notification<T> notification, List<ListChange<T>> changes) {
+        if (notification.isDelete()) {
+            Optional.ofNullable(notification.oldValue())
+                    .map(metaClass::keyOf)
+                    .map(entries::remove)
+                    .ifPresent(entry -> onRemoved(tree.remove(entry), entry.value, changes));
+        } else if (notification.newValue() != null) {
+            T value = notification.newValue();
+            K key = metaClass.keyOf(value);
+            Entry<T> oldEntry = entries.get(key);
+            Entry<T> newEntry = new Entry<>(value, oldEntry != null ? oldEntry.order : nextOrder++);
+            entries.put(key, newEntry);
+            if (oldEntry != null) {
+                int previousIndex = tree.remove(oldEntry);
+                onMoved(previousIndex, tree.add(newEntry), value, changes);
+            } else {
+                onInserted(tree.add(newEntry), value, changes);
+            }
+        }
+    }
+
+    private void onRemoved(int index, T value, List<ListChange<T>> changes) {
+        if (index < 0 || index >= window) {
+            return;
+        }
+        changes.add(ListChange.ofRemove(index, value));
+        if (tree.size() >= window) {
+            changes.add(ListChange.ofInsert(window - 1, tree.get(window - 1).value));
+        }
+    }
+
+    private void onInserted(int index, T value, List<ListChange<T>> changes) {
+        if (index < 0 || index >= window) {
+            return;
+        }
+        changes.add(ListChange.ofInsert(index, value));
+        if (tree.size() > window) {
+            changes.add(ListChange.ofRemove(window, tree.get(window).value));
+        }
+    }
+
+    private void onMoved(int previousIndex, int index, T value, List<ListChange<T>> changes) {
+        boolean wasVisible = previousIndex < window;
+        boolean isVisible = index < window;
+        if (wasVisible && isVisible) {
+            changes.add(previousIndex == index
+                    ? ListChange.ofUpdate(index, value)
+                    : ListChange.ofMove(previousIndex, index, value));
+        } else if (wasVisible) {
+            changes.add(ListChange.ofRemove(previousIndex, value));
+            changes.add(ListChange.ofInsert(window - 1, tree.get(window - 1).value));
+        } else if (isVisible) {
+            changes.add(ListChange.ofInsert(index, value));
+            changes.add(ListChange.ofRemove(window, tree.get(window).value));
+        }
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final long order;
+
+        private Entry(T value, long order) {
+            this.value = value;
+            this.order = order;
+        }
+    }
+}
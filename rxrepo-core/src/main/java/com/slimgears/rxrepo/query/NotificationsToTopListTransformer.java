@@ -0,0 +1,204 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.BooleanExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.internal.BooleanBinaryOperationExpression;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.query.provider.SortingInfos;
+import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.OrderStatisticTree;
+import com.slimgears.rxrepo.util.PredicateBuilder;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Keeps only the first {@code limit} items of a sorted live query plus a bounded look-ahead buffer.
+ * All matching items up to {@code boundary} are known, so notifications past it are ignored. When the window
+ * underflows, the tail is refilled by a keyset query starting at the boundary.
+ */
+public class NotificationsToTopListTransformer<K, T> implements ObservableTransformer<List<Notification<T>>, List<T>> {
+    private final static Logger log = LoggerFactory.getLogger(NotificationsToTopListTransformer.class);
+    private final QueryProvider queryProvider;
+    private final QueryInfo<K, T, T> query;
+    private final MetaClassWithKey<K, T> metaClass;
+    private final int limit;
+    private final int capacity;
+    private final Comparator<T> comparator;
+    private final Map<K, Entry<T>> entries = new HashMap<>();
+    private final OrderStatisticTree<Entry<T>> tree;
+    private long nextOrder;
+    private T boundary;
+    private boolean exhausted;
+
+    private NotificationsToTopListTransformer(QueryProvider queryProvider, QueryInfo<K, T, T> query, int lookAhead) {
+        log.trace("Creating instance of top list transformer for {}", query.metaClass().simpleName());
+        this.queryProvider = queryProvider;
+        this.query = query;
+        this.metaClass = query.metaClass();
+        this.limit = (int)Math.min(Objects.requireNonNull(query.limit()), Integer.MAX_VALUE);
+        this.capacity = (int)Math.min((long)limit + lookAhead, Integer.MAX_VALUE);
+        this.comparator = Optional
+                .ofNullable(SortingInfos.toComparator(query.sorting()))
+                .orElseThrow(() -> new IllegalArgumentException("Query with sorting is expected"));
+        this.tree = OrderStatisticTree.create(Comparator
+                .<Entry<T>, T>comparing(entry -> entry.value, comparator)
+                .thenComparingLong(entry -> entry.order));
+    }
+
+    public static <K, T> NotificationsToTopListTransformer<K, T> create(QueryProvider queryProvider, QueryInfo<K, T, T> query, int lookAhead) {
+        return new NotificationsToTopListTransformer<>(queryProvider, query, lookAhead);
+    }
+
+    @Override
+    public ObservableSource<List<T>> apply(Observable<List<Notification<T>>> src) {
+        return src
+                .concatMap(notifications -> {
+                    onNotifications(notifications);
+                    return isUnderflow()
+                            ? refill().map(items -> toList())
+                            : Observable.just(toList());
+                })
+                .doOnNext(l -> log.trace("Top list update: {} items", l.size()));
+    }
+
+    private synchronized void onNotifications(List<Notification<T>> notifications) {
+        notifications.forEach(this::onNotification);
+        evictOverflow();
+    }
+
+    private synchronized boolean isUnderflow() {
+        return !exhausted && tree.size() < limit;
+    }
+
+    private synchronized ImmutableList<T> toList() {
+        int size = Math.min(tree.size(), limit);
+        ImmutableList.Builder<T> builder = ImmutableList.builderWithExpectedSize(size);
+        for (int i = 0; i < size; ++i) {
+            builder.add(tree.get(i).value);
+        }
+        return builder.build();
+    }
+
+    private Observable<List<T>> refill() {
+        QueryInfo<K, T, T> refillQuery = refillQuery();
+        long requested = Objects.requireNonNull(refillQuery.limit());
+        log.trace("Refilling top list of {} ({} items requested)", metaClass.simpleName(), requested);
+        return queryProvider.query(refillQuery)
+                .filter(n -> n.newValue() != null)
+                .map(Notification::newValue)
+                .toList()
+                .doOnSuccess(items -> onRefilled(items, requested))
+                .toObservable();
+    }
+
+    private synchronized void onRefilled(List<T> items, long requested) {
+        items.forEach(item -> {
+            if (!entries.containsKey(metaClass.keyOf(item))) {
+                add(item);
+            }
+        });
+        exhausted = items.size() < requested;
+        if (!items.isEmpty()) {
+            boundary = items.get(items.size() - 1);
+        }
+        evictOverflow();
+    }
+
+    private synchronized QueryInfo<K, T, T> refillQuery() {
+        QueryInfo<K, T, T> topQuery = query.toBuilder().skip(null).limit((long)capacity).build();
+        if (boundary == null) {
+            return topQuery;
+        }
+
+        long ties = tree.toList().stream().filter(entry -> comparator.compare(entry.value, boundary) == 0).count();
+        return notBefore(boundary, 0)
+                .map(keySet -> query.toBuilder()
+                        .predicate(PredicateBuilder.<T>create().and(query.predicate()).and(keySet).build())
+                        .skip(null)
+                        .limit(capacity - tree.size() + ties)
+                        .build())
+                .orElse(topQuery);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V extends Comparable<V>> Optional<ObjectExpression<T, Boolean>> notBefore(T item, int index) {
+        SortingInfo<T, ?, V> sortingInfo = (SortingInfo<T, ?, V>)query.sorting().get(index);
+        V value = Expressions.compile(sortingInfo.property()).apply(item);
+        if (value == null) {
+            return Optional.empty();
+        }
+
+        ConstantExpression<T, V> constant = ConstantExpression.of(value);
+        if (index == query.sorting().size() - 1) {
+            return Optional.of(BooleanExpression.not(BooleanBinaryOperationExpression.create(
+                    sortingInfo.ascending() ? Expression.Type.LessThan : Expression.Type.GreaterThan,
+                    sortingInfo.property(),
+                    constant)));
+        }
+
+        ObjectExpression<T, Boolean> after = BooleanBinaryOperationExpression.create(
+                sortingInfo.ascending() ? Expression.Type.GreaterThan : Expression.Type.LessThan,
+                sortingInfo.property(),
+                constant);
+        ObjectExpression<T, Boolean> equal = BooleanBinaryOperationExpression.create(
+                Expression.Type.Equals,
+                sortingInfo.property(),
+                constant);
+        return notBefore(item, index + 1)
+                .map(next -> BooleanExpression.or(after, BooleanExpression.and(equal, next)));
+    }
+
+    private void onNotification(Notification<T> notification) {
+        Optional.ofNullable(notification.oldValue())
+                .map(metaClass::keyOf)
+                .map(entries::remove)
+                .ifPresent(tree::remove);
+
+        T value = notification.newValue();
+        if (value != null && isWithinKnownRange(value)) {
+            add(value);
+        }
+    }
+
+    private boolean isWithinKnownRange(T value) {
+        return exhausted || (boundary != null && comparator.compare(value, boundary) <= 0);
+    }
+
+    private void add(T value) {
+        K key = metaClass.keyOf(value);
+        Entry<T> entry = new Entry<>(value, nextOrder++);
+        Optional.ofNullable(entries.put(key, entry)).ifPresent(tree::remove);
+        tree.add(entry);
+    }
+
+    private void evictOverflow() {
+        while (tree.size() > capacity) {
+            Entry<T> last = tree.get(tree.size() - 1);
+            tree.remove(last);
+            entries.remove(metaClass.keyOf(last.value));
+            boundary = tree.get(tree.size() - 1).value;
+            exhausted = false;
+        }
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final long order;
+
+        private Entry(T value, long order) {
+            this.value = value;
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.annotations.PrototypeWithBuilder;
+
+import javax.annotation.Nullable;
+import java.util.function.Function;
+
+/**
+ * Single page of keyset pagination. {@link #next()} is {@code null} when there are no more rows after this page.
+ */
+@PrototypeWithBuilder
+public interface PagePrototype<T> {
+    ImmutableList<T> items();
+    @Nullable ContinuationToken next();
+
+    default boolean hasNext() {
+        return next() != null;
+    }
+
+    default <R> Page<R> map(Function<T, R> mapper) {
+        return Page.create(items().stream().map(mapper).collect(ImmutableList.toImmutableList()), next());
+    }
+}
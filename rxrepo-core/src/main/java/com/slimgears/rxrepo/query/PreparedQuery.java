@@ -0,0 +1,26 @@
+package com.slimgears.rxrepo.query;
+
+import com.slimgears.rxrepo.expressions.Aggregator;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+
+import java.util.List;
+
+/**
+ * Select query prepared once and executed many times. Arguments are bound positionally
+ * to the {@link QueryParameter} placeholders of the query and must not be null.
+ */
+public abstract class PreparedQuery<T> {
+    public abstract Observable<T> retrieve(Object... arguments);
+    public abstract Maybe<T> first(Object... arguments);
+    public abstract <R> Maybe<R> aggregate(Aggregator<T, T, R> aggregator, Object... arguments);
+
+    public Single<List<T>> retrieveAsList(Object... arguments) {
+        return retrieve(arguments).toList();
+    }
+
+    public Single<Long> count(Object... arguments) {
+        return aggregate(Aggregator.count(), arguments).toSingle(0L);
+    }
+}
@@ -0,0 +1,41 @@
+package com.slimgears.rxrepo.query;
+
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.internal.ObjectConstantExpression;
+
+/**
+ * Positional placeholder of a prepared query. The placeholder is a constant expression, so it can be used in place
+ * of any value in a predicate; the actual value is bound when the prepared query is executed.
+ */
+public final class QueryParameter {
+    private final int index;
+
+    private QueryParameter(int index) {
+        this.index = index;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <S, T> ObjectExpression<S, T> of(int index) {
+        return ObjectConstantExpression.create(Expression.Type.Constant, (T)new QueryParameter(index));
+    }
+
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof QueryParameter && ((QueryParameter)obj).index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(index);
+    }
+
+    @Override
+    public String toString() {
+        return "?" + index;
+    }
+}
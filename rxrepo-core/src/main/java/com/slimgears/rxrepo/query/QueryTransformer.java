@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.query;
 
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
 import io.reactivex.ObservableTransformer;
 
 import java.util.List;
@@ -8,4 +9,8 @@ import java.util.concurrent.atomic.AtomicLong;
 
 public interface QueryTransformer<T, R> {
     <K, S> ObservableTransformer<List<Notification<S>>, R> transformer(QueryInfo<K, S, T> query, AtomicLong count);
+
+    default <K, S> ObservableTransformer<List<Notification<S>>, R> transformer(QueryInfo<K, S, T> query, AtomicLong count, QueryProvider queryProvider) {
+        return transformer(query, count);
+    }
 }
@@ -30,6 +30,8 @@ public abstract class SelectQuery<T> {
 
     public abstract Observable<T> retrieve();
 
+    public abstract PreparedQuery<T> prepare();
+
     public Single<Long> count() {
         return aggregate(Aggregator.count()).toSingle(0L);
     }
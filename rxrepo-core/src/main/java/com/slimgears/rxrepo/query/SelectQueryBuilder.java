@@ -6,6 +6,7 @@ import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
+import javax.annotation.Nullable;
 import java.util.List;
 
 @SuppressWarnings("WeakerAccess")
@@ -27,6 +28,17 @@ public abstract class SelectQueryBuilder<S>
         return select(expression, true);
     }
 
+    /**
+     * Keyset pagination: returns up to {@code pageSize} rows following the row the {@code token} was taken from
+     * (or the first page, if {@code token} is {@code null}). Sorting is completed with entity key, and {@link #skip(long)}
+     * is not applied, so retrieving a deep page costs the same as the first one.
+     */
+    public abstract Single<Page<S>> retrievePage(@Nullable ContinuationToken token, long pageSize);
+
+    public Single<Page<S>> retrievePage(long pageSize) {
+        return retrievePage(null, pageSize);
+    }
+
     public abstract LiveSelectQuery<S> liveSelect();
 
     public abstract <T> LiveSelectQuery<T> liveSelect(ObjectExpression<S, T> expression);
@@ -0,0 +1,348 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.slimgears.nanometer.MetricCollector;
+import com.slimgears.rxrepo.expressions.ArgumentExpression;
+import com.slimgears.rxrepo.expressions.BinaryOperationExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.QueryParameter;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfos;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Function;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of entities by key. Queries of whole entity by key equality (e.g. {@code EntitySet.find(key)})
+ * are served from memory. Cache is kept coherent by live query of each cached entity type: every notification, as well as
+ * every modification made through this provider, invalidates affected entries. Entities of a type are cached only once
+ * its live query is established (see {@code liveQueryReady}), and not cached anymore if the live query fails. Referenced entities are cached as part of referencing entity, so types which
+ * reference frequently modified entities should not be cached.
+ */
+public class EntityCacheQueryProviderDecorator implements QueryProvider.Decorator {
+    private final Predicate<MetaClassWithKey<?, ?>> cachedTypes;
+    private final long maxSize;
+    private final Duration expirationTime;
+    private final MetricCollector metricCollector;
+    private final java.util.function.Function<MetaClassWithKey<?, ?>, Completable> liveQueryReady;
+
+    private EntityCacheQueryProviderDecorator(Predicate<MetaClassWithKey<?, ?>> cachedTypes,
+                                              long maxSize,
+                                              @Nullable Duration expirationTime,
+                                              MetricCollector metricCollector,
+                                              java.util.function.Function<MetaClassWithKey<?, ?>, Completable> liveQueryReady) {
+        this.cachedTypes = cachedTypes;
+        this.maxSize = maxSize;
+        this.expirationTime = expirationTime;
+        this.metricCollector = metricCollector;
+        this.liveQueryReady = liveQueryReady;
+    }
+
+    public static QueryProvider.Decorator create(long maxSize, MetaClassWithKey<?, ?>... metaClasses) {
+        return create(maxSize, null, MetricCollector.empty(), metaClasses);
+    }
+
+    public static QueryProvider.Decorator create(long maxSize,
+                                                 @Nullable Duration expirationTime,
+                                                 MetricCollector metricCollector,
+                                                 MetaClassWithKey<?, ?>... metaClasses) {
+        return create(ImmutableSet.copyOf(Arrays.asList(metaClasses))::contains, maxSize, expirationTime, metricCollector);
+    }
+
+    public static QueryProvider.Decorator create(Predicate<MetaClassWithKey<?, ?>> cachedTypes,
+                                                 long maxSize,
+                                                 @Nullable Duration expirationTime,
+                                                 MetricCollector metricCollector) {
+        return create(cachedTypes, maxSize, expirationTime, metricCollector, metaClass -> Completable.complete());
+    }
+
+    // liveQueryReady completes once live query of the type, subscribed before, is established
+    // (for providers establishing live queries asynchronously, e.g. by polling or listening on separate connection)
+    public static QueryProvider.Decorator create(Predicate<MetaClassWithKey<?, ?>> cachedTypes,
+                                                 long maxSize,
+                                                 @Nullable Duration expirationTime,
+                                                 MetricCollector metricCollector,
+                                                 java.util.function.Function<MetaClassWithKey<?, ?>, Completable> liveQueryReady) {
+        return new EntityCacheQueryProviderDecorator(cachedTypes, maxSize, expirationTime, metricCollector, liveQueryReady);
+    }
+
+    @Override
+    public QueryProvider apply(QueryProvider queryProvider) {
+        return new DecoratedProvider(queryProvider);
+    }
+
+    private class DecoratedProvider extends AbstractQueryProviderDecorator {
+        private final Cache<List<Object>, Object> entities;
+        private final Map<MetaClassWithKey<?, ?>, CachedType<?, ?>> cachedTypeMap = new ConcurrentHashMap<>();
+        private final CompositeDisposable subscriptions = new CompositeDisposable();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final MetricCollector.Gauge hitsGauge;
+        private final MetricCollector.Gauge missesGauge;
+        private final MetricCollector.Gauge evictionsGauge;
+
+        private DecoratedProvider(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+            CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .removalListener(this::onRemoval);
+            if (expirationTime != null) {
+                cacheBuilder.expireAfterWrite(expirationTime.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            this.entities = cacheBuilder.build();
+            this.hitsGauge = metricCollector.gauge("hits");
+            this.missesGauge = metricCollector.gauge("misses");
+            this.evictionsGauge = metricCollector.gauge("evictions");
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
+            K key = cachedKeyOf(query);
+            CachedType<K, S> cachedType = key != null ? cachedTypeOf(query.metaClass()) : null;
+            if (cachedType == null || !cachedType.isActive()) {
+                return super.query(query);
+            }
+
+            List<Object> entryKey = entryKeyOf(query.metaClass(), key);
+            T entity = (T)entities.getIfPresent(entryKey);
+            if (entity != null) {
+                hitsGauge.record(hits.incrementAndGet());
+                return Observable.just(Notification.ofCreated(entity, null));
+            }
+
+            missesGauge.record(misses.incrementAndGet());
+            long generation = cachedType.generation();
+            return super.query(query)
+                    .doOnNext(n -> {
+                        // Entity could be modified while it was read, in this case it is not cached until next query.
+                        // Generation is checked atomically with put, as invalidation of the key waits for compute to complete
+                        if (n.newValue() != null) {
+                            entities.asMap().compute(entryKey, (k, cached) -> cachedType.isActive() && cachedType.generation() == generation
+                                    ? n.newValue()
+                                    : cached);
+                        }
+                    });
+        }
+
+        @Override
+        public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+            return super.insert(metaClass, entities, recursive)
+                    .doFinally(() -> invalidate(metaClass, entities));
+        }
+
+        @Override
+        public <K, S> Completable insertOrUpdate(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+            return super.insertOrUpdate(metaClass, entities, recursive)
+                    .doFinally(() -> invalidate(metaClass, entities));
+        }
+
+        @Override
+        public <K, S> Single<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+            return super.insertOrUpdate(metaClass, entity, recursive)
+                    .doFinally(() -> invalidateKey(metaClass, metaClass.keyOf(entity)));
+        }
+
+        @Override
+        public <K, S> Maybe<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+            return super.insertOrUpdate(metaClass, key, recursive, entityUpdater)
+                    .doFinally(() -> invalidateKey(metaClass, key));
+        }
+
+        @Override
+        public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+            return super.update(update)
+                    .doFinally(() -> invalidateAll(update.metaClass()));
+        }
+
+        @Override
+        public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
+            return super.delete(delete)
+                    .doFinally(() -> invalidateAll(delete.metaClass()));
+        }
+
+        @Override
+        public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+            return super.drop(metaClass)
+                    .doFinally(() -> invalidateAll(metaClass));
+        }
+
+        @Override
+        public Completable dropAll() {
+            return super.dropAll()
+                    .doFinally(() -> cachedTypeMap.keySet().forEach(this::invalidateAll));
+        }
+
+        @Override
+        public void close() {
+            subscriptions.dispose();
+            entities.invalidateAll();
+            super.close();
+        }
+
+        // Whole entity queried by equality of its key to constant, e.g. EntitySet.find(key)
+        @SuppressWarnings("unchecked")
+        private <K, S, T> K cachedKeyOf(QueryInfo<K, S, T> query) {
+            if (!cachedTypes.test(query.metaClass())
+                    || query.mapping() != null
+                    || !query.properties().isEmpty()
+                    || (query.skip() != null && query.skip() > 0)
+                    || !(query.predicate() instanceof BinaryOperationExpression)) {
+                return null;
+            }
+            BinaryOperationExpression<S, ?, ?, Boolean> predicate = (BinaryOperationExpression<S, ?, ?, Boolean>)query.predicate();
+            if (predicate.type() != Expression.Type.Equals
+                    || !isKeyProperty(query.metaClass(), predicate.left())
+                    || !(predicate.right() instanceof ConstantExpression)) {
+                return null;
+            }
+            // Key of prepared query is bound to its arguments, rather than to parameter placeholder
+            Object value = ((ConstantExpression<S, ?>)predicate.right()).value();
+            return QueryInfos.isParameter(value)
+                    ? (K)QueryInfos.argumentOf((QueryParameter)value, query.arguments())
+                    : (K)value;
+        }
+
+        private boolean isKeyProperty(MetaClassWithKey<?, ?> metaClass, ObjectExpression<?, ?> expression) {
+            if (!(expression instanceof PropertyExpression)) {
+                return false;
+            }
+            PropertyExpression<?, ?, ?> property = (PropertyExpression<?, ?, ?>)expression;
+            return property.target() instanceof ArgumentExpression && property.property().name().equals(metaClass.keyProperty().name());
+        }
+
+        @SuppressWarnings("unchecked")
+        private <K, S> CachedType<K, S> cachedTypeOf(MetaClassWithKey<K, S> metaClass) {
+            CachedType<K, S> cachedType = (CachedType<K, S>)cachedTypeMap.computeIfAbsent(metaClass, mc -> new CachedType<>(metaClass));
+            cachedType.subscribe();
+            return cachedType;
+        }
+
+        private <K, S> void invalidate(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            entities.forEach(entity -> invalidateKey(metaClass, metaClass.keyOf(entity)));
+        }
+
+        private <K, S> void invalidateKey(MetaClassWithKey<K, S> metaClass, K key) {
+            CachedType<?, ?> cachedType = cachedTypeMap.get(metaClass);
+            if (cachedType != null) {
+                cachedType.invalidate(key);
+            }
+        }
+
+        private void invalidateAll(MetaClassWithKey<?, ?> metaClass) {
+            CachedType<?, ?> cachedType = cachedTypeMap.get(metaClass);
+            if (cachedType != null) {
+                cachedType.invalidateAll();
+            }
+        }
+
+        private void onRemoval(RemovalNotification<Object, Object> notification) {
+            if (notification.wasEvicted()) {
+                evictionsGauge.record(evictions.incrementAndGet());
+            }
+        }
+
+        private List<Object> entryKeyOf(MetaClassWithKey<?, ?> metaClass, Object key) {
+            return ImmutableList.of(metaClass, key);
+        }
+
+        private class CachedType<K, S> {
+            private final MetaClassWithKey<K, S> metaClass;
+            private final AtomicLong generation = new AtomicLong();
+            private volatile boolean subscribed = false;
+            private volatile boolean ready = false;
+            private volatile boolean active = true;
+
+            private CachedType(MetaClassWithKey<K, S> metaClass) {
+                this.metaClass = metaClass;
+            }
+
+            // Provider without live queries may throw on liveQuery() instead of emitting error
+            private void subscribe() {
+                if (subscribed || !active) {
+                    return;
+                }
+                synchronized (this) {
+                    if (subscribed || !active) {
+                        return;
+                    }
+                    try {
+                        subscriptions.add(getUnderlyingProvider()
+                                .liveQuery(QueryInfo.<K, S, S>builder().metaClass(metaClass).build())
+                                .subscribe(this::onNotification, this::onError));
+                        subscriptions.add(liveQueryReady.apply(metaClass)
+                                .subscribe(this::onReady, this::onError));
+                        subscribed = true;
+                    } catch (RuntimeException e) {
+                        onError(e);
+                    }
+                }
+            }
+
+            private boolean isActive() {
+                return ready && active;
+            }
+
+            private long generation() {
+                return generation.get();
+            }
+
+            private void onNotification(Notification<S> notification) {
+                if (notification.oldValue() != null) {
+                    invalidate(metaClass.keyOf(notification.oldValue()));
+                }
+                if (notification.newValue() != null) {
+                    invalidate(metaClass.keyOf(notification.newValue()));
+                }
+            }
+
+            private void onReady() {
+                log.debug("Live query of {} is established, caching entities", metaClass.simpleName());
+                ready = true;
+            }
+
+            private void onError(Throwable error) {
+                log.warn("Live query of {} failed, entities will not be cached", metaClass.simpleName(), error);
+                active = false;
+                invalidateAll();
+            }
+
+            private void invalidate(Object key) {
+                generation.incrementAndGet();
+                entities.invalidate(entryKeyOf(metaClass, key));
+            }
+
+            private void invalidateAll() {
+                generation.incrementAndGet();
+                entities.asMap().keySet().removeIf(entryKey -> entryKey.get(0).equals(metaClass));
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.slimgears.rxrepo.query.decorator;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.Expression;
@@ -12,6 +13,8 @@ import com.slimgears.rxrepo.query.Notifications;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfos;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.LiveAggregations;
 import com.slimgears.rxrepo.util.PredicateBuilder;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.Queries;
@@ -22,31 +25,45 @@ import io.reactivex.ObservableTransformer;
 
 import javax.annotation.Nullable;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
+    private final static Duration defaultReferenceBatchTimeout = Duration.ofMillis(50);
+    private final static int maxReferenceBatchSize = 1000;
     private final Duration aggregationDebounceTime;
+    private final Duration referenceBatchTimeout;
+    private final Map<List<Object>, NotificationDispatcher<?>> dispatchers = new ConcurrentHashMap<>();
 
-    private LiveQueryProviderDecorator(QueryProvider upstream, Duration aggregationDebounceTime) {
+    private LiveQueryProviderDecorator(QueryProvider upstream, Duration aggregationDebounceTime, Duration referenceBatchTimeout) {
         super(upstream);
         this.aggregationDebounceTime = aggregationDebounceTime;
+        this.referenceBatchTimeout = referenceBatchTimeout;
     }
 
     public static QueryProvider.Decorator create(Duration aggregationDebounceTime) {
-        return src -> new LiveQueryProviderDecorator(src, aggregationDebounceTime);
+        return create(aggregationDebounceTime, defaultReferenceBatchTimeout);
+    }
+
+    public static QueryProvider.Decorator create(Duration aggregationDebounceTime, Duration referenceBatchTimeout) {
+        return src -> new LiveQueryProviderDecorator(src, aggregationDebounceTime, referenceBatchTimeout);
     }
 
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
-        return super.liveQuery(QueryInfo.<K, S, S>builder()
-                        .metaClass(query.metaClass())
-                        .properties(QueryInfos.allReferencedProperties(query))
-                        .build())
+        return dispatcherOf(query)
+                .observe(query.predicate())
                 .compose(applyReferencedObserve(query))
                 .compose(Notifications.applyFilter(query.predicate()))
                 .compose(Notifications.applyMap(query.mapping()))
@@ -62,12 +79,25 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
 
     @Override
     public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        if (LiveAggregations.isSupported(query, aggregator)) {
+            return LiveAggregations.liveAggregate(this, query, aggregator, aggregationDebounceTime);
+        }
         return liveQuery(query.toBuilder().predicate(null).build())
             .throttleLatest(aggregationDebounceTime.toMillis(), TimeUnit.MILLISECONDS)
             .switchMapMaybe(n -> aggregate(query, aggregator))
             .distinctUntilChanged();
     }
 
+    @SuppressWarnings("unchecked")
+    private <K, S, T> NotificationDispatcher<S> dispatcherOf(QueryInfo<K, S, T> query) {
+        ImmutableSet<PropertyExpression<S, ?, ?>> properties = QueryInfos.allReferencedProperties(query);
+        return (NotificationDispatcher<S>)dispatchers.computeIfAbsent(ImmutableList.of(query.metaClass().asClass(), properties), c -> NotificationDispatcher.create(
+                super.liveQuery(QueryInfo.<K, S, S>builder()
+                        .metaClass(query.metaClass())
+                        .properties(properties)
+                        .build())));
+    }
+
     private <K, S, T> ObservableTransformer<Notification<S>, Notification<S>> applyReferencedObserve(QueryInfo<K, S, T> query) {
         QueryInfo<K, S, S> unmappedQuery = QueryInfos
                 .unmapQuery(query)
@@ -112,31 +142,66 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
         return observeReferenceProperty(query, referenceProperty, referenceProperties, MetaClasses.forTokenWithKeyUnchecked(referenceProperty.reflect().objectType()), lastCreatedSequenceNumber);
     }
 
-    @SuppressWarnings({"unchecked", "ReactiveStreamsNullableInLambdaInTransform"})
     private <K1, S1, K2, S2> Observable<Notification<S1>> observeReferenceProperty(QueryInfo<K1, S1, S1> query, PropertyExpression<S1, S1, S2> referenceProperty, ImmutableSet<PropertyExpression<S2, ?, ?>> properties, MetaClassWithKey<K2, S2> metaClassWithKey, AtomicReference<Long> lastCreatedSequenceNumber) {
         return observeReference(metaClassWithKey, properties)
                 .filter(n -> n.isModify() || n.isDelete())
                 .doOnNext(n -> log.trace("Received referenced notification: {} (last seq.: {}), {}", n.sequenceNumber(), lastCreatedSequenceNumber.get(), n))
-                .flatMapIterable(n -> query(QueryInfo
-                        .<K1, S1, S1>builder()
-                        .metaClass(query.metaClass())
-                        .properties(PropertyExpressions.includeMandatoryProperties(query.objectType(), query.properties()))
-                        .predicate(PredicateBuilder.<S1>create()
-                                //.and(query.predicate())
-                                .and(matchReferenceId(n.oldValue(), referenceProperty, metaClassWithKey))
-                                .and(matchSequenceNumber(query.metaClass(), lastCreatedSequenceNumber.get(), n.sequenceNumber()))
-                                .build())
+                .compose(bufferFromFirst(referenceBatchTimeout, maxReferenceBatchSize))
+                .concatMap(batch -> queryReferrers(query, referenceProperty, metaClassWithKey, batch, lastCreatedSequenceNumber));
+    }
+
+    // Batch is closed when timeout elapses since its first item, or when it is full, so no timer runs while idle
+    private static <T> ObservableTransformer<T, List<T>> bufferFromFirst(Duration timeout, int maxSize) {
+        return src -> src.publish(shared -> shared.buffer(() -> shared
+                .take(1)
+                .delay(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .mergeWith(shared.skip(maxSize - 1))
+                .take(1)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K1, S1, K2, S2> Observable<Notification<S1>> queryReferrers(QueryInfo<K1, S1, S1> query, PropertyExpression<S1, S1, S2> referenceProperty, MetaClassWithKey<K2, S2> metaClassWithKey, List<Notification<S2>> batch, AtomicReference<Long> lastCreatedSequenceNumber) {
+        // Every referenced notification produces its own referrer notification, stamped with its original sequence number
+        Map<K2, List<Notification<S2>>> notificationsByKey = new LinkedHashMap<>();
+        batch.forEach(n -> notificationsByKey
+                .computeIfAbsent(metaClassWithKey.keyOf(n.oldValue()), k -> new ArrayList<>())
+                .add(n));
+        Long batchSequenceNumber = batch.stream()
+                .map(Notification::sequenceNumber)
+                .filter(Objects::nonNull)
+                .max(Long::compare)
+                .orElse(null);
+        java.util.function.Function<S1, S2> referenceGetter = Expressions.compile(referenceProperty);
+
+        log.trace("Querying referrers of {} {} objects", notificationsByKey.size(), metaClassWithKey.simpleName());
+        return query(QueryInfo
+                .<K1, S1, S1>builder()
+                .metaClass(query.metaClass())
+                .properties(PropertyExpressions.includeMandatoryProperties(query.objectType(), query.properties()))
+                .predicate(PredicateBuilder.<S1>create()
+                        .and(matchReferenceIds(notificationsByKey.keySet(), referenceProperty, metaClassWithKey))
+                        .and(matchSequenceNumber(query.metaClass(), lastCreatedSequenceNumber.get(), batchSequenceNumber))
                         .build())
-                        .map(Notification::newValue)
-                        .map(obj -> {
-                            MetaBuilder<S1> builder = ((HasMetaClass<S1>)obj).toBuilder();
-                            referenceProperty.property().setValue(builder, n.oldValue());
-                            S1 oldValue = builder.build();
-                            referenceProperty.property().setValue(builder, n.newValue());
-                            S1 newValue = builder.build();
-                            return Notification.create(oldValue, newValue, n.sequenceNumber());
-                        })
-                        .blockingIterable());
+                .build())
+                .map(Notification::newValue)
+                .flatMapIterable(obj -> Optional
+                        .ofNullable(referenceGetter.apply(obj))
+                        .map(metaClassWithKey::keyOf)
+                        .map(notificationsByKey::get)
+                        .<List<Notification<S1>>>map(notifications -> notifications
+                                .stream()
+                                .map(n -> {
+                                    MetaBuilder<S1> builder = ((HasMetaClass<S1>)obj).toBuilder();
+                                    referenceProperty.property().setValue(builder, n.oldValue());
+                                    S1 oldValue = builder.build();
+                                    referenceProperty.property().setValue(builder, n.newValue());
+                                    S1 newValue = builder.build();
+                                    return Notification.create(oldValue, newValue, n.sequenceNumber());
+                                })
+                                .collect(Collectors.toList()))
+                        .orElse(Collections.emptyList()))
+                .toSortedList(Comparator.<Notification<S1>, Long>comparing(Notification::sequenceNumber, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .flattenAsObservable(notifications -> notifications);
     }
 
     @SuppressWarnings("UnstableApiUsage")
@@ -152,10 +217,11 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
                 .orElse(null);
     }
 
-    private <S, KT, T> ObjectExpression<S, Boolean> matchReferenceId(T referencedObject, PropertyExpression<S, S, T> referenceProperty, MetaClassWithKey<KT, T> metaClass) {
-        return PropertyExpression
-                .ofObject(referenceProperty, metaClass.keyProperty())
-                .eq(metaClass.keyOf(referencedObject));
+    private <S, KT, T> ObjectExpression<S, Boolean> matchReferenceIds(Collection<KT> keys, PropertyExpression<S, S, T> referenceProperty, MetaClassWithKey<KT, T> metaClass) {
+        ObjectExpression<S, KT> keyProperty = PropertyExpression.ofObject(referenceProperty, metaClass.keyProperty());
+        return keys.size() == 1
+                ? keyProperty.eq(keys.iterator().next())
+                : keyProperty.in(keys);
     }
 
     private <K, S> Observable<Notification<S>> observeReference(MetaClassWithKey<K, S> metaClass, ImmutableSet<PropertyExpression<S, ?, ?>> properties) {
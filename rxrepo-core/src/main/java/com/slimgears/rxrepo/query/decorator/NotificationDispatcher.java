@@ -0,0 +1,191 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.expressions.*;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.util.Expressions;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.disposables.Disposable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+@SuppressWarnings("unchecked")
+class NotificationDispatcher<S> {
+    private final static Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+    private final Observable<Notification<S>> upstream;
+    private final Map<PropertyExpression<S, ?, ?>, Route<S>> routes = new ConcurrentHashMap<>();
+    private final Set<ObservableEmitter<Notification<S>>> unroutedEmitters = ConcurrentHashMap.newKeySet();
+    private int subscriberCount;
+    private Disposable upstreamSubscription;
+
+    private NotificationDispatcher(Observable<Notification<S>> upstream) {
+        this.upstream = upstream;
+    }
+
+    static <S> NotificationDispatcher<S> create(Observable<Notification<S>> upstream) {
+        return new NotificationDispatcher<>(upstream);
+    }
+
+    Observable<Notification<S>> observe(ObjectExpression<S, Boolean> predicate) {
+        Optional<Term<S>> term = Optional.ofNullable(predicate).flatMap(NotificationDispatcher::routingTermOf);
+        return Observable.create(emitter -> {
+            term.ifPresent(t -> routes.computeIfAbsent(t.property, Route::new).add(t.values, emitter));
+            if (!term.isPresent()) {
+                unroutedEmitters.add(emitter);
+            }
+            emitter.setCancellable(() -> {
+                term.ifPresent(t -> routes.get(t.property).remove(t.values, emitter));
+                unroutedEmitters.remove(emitter);
+                onUnsubscribed();
+            });
+            onSubscribed();
+        });
+    }
+
+    private synchronized void onSubscribed() {
+        if (subscriberCount++ == 0) {
+            upstreamSubscription = upstream.subscribe(this::dispatch, this::dispatchError, this::dispatchComplete);
+        }
+    }
+
+    private synchronized void onUnsubscribed() {
+        if (--subscriberCount == 0 && upstreamSubscription != null) {
+            upstreamSubscription.dispose();
+            upstreamSubscription = null;
+        }
+    }
+
+    private void dispatch(Notification<S> notification) {
+        if (notification.isEmpty()) {
+            allEmitters().forEach(emitter -> emitter.onNext(notification));
+            return;
+        }
+
+        Set<ObservableEmitter<Notification<S>>> emitters = new LinkedHashSet<>(unroutedEmitters);
+        routes.values().forEach(route -> route.collect(notification, emitters));
+        log.trace("Dispatching notification to {} of {} subscribers", emitters.size(), subscriberCount);
+        emitters.forEach(emitter -> emitter.onNext(notification));
+    }
+
+    private void dispatchError(Throwable error) {
+        allEmitters().forEach(emitter -> emitter.tryOnError(error));
+    }
+
+    private void dispatchComplete() {
+        allEmitters().forEach(ObservableEmitter::onComplete);
+    }
+
+    private Stream<ObservableEmitter<Notification<S>>> allEmitters() {
+        return Stream.concat(
+                unroutedEmitters.stream(),
+                routes.values().stream().flatMap(Route::emitters))
+                .distinct();
+    }
+
+    private static <S> Optional<Term<S>> routingTermOf(ObjectExpression<S, Boolean> predicate) {
+        ObjectExpression<S, ?> exp = unwrap(predicate);
+        switch (exp.type()) {
+            case And: {
+                BinaryOperationExpression<S, ?, ?, ?> and = (BinaryOperationExpression<S, ?, ?, ?>)exp;
+                Optional<Term<S>> left = routingTermOf((ObjectExpression<S, Boolean>)and.left());
+                return left.isPresent() ? left : routingTermOf((ObjectExpression<S, Boolean>)and.right());
+            }
+            case Equals: {
+                BinaryOperationExpression<S, ?, ?, ?> eq = (BinaryOperationExpression<S, ?, ?, ?>)exp;
+                Optional<Term<S>> left = termOf(eq.left(), eq.right(), Collections::singleton);
+                return left.isPresent() ? left : termOf(eq.right(), eq.left(), Collections::singleton);
+            }
+            case ValueIn: {
+                BinaryOperationExpression<S, ?, ?, ?> in = (BinaryOperationExpression<S, ?, ?, ?>)exp;
+                return termOf(in.left(), in.right(), value -> (Collection<Object>)value);
+            }
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private static <S> Optional<Term<S>> termOf(ObjectExpression<S, ?> propertyExp, ObjectExpression<S, ?> valueExp, Function<Object, Collection<Object>> valuesOf) {
+        ObjectExpression<S, ?> property = unwrap(propertyExp);
+        ObjectExpression<S, ?> value = unwrap(valueExp);
+        if (!(property instanceof PropertyExpression) || !isArgumentProperty((PropertyExpression<S, ?, ?>)property) || !(value instanceof ConstantExpression)) {
+            return Optional.empty();
+        }
+        Object constant = ((ConstantExpression<S, ?>)value).value();
+        Collection<Object> values = constant != null ? valuesOf.apply(constant) : null;
+        return values != null && values.stream().allMatch(Objects::nonNull)
+                ? Optional.of(new Term<>((PropertyExpression<S, ?, ?>)property, values))
+                : Optional.empty();
+    }
+
+    private static boolean isArgumentProperty(PropertyExpression<?, ?, ?> property) {
+        ObjectExpression<?, ?> target = unwrap(property.target());
+        return target instanceof ArgumentExpression
+                || (target instanceof PropertyExpression && isArgumentProperty((PropertyExpression<?, ?, ?>)target));
+    }
+
+    private static <S, T> ObjectExpression<S, T> unwrap(ObjectExpression<S, T> expression) {
+        ObjectExpression<S, ?> exp = expression;
+        while (exp instanceof DelegateExpression && !(exp instanceof PropertyExpression)) {
+            exp = ((DelegateExpression<S, ?>)exp).delegate();
+        }
+        return (ObjectExpression<S, T>)exp;
+    }
+
+    private static class Term<S> {
+        private final PropertyExpression<S, ?, ?> property;
+        private final Collection<Object> values;
+
+        private Term(PropertyExpression<S, ?, ?> property, Collection<Object> values) {
+            this.property = property;
+            this.values = values;
+        }
+    }
+
+    private static class Route<S> {
+        private final Function<S, ?> getter;
+        private final Map<Object, Set<ObservableEmitter<Notification<S>>>> emittersByValue = new ConcurrentHashMap<>();
+
+        private Route(PropertyExpression<S, ?, ?> property) {
+            this.getter = Expressions.compile(property);
+        }
+
+        void add(Collection<Object> values, ObservableEmitter<Notification<S>> emitter) {
+            values.forEach(value -> emittersByValue.computeIfAbsent(value, v -> ConcurrentHashMap.newKeySet()).add(emitter));
+        }
+
+        void remove(Collection<Object> values, ObservableEmitter<Notification<S>> emitter) {
+            values.forEach(value -> emittersByValue.computeIfPresent(value, (v, emitters) -> {
+                emitters.remove(emitter);
+                return emitters.isEmpty() ? null : emitters;
+            }));
+        }
+
+        void collect(Notification<S> notification, Set<ObservableEmitter<Notification<S>>> target) {
+            if (emittersByValue.isEmpty()) {
+                return;
+            }
+            try {
+                collect(notification.oldValue(), target);
+                collect(notification.newValue(), target);
+            } catch (RuntimeException e) {
+                emitters().forEach(target::add);
+            }
+        }
+
+        Stream<ObservableEmitter<Notification<S>>> emitters() {
+            return emittersByValue.values().stream().flatMap(Set::stream);
+        }
+
+        private void collect(S object, Set<ObservableEmitter<Notification<S>>> target) {
+            Optional.ofNullable(object)
+                    .map(getter)
+                    .map(emittersByValue::get)
+                    .ifPresent(target::addAll);
+        }
+    }
+}
@@ -34,7 +34,7 @@ public abstract class AbstractEntityQueryProviderAdapter implements QueryProvide
 
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
-        return entities(query.metaClass()).liveQuery(query);
+        return entities(query.metaClass()).liveQuery(QueryInfos.bindArguments(query));
     }
 
     @Override
@@ -75,7 +75,7 @@ public abstract class AbstractEntityQueryProviderAdapter implements QueryProvide
 
     @Override
     public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        return entities(query.metaClass()).liveAggregate(query, aggregator);
+        return entities(query.metaClass()).liveAggregate(QueryInfos.bindArguments(query), aggregator);
     }
 
     @Override
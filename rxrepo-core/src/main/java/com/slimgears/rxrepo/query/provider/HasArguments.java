@@ -0,0 +1,7 @@
+package com.slimgears.rxrepo.query.provider;
+
+import com.google.common.collect.ImmutableList;
+
+public interface HasArguments {
+    ImmutableList<Object> arguments();
+}
@@ -13,7 +13,8 @@ public interface QueryInfoPrototype<K, S, T> extends
         HasProperties<T>,
         HasMapping<S, T>,
         HasSortingInfo<S>,
-        HasPagination {
+        HasPagination,
+        HasArguments {
     @SuppressWarnings("unchecked")
     default TypeToken<T> objectType() {
         return Optional
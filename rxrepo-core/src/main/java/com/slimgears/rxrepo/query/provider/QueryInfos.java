@@ -1,14 +1,20 @@
 package com.slimgears.rxrepo.query.provider;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
 import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.expressions.internal.ObjectConstantExpression;
+import com.slimgears.rxrepo.query.QueryParameter;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -39,11 +45,47 @@ public class QueryInfos {
                         .predicate(query.predicate())
                         .limit(query.limit())
                         .skip(query.skip())
+                        .arguments(query.arguments())
                         .properties(PropertyExpressions.unmapProperties(query.properties(), query.mapping()))
                         .build())
                 .orElseGet(() -> (QueryInfo<K, S, S>)query);
     }
 
+    public static <K, S, T> QueryInfo<K, S, T> bindArguments(QueryInfo<K, S, T> query) {
+        if (query.arguments().isEmpty()) {
+            return query;
+        }
+        ObjectExpression.Converter converter = argumentsBinder(query.arguments());
+        return query.toBuilder()
+                .predicate(Optional.ofNullable(query.predicate()).map(p -> p.reflect().convert(converter)).orElse(null))
+                .mapping(Optional.ofNullable(query.mapping()).map(m -> m.reflect().convert(converter)).orElse(null))
+                .arguments(ImmutableList.of())
+                .build();
+    }
+
+    public static boolean isParameter(Object value) {
+        return value instanceof QueryParameter;
+    }
+
+    public static Object argumentOf(QueryParameter parameter, List<Object> arguments) {
+        if (parameter.index() < 0 || parameter.index() >= arguments.size()) {
+            throw new IllegalArgumentException("No argument bound to query parameter " + parameter + " (" + arguments.size() + " arguments)");
+        }
+        return arguments.get(parameter.index());
+    }
+
+    private static ObjectExpression.Converter argumentsBinder(List<Object> arguments) {
+        return new ObjectExpression.Converter() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <S, T> ObjectExpression<S, T> convert(ObjectExpression<S, T> expression) {
+                return expression instanceof ConstantExpression && isParameter(((ConstantExpression<S, T>)expression).value())
+                        ? ObjectConstantExpression.create(expression.type(), (T)argumentOf((QueryParameter)((ConstantExpression<S, T>)expression).value(), arguments))
+                        : expression;
+            }
+        };
+    }
+
     public static <K, S, T> QueryInfo<K, S, T> includeMandatoryProperties(QueryInfo<K, S, T> queryInfo) {
         return queryInfo.properties().isEmpty()
                 ? queryInfo
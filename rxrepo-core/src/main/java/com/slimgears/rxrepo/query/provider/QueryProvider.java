@@ -45,6 +45,8 @@ public interface QueryProvider extends AutoCloseable {
                 .toSingle();
     }
 
+    // Re-runs aggregation, as live notifications of a provider may lack values before change
+    // (required by incremental LiveAggregations)
     default <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return liveQuery(query)
             .debounce(500, TimeUnit.MILLISECONDS)
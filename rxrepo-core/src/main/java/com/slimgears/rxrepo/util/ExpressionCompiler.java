@@ -0,0 +1,484 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.slimgears.rxrepo.expressions.*;
+import com.slimgears.rxrepo.query.QueryParameter;
+import com.slimgears.rxrepo.query.provider.QueryInfos;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Compiles expressions into trees of specialized nodes: property getters are called directly, comparisons
+ * against numeric constants are done on primitives and boolean operations do not box intermediate results.
+ * Compiled templates are cached by expression shape (expression with constants replaced by their types),
+ * constant values are bound to the template on every call, so the cache does not retain query constants.
+ * Query parameters are resolved to their arguments when constants are bound.
+ * Operations without a specialized node are delegated to the closure-based reducers of {@link Expressions}.
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+class ExpressionCompiler {
+    private final static int maxCacheSize = 10000;
+    private final static int minHashedCollectionSize = 8;
+    private final static Object[] noConstants = new Object[0];
+    private final static Cache<List<Object>, Template> cache = CacheBuilder.newBuilder()
+            .maximumSize(maxCacheSize)
+            .build();
+    private final static Template argumentTemplate = constants -> ArgumentNode.instance;
+
+    private final List<Object> arguments;
+    private int constantCount;
+    private boolean cacheable = true;
+    private boolean reusable = true;
+
+    private ExpressionCompiler(List<Object> arguments) {
+        this.arguments = arguments;
+    }
+
+    static Function compile(ObjectExpression<?, ?> expression, List<Object> arguments) {
+        List<Object> shape = new ArrayList<>();
+        List<Object> constants = new ArrayList<>();
+        collectShape(expression, arguments, shape, constants);
+
+        Template template = cache.getIfPresent(shape);
+        if (template == null) {
+            ExpressionCompiler compiler = new ExpressionCompiler(arguments);
+            template = compiler.compileTemplate(expression);
+            if (compiler.cacheable) {
+                cache.put(shape, template);
+            }
+        }
+        return template.bind(constants.isEmpty() ? noConstants : constants.toArray());
+    }
+
+    static long cacheSize() {
+        return cache.size();
+    }
+
+    private interface Template {
+        Function bind(Object[] constants);
+    }
+
+    private static class ConstantTemplate implements Template {
+        private final int index;
+        private final Class<?> valueClass;
+
+        private ConstantTemplate(int index, Class<?> valueClass) {
+            this.index = index;
+            this.valueClass = valueClass;
+        }
+
+        @Override
+        public Function bind(Object[] constants) {
+            return new ConstantNode(constants[index]);
+        }
+    }
+
+    // Traversal order must match compileExpression(), so that constants are collected in order of template indices
+    private static void collectShape(Expression expression, List<Object> arguments, List<Object> shape, List<Object> constants) {
+        if (expression instanceof PropertyExpression) {
+            PropertyExpression<?, ?, ?> property = (PropertyExpression<?, ?, ?>)expression;
+            shape.add(property.type());
+            shape.add(property.property());
+            collectShape(property.target(), arguments, shape, constants);
+        } else if (expression instanceof UnaryOperationExpression) {
+            shape.add(expression.type());
+            collectShape(((UnaryOperationExpression<?, ?, ?>)expression).operand(), arguments, shape, constants);
+        } else if (expression instanceof BinaryOperationExpression) {
+            BinaryOperationExpression<?, ?, ?, ?> binary = (BinaryOperationExpression<?, ?, ?, ?>)expression;
+            shape.add(expression.type());
+            collectShape(binary.left(), arguments, shape, constants);
+            collectShape(binary.right(), arguments, shape, constants);
+        } else if (expression instanceof ConstantExpression) {
+            Object value = valueOf((ConstantExpression<?, ?>)expression, arguments);
+            shape.add(expression.type());
+            shape.add(value != null ? value.getClass() : null);
+            constants.add(value);
+        } else if (expression instanceof ComposedExpression) {
+            ComposedExpression<?, ?, ?> composed = (ComposedExpression<?, ?, ?>)expression;
+            shape.add(expression.type());
+            collectShape(composed.source(), arguments, shape, constants);
+            collectShape(composed.expression(), arguments, shape, constants);
+        } else if (expression instanceof ArgumentExpression) {
+            shape.add(expression.type());
+        } else if (expression instanceof DelegateExpression) {
+            collectShape(((DelegateExpression<?, ?>)expression).delegate(), arguments, shape, constants);
+        } else {
+            shape.add(expression);
+        }
+    }
+
+    private static Object valueOf(ConstantExpression<?, ?> expression, List<Object> arguments) {
+        Object value = expression.value();
+        return !arguments.isEmpty() && QueryInfos.isParameter(value)
+                ? QueryInfos.argumentOf((QueryParameter)value, arguments)
+                : value;
+    }
+
+    private Template compileTemplate(ObjectExpression<?, ?> expression) {
+        Template template = compileExpression(expression);
+        if (!reusable || constantCount > 0) {
+            return template;
+        }
+        Function function = template.bind(noConstants);
+        return constants -> function;
+    }
+
+    private Template compileExpression(Expression expression) {
+        if (expression instanceof PropertyExpression) {
+            return compileProperty((PropertyExpression<?, ?, ?>)expression);
+        } else if (expression instanceof UnaryOperationExpression) {
+            return compileUnary((UnaryOperationExpression<?, ?, ?>)expression);
+        } else if (expression instanceof BinaryOperationExpression) {
+            return compileBinary((BinaryOperationExpression<?, ?, ?, ?>)expression);
+        } else if (expression instanceof ConstantExpression) {
+            Object value = valueOf((ConstantExpression<?, ?>)expression, arguments);
+            return new ConstantTemplate(constantCount++, value != null ? value.getClass() : null);
+        } else if (expression instanceof ComposedExpression) {
+            ComposedExpression<?, ?, ?> composed = (ComposedExpression<?, ?, ?>)expression;
+            Template source = compileExpression(composed.source());
+            Template target = compileExpression(composed.expression());
+            return constants -> new CompositionNode(source.bind(constants), target.bind(constants));
+        } else if (expression instanceof ArgumentExpression) {
+            return argumentTemplate;
+        } else if (expression instanceof DelegateExpression) {
+            return compileExpression(((DelegateExpression<?, ?>)expression).delegate());
+        }
+        cacheable = false;
+        Function function = Expressions.compileClosures((ObjectExpression<?, ?>)expression);
+        return constants -> function;
+    }
+
+    private Template compileProperty(PropertyExpression<?, ?, ?> expression) {
+        PropertyMeta property = expression.property();
+        Class<?> declaringClass = property.declaringType().asClass();
+        Template target = compileExpression(expression.target());
+        if (target == argumentTemplate) {
+            Function function = new ArgumentPropertyNode(property, declaringClass);
+            return constants -> function;
+        }
+        return constants -> new PropertyNode(target.bind(constants), property, declaringClass);
+    }
+
+    private Template compileUnary(UnaryOperationExpression<?, ?, ?> expression) {
+        Template operand = compileExpression(expression.operand());
+        Expression.Type type = expression.type();
+        switch (type) {
+            case Not: return constants -> new NotNode(operand.bind(constants));
+            case IsNull: return constants -> new IsNullNode(operand.bind(constants));
+            case SequenceNumber:
+                // Current sequence number is captured when the template is bound
+                reusable = false;
+                return constants -> Expressions.reduce(type, operand.bind(constants));
+            default: return constants -> Expressions.reduce(type, operand.bind(constants));
+        }
+    }
+
+    private Template compileBinary(BinaryOperationExpression<?, ?, ?, ?> expression) {
+        Template left = compileExpression(expression.left());
+        Template right = compileExpression(expression.right());
+        Expression.Type type = expression.type();
+        switch (type) {
+            case And: return constants -> new AndNode(left.bind(constants), right.bind(constants));
+            case Or: return constants -> new OrNode(left.bind(constants), right.bind(constants));
+            case Equals: return right instanceof ConstantTemplate
+                    ? constants -> new EqualsConstantNode(left.bind(constants), constants[((ConstantTemplate)right).index])
+                    : constants -> new EqualsNode(left.bind(constants), right.bind(constants));
+            case GreaterThan: return compileComparison(left, right, 1);
+            case LessThan: return compileComparison(left, right, -1);
+            case ValueIn: return right instanceof ConstantTemplate
+                    ? constants -> new ValueInConstantNode(left.bind(constants), (Collection<?>)constants[((ConstantTemplate)right).index])
+                    : constants -> Expressions.reduce(type, left.bind(constants), right.bind(constants));
+            default: return constants -> Expressions.reduce(type, left.bind(constants), right.bind(constants));
+        }
+    }
+
+    private Template compileComparison(Template left, Template right, int sign) {
+        if (right instanceof ConstantTemplate) {
+            int index = ((ConstantTemplate)right).index;
+            Class<?> valueClass = ((ConstantTemplate)right).valueClass;
+            if (valueClass == Integer.class || valueClass == Long.class || valueClass == Short.class || valueClass == Byte.class) {
+                return constants -> new CompareToLongConstantNode(left.bind(constants), valueClass, ((Number)constants[index]).longValue(), sign);
+            } else if (valueClass == Double.class || valueClass == Float.class) {
+                return constants -> new CompareToDoubleConstantNode(left.bind(constants), valueClass, ((Number)constants[index]).doubleValue(), sign);
+            }
+        }
+        return constants -> new CompareNode(left.bind(constants), right.bind(constants), sign);
+    }
+
+    private static boolean test(Function function, Object value) {
+        return function instanceof BooleanNode
+                ? ((BooleanNode)function).test(value)
+                : (boolean)function.apply(value);
+    }
+
+    private abstract static class BooleanNode implements Function<Object, Object> {
+        abstract boolean test(Object value);
+
+        @Override
+        public final Object apply(Object value) {
+            return test(value);
+        }
+    }
+
+    private final static class ArgumentNode implements Function<Object, Object> {
+        private final static ArgumentNode instance = new ArgumentNode();
+
+        @Override
+        public Object apply(Object value) {
+            return value;
+        }
+    }
+
+    private final static class ConstantNode implements Function<Object, Object> {
+        private final Object value;
+
+        private ConstantNode(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object apply(Object ignored) {
+            return value;
+        }
+    }
+
+    private final static class CompositionNode implements Function<Object, Object> {
+        private final Function first;
+        private final Function second;
+
+        private CompositionNode(Function first, Function second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public Object apply(Object value) {
+            return second.apply(first.apply(value));
+        }
+    }
+
+    private final static class ArgumentPropertyNode implements Function<Object, Object> {
+        private final PropertyMeta property;
+        private final Class<?> declaringClass;
+
+        private ArgumentPropertyNode(PropertyMeta property, Class<?> declaringClass) {
+            this.property = property;
+            this.declaringClass = declaringClass;
+        }
+
+        @Override
+        public Object apply(Object value) {
+            return declaringClass.isInstance(value) ? property.getValue(value) : null;
+        }
+    }
+
+    private final static class PropertyNode implements Function<Object, Object> {
+        private final Function target;
+        private final PropertyMeta property;
+        private final Class<?> declaringClass;
+
+        private PropertyNode(Function target, PropertyMeta property, Class<?> declaringClass) {
+            this.target = target;
+            this.property = property;
+            this.declaringClass = declaringClass;
+        }
+
+        @Override
+        public Object apply(Object value) {
+            Object targetValue = target.apply(value);
+            return declaringClass.isInstance(targetValue) ? property.getValue(targetValue) : null;
+        }
+    }
+
+    private final static class AndNode extends BooleanNode {
+        private final Function left;
+        private final Function right;
+
+        private AndNode(Function left, Function right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(Object value) {
+            return ExpressionCompiler.test(left, value) && ExpressionCompiler.test(right, value);
+        }
+    }
+
+    private final static class OrNode extends BooleanNode {
+        private final Function left;
+        private final Function right;
+
+        private OrNode(Function left, Function right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(Object value) {
+            return ExpressionCompiler.test(left, value) || ExpressionCompiler.test(right, value);
+        }
+    }
+
+    private final static class NotNode extends BooleanNode {
+        private final Function operand;
+
+        private NotNode(Function operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean test(Object value) {
+            return operand instanceof BooleanNode
+                    ? !((BooleanNode)operand).test(value)
+                    : Boolean.FALSE.equals(operand.apply(value));
+        }
+    }
+
+    private final static class IsNullNode extends BooleanNode {
+        private final Function operand;
+
+        private IsNullNode(Function operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean test(Object value) {
+            return operand.apply(value) == null;
+        }
+    }
+
+    private final static class EqualsNode extends BooleanNode {
+        private final Function left;
+        private final Function right;
+
+        private EqualsNode(Function left, Function right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(Object value) {
+            return Objects.equals(left.apply(value), right.apply(value));
+        }
+    }
+
+    private final static class EqualsConstantNode extends BooleanNode {
+        private final Function left;
+        private final Object constant;
+
+        private EqualsConstantNode(Function left, Object constant) {
+            this.left = left;
+            this.constant = constant;
+        }
+
+        @Override
+        boolean test(Object value) {
+            return Objects.equals(left.apply(value), constant);
+        }
+    }
+
+    private final static class ValueInConstantNode extends BooleanNode {
+        private final Function left;
+        private final Collection<?> values;
+
+        private ValueInConstantNode(Function left, Collection<?> values) {
+            this.left = left;
+            this.values = values != null && values.size() >= minHashedCollectionSize && !(values instanceof Set)
+                    ? new HashSet<>(values)
+                    : values;
+        }
+
+        @Override
+        boolean test(Object value) {
+            Object leftValue = left.apply(value);
+            return leftValue != null && values != null && values.contains(leftValue);
+        }
+    }
+
+    private final static class CompareNode extends BooleanNode {
+        private final Function left;
+        private final Function right;
+        private final int sign;
+
+        private CompareNode(Function left, Function right, int sign) {
+            this.left = left;
+            this.right = right;
+            this.sign = sign;
+        }
+
+        @Override
+        boolean test(Object value) {
+            Comparable leftValue = (Comparable)left.apply(value);
+            Comparable rightValue = (Comparable)right.apply(value);
+            return leftValue != null && rightValue != null && Integer.signum(leftValue.compareTo(rightValue)) == sign;
+        }
+    }
+
+    private final static class CompareToLongConstantNode extends BooleanNode {
+        private final Function left;
+        private final Class<?> constantClass;
+        private final long constant;
+        private final int sign;
+
+        private CompareToLongConstantNode(Function left, Class<?> constantClass, long constant, int sign) {
+            this.left = left;
+            this.constantClass = constantClass;
+            this.constant = constant;
+            this.sign = sign;
+        }
+
+        @Override
+        boolean test(Object value) {
+            Object leftValue = left.apply(value);
+            if (leftValue == null) {
+                return false;
+            }
+            int result = leftValue.getClass() == constantClass
+                    ? Long.compare(((Number)leftValue).longValue(), constant)
+                    : ((Comparable)leftValue).compareTo(constantValue());
+            return Integer.signum(result) == sign;
+        }
+
+        private Object constantValue() {
+            if (constantClass == Integer.class) return (int)constant;
+            if (constantClass == Short.class) return (short)constant;
+            if (constantClass == Byte.class) return (byte)constant;
+            return constant;
+        }
+    }
+
+    private final static class CompareToDoubleConstantNode extends BooleanNode {
+        private final Function left;
+        private final Class<?> constantClass;
+        private final double constant;
+        private final int sign;
+
+        private CompareToDoubleConstantNode(Function left, Class<?> constantClass, double constant, int sign) {
+            this.left = left;
+            this.constantClass = constantClass;
+            this.constant = constant;
+            this.sign = sign;
+        }
+
+        @Override
+        boolean test(Object value) {
+            Object leftValue = left.apply(value);
+            if (leftValue == null) {
+                return false;
+            }
+            int result = leftValue.getClass() == constantClass
+                    ? Double.compare(((Number)leftValue).doubleValue(), constant)
+                    : ((Comparable)leftValue).compareTo(constantClass == Float.class ? (Object)(float)constant : (Object)constant);
+            return Integer.signum(result) == sign;
+        }
+    }
+}
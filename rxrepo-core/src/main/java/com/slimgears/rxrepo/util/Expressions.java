@@ -26,8 +26,20 @@ public class Expressions {
         return currentSequenceNumber;
     }
 
-    @SuppressWarnings("unchecked")
     public static <S, T> Function<S, T> compile(ObjectExpression<S, T> exp) {
+        return compile(exp, Collections.emptyList());
+    }
+
+    // Query parameters of expression are bound to arguments, without converting the expression
+    @SuppressWarnings("unchecked")
+    public static <S, T> Function<S, T> compile(ObjectExpression<S, T> exp, List<Object> arguments) {
+        return exp != null
+                ? (Function<S, T>)ExpressionCompiler.compile(exp, arguments)
+                : (Function<S, T>)Function.identity();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <S, T> Function<S, T> compileClosures(ObjectExpression<S, T> exp) {
         return exp != null
                 ? (Function<S, T>)new InternalVisitor().visit(exp, null)
                 : (Function<S, T>)Function.identity();
@@ -52,8 +64,12 @@ public class Expressions {
     }
 
     public static <S> Predicate<S> compilePredicate(ObjectExpression<S, Boolean> predicateExp) {
+        return compilePredicate(predicateExp, Collections.emptyList());
+    }
+
+    public static <S> Predicate<S> compilePredicate(ObjectExpression<S, Boolean> predicateExp, List<Object> arguments) {
         return predicateExp != null
-                ? compile(predicateExp)::apply
+                ? compile(predicateExp, arguments)::apply
                 : e -> true;
     }
 
@@ -61,6 +77,10 @@ public class Expressions {
         return compilePredicate(predicateExp)::test;
     }
 
+    public static <S> io.reactivex.functions.Predicate<S> compileRxPredicate(ObjectExpression<S, Boolean> predicateExp, List<Object> arguments) {
+        return compilePredicate(predicateExp, arguments)::test;
+    }
+
     public static <S, T> io.reactivex.functions.Function<S, T> compileRx(ObjectExpression<S, T> exp) {
         return compile(exp)::apply;
     }
@@ -139,6 +159,10 @@ public class Expressions {
         };
     }
 
+    static Function reduce(Expression.Type type, Function... functions) {
+        return InternalVisitor.reduce(type, functions);
+    }
+
     private static class InternalVisitor extends ExpressionVisitor<Void, Function> {
         @SuppressWarnings("unchecked")
         private final static ImmutableMap<Expression.Type, Function<Function[], Function>> expressionTypeReducersMap = ImmutableMap.<Expression.Type, Function<Function[], Function>>builder()
@@ -0,0 +1,275 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.collect.ImmutableSet;
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.disposables.SerialDisposable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class LiveAggregations {
+    private final static Logger log = LoggerFactory.getLogger(LiveAggregations.class);
+    private final static ImmutableSet<Expression.Type> supportedTypes = ImmutableSet.of(
+            Expression.Type.Count,
+            Expression.Type.Sum,
+            Expression.Type.Average,
+            Expression.Type.Min,
+            Expression.Type.Max);
+
+    public static boolean isSupported(QueryInfo<?, ?, ?> query, Aggregator<?, ?, ?> aggregator) {
+        return query.limit() == null
+                && query.skip() == null
+                && supportedTypes.contains(typeOf(aggregator));
+    }
+
+    /**
+     * Seeds the aggregation by folding the rows of one query, then applies live notifications to it.
+     * Notifications received while seeding are buffered and only the ones newer than the query are applied
+     * (see {@link Queries#queryAndObserve}). Notifications must carry the value before change, as modifications
+     * without it cannot be told from creations.
+     */
+    public static <K, S, T, R> Observable<R> liveAggregate(QueryProvider queryProvider, QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator, Duration reseedDelay) {
+        Expression.Type type = typeOf(aggregator);
+        Observable<Notification<T>> notifications = Observable.defer(() -> queryProvider.queryAndObserve(query, query));
+        return Observable.<R>create(emitter -> new Session<T, R>(emitter, () -> createAccumulator(type), notifications, reseedDelay).start())
+                .distinctUntilChanged();
+    }
+
+    private static Expression.Type typeOf(Aggregator<?, ?, ?> aggregator) {
+        return ((Aggregator<Object, Object, ?>)aggregator)
+                .apply(ConstantExpression.<Object, Object, List<Object>>of(Collections.emptyList()))
+                .type();
+    }
+
+    private static Accumulator createAccumulator(Expression.Type type) {
+        switch (type) {
+            case Count: return new CountAccumulator();
+            case Sum: return new SumAccumulator();
+            case Average: return new AverageAccumulator();
+            case Min: return new ExtremeAccumulator(1);
+            case Max: return new ExtremeAccumulator(-1);
+            default: throw new IllegalArgumentException("Not supported aggregation: " + type);
+        }
+    }
+
+    private static class Session<T, R> {
+        private final ObservableEmitter<R> emitter;
+        private final Supplier<Accumulator<T, R>> accumulatorFactory;
+        private final Observable<Notification<T>> notifications;
+        private final Duration reseedDelay;
+        private final SerialDisposable subscription = new SerialDisposable();
+        private Accumulator<T, R> accumulator;
+        private boolean seeding;
+
+        private Session(ObservableEmitter<R> emitter, Supplier<Accumulator<T, R>> accumulatorFactory, Observable<Notification<T>> notifications, Duration reseedDelay) {
+            this.emitter = emitter;
+            this.accumulatorFactory = accumulatorFactory;
+            this.notifications = notifications;
+            this.reseedDelay = reseedDelay;
+        }
+
+        void start() {
+            emitter.setDisposable(subscription);
+            seed(notifications);
+        }
+
+        // Notifications of replaced subscription, which may still be in flight, are ignored
+        private synchronized void seed(Observable<Notification<T>> notifications) {
+            Accumulator<T, R> accumulator = accumulatorFactory.get();
+            this.accumulator = accumulator;
+            this.seeding = true;
+            subscription.set(notifications.subscribe(
+                    notification -> onNotification(accumulator, notification),
+                    emitter::tryOnError,
+                    emitter::onComplete));
+        }
+
+        // Query rows arrive as creations, followed by an empty notification once the query is complete
+        private synchronized void onNotification(Accumulator<T, R> accumulator, Notification<T> notification) {
+            if (accumulator != this.accumulator) {
+                return;
+            }
+            if (notification.isEmpty()) {
+                if (seeding) {
+                    seeding = false;
+                    emitResult();
+                }
+                return;
+            }
+            if (!apply(notification)) {
+                log.trace("Could not apply notification to aggregation, reseeding");
+                seed(notifications.delaySubscription(reseedDelay.toMillis(), TimeUnit.MILLISECONDS));
+            } else if (!seeding) {
+                emitResult();
+            }
+        }
+
+        private boolean apply(Notification<T> notification) {
+            if (notification.isCreate()) {
+                return accumulator.add(notification.newValue());
+            } else if (notification.isDelete()) {
+                return accumulator.remove(notification.oldValue());
+            } else {
+                return accumulator.modify(notification.oldValue(), notification.newValue());
+            }
+        }
+
+        private void emitResult() {
+            accumulator.result().ifPresent(emitter::onNext);
+        }
+    }
+
+    // Like the backend aggregations, sum, average, min and max skip null values
+    private interface Accumulator<T, R> {
+        boolean add(T value);
+        boolean remove(T value);
+        Optional<R> result();
+
+        default boolean modify(T oldValue, T newValue) {
+            return remove(oldValue) && add(newValue);
+        }
+    }
+
+    private static class CountAccumulator<T> implements Accumulator<T, Long> {
+        private long count;
+
+        @Override
+        public boolean add(T value) {
+            ++count;
+            return true;
+        }
+
+        @Override
+        public boolean remove(T value) {
+            --count;
+            return true;
+        }
+
+        @Override
+        public boolean modify(T oldValue, T newValue) {
+            return true;
+        }
+
+        @Override
+        public Optional<Long> result() {
+            return Optional.of(count);
+        }
+    }
+
+    private static class SumAccumulator<T extends Number> implements Accumulator<T, T> {
+        private T sum;
+        private long count;
+
+        @Override
+        public boolean add(T value) {
+            if (value != null) {
+                ++count;
+                sum = sum != null ? GenericMath.add(sum, value) : value;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean remove(T value) {
+            if (value == null) {
+                return true;
+            }
+            if (sum == null) {
+                return false;
+            }
+            --count;
+            sum = GenericMath.subtract(sum, value);
+            return true;
+        }
+
+        @Override
+        public Optional<T> result() {
+            return count > 0 ? Optional.ofNullable(sum) : Optional.empty();
+        }
+    }
+
+    private static class AverageAccumulator<T extends Number> implements Accumulator<T, Double> {
+        private double sum;
+        private long count;
+
+        @Override
+        public boolean add(T value) {
+            if (value != null) {
+                ++count;
+                sum += value.doubleValue();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean remove(T value) {
+            if (value != null) {
+                --count;
+                sum -= value.doubleValue();
+            }
+            return true;
+        }
+
+        @Override
+        public Optional<Double> result() {
+            return count > 0 ? Optional.of(sum / count) : Optional.empty();
+        }
+    }
+
+    private static class ExtremeAccumulator<T extends Comparable<T>> implements Accumulator<T, T> {
+        private final int sign;
+        private T extreme;
+
+        private ExtremeAccumulator(int sign) {
+            this.sign = sign;
+        }
+
+        @Override
+        public boolean add(T value) {
+            if (value != null && (extreme == null || compare(value, extreme) < 0)) {
+                extreme = value;
+            }
+            return true;
+        }
+
+        // Removing current extreme requires a reseed
+        @Override
+        public boolean remove(T value) {
+            return value == null || (extreme != null && compare(value, extreme) > 0);
+        }
+
+        @Override
+        public boolean modify(T oldValue, T newValue) {
+            if (oldValue != null && newValue != null && extreme != null
+                    && compare(oldValue, extreme) == 0
+                    && compare(newValue, oldValue) <= 0) {
+                extreme = newValue;
+                return true;
+            }
+            return Accumulator.super.modify(oldValue, newValue);
+        }
+
+        @Override
+        public Optional<T> result() {
+            return Optional.ofNullable(extreme);
+        }
+
+        private int compare(T left, T right) {
+            return sign * left.compareTo(right);
+        }
+    }
+}
@@ -4,14 +4,18 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.slimgears.rxrepo.encoding.*;
+import com.slimgears.rxrepo.encoding.adapter.BinaryAdapter;
 import com.slimgears.rxrepo.encoding.adapter.JacksonAdapter;
 import com.slimgears.rxrepo.encoding.codecs.MetaDocumentCodec;
 import com.slimgears.rxrepo.encoding.codecs.StandardCodecModule;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 
 public class MetaReaderWriterTest {
     @Test
@@ -43,4 +47,30 @@ public class MetaReaderWriterTest {
             Assert.assertEquals(doc.toString(), doc2.toString());
         }
     }
+
+    @Test
+    public void testWriteToBinaryAndRead() throws IOException {
+        MetaCodecProvider codecProvider = MetaCodecs.builder()
+                .add(new StandardCodecModule())
+                .add(new MetaDocumentCodec.Provider())
+                .build();
+        MetaCodec<MetaDocument> codec = codecProvider.resolve(MetaDocument.class);
+        MetaContext context = MetaContexts.create(codecProvider);
+        MetaDocument doc = MetaDocuments.create(context)
+                .set("id", 1)
+                .set("name", "Document 1")
+                .set("nestedDoc", MetaDocument.create()
+                        .set("nestedId", 2)
+                        .set("nestedName", "Document 1.2"));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataOutput = new DataOutputStream(outputStream)) {
+            codec.encode(context.ofWriter(BinaryAdapter.writer(dataOutput)), doc);
+        }
+
+        MetaReader reader = BinaryAdapter.reader(ByteBuffer.wrap(outputStream.toByteArray()));
+        MetaDocument doc2 = codec.decode(context.ofReader(reader));
+        Assert.assertEquals(doc.toString(), doc2.toString());
+        Assert.assertTrue(reader.isFinished());
+    }
 }
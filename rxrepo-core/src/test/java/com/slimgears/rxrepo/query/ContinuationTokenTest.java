@@ -0,0 +1,57 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.Expression;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+public class ContinuationTokenTest {
+    @Test
+    public void testTokenRoundTrip() {
+        ContinuationToken token = ContinuationToken.create(
+                ImmutableList.of("name", "price", "weight", "type", "productionDate", "key.id", "key.uuid", "amount"),
+                ImmutableList.of("Product 1 ✓", 10, 1.5, Expression.Type.GreaterThan, new Date(1600000000000L), 12345678901L,
+                        UUID.fromString("9d8e6c1e-8a7b-4a53-9f53-1b1b2f6a0c11"), new BigDecimal("10.50")));
+
+        String encoded = token.toString();
+        Assert.assertTrue(encoded, encoded.matches("[A-Za-z0-9_-]+"));
+        ContinuationToken decoded = ContinuationToken.parse(encoded);
+        Assert.assertEquals(token, decoded);
+        Assert.assertEquals(token.paths(), decoded.paths());
+        Assert.assertEquals(token.values(), decoded.values());
+        Assert.assertEquals(encoded, decoded.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedTokenIsRejected() {
+        ContinuationToken.parse("not a token");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedTokenIsRejected() {
+        String encoded = ContinuationToken.create(ImmutableList.of("name"), ImmutableList.of("Product 1")).toString();
+        ContinuationToken.parse(encoded.substring(0, encoded.length() - 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonEnumClassIsRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(1);
+        output.writeInt(1);
+        output.writeUTF("type");
+        output.writeByte('e');
+        output.writeUTF(String.class.getName());
+        output.writeUTF("value");
+        output.flush();
+        ContinuationToken.parse(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray()));
+    }
+}
@@ -0,0 +1,62 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.util.Expressions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionCompilerBenchmark {
+    @Param({"closures", "specialized"})
+    public String compiler;
+
+    @Param({"10000"})
+    public int count;
+
+    private final ObjectExpression<Product, Boolean> predicate = Product.$.price.greaterThan(150)
+            .and(Product.$.name.eq("Product 1").not())
+            .and(Product.$.inventory.id.isNotNull());
+
+    private List<Product> products;
+    private Function<Product, Boolean> compiled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        products = new ArrayList<>();
+        Products.createMany(count).forEach(products::add);
+        compiled = compile();
+    }
+
+    @Benchmark
+    public int evaluate() {
+        int matched = 0;
+        for (Product product : products) {
+            if (compiled.apply(product)) {
+                ++matched;
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public Object compileOnly() {
+        return compile();
+    }
+
+    private Function<Product, Boolean> compile() {
+        return "closures".equals(compiler)
+                ? Expressions.compileClosures(predicate)
+                : Expressions.compile(predicate);
+    }
+}
@@ -0,0 +1,83 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Maybe;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemoryInsertOrUpdateBenchmark {
+    private static final int keysPerThread = 1000;
+
+    @State(Scope.Benchmark)
+    public static class ProviderState {
+        private final AtomicInteger threadCount = new AtomicInteger();
+        private MemoryQueryProvider provider;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            provider = MemoryQueryProvider.create();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            provider.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private int firstKey;
+        private int counter;
+
+        @Setup(Level.Trial)
+        public void setUp(ProviderState providerState) {
+            firstKey = providerState.threadCount.getAndIncrement() * keysPerThread;
+        }
+
+        UniqueId nextKey() {
+            return UniqueId.productId(firstKey + (counter++ % keysPerThread));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object insertOrUpdate1(ProviderState providerState, ThreadState threadState) {
+        return insertOrUpdate(providerState, threadState);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Object insertOrUpdate2(ProviderState providerState, ThreadState threadState) {
+        return insertOrUpdate(providerState, threadState);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object insertOrUpdate4(ProviderState providerState, ThreadState threadState) {
+        return insertOrUpdate(providerState, threadState);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object insertOrUpdate8(ProviderState providerState, ThreadState threadState) {
+        return insertOrUpdate(providerState, threadState);
+    }
+
+    private static Object insertOrUpdate(ProviderState providerState, ThreadState threadState) {
+        UniqueId key = threadState.nextKey();
+        return providerState.provider
+                .insertOrUpdate(Product.metaClass, key, false, product -> product
+                        .map(p -> p.toBuilder().price(p.price() + 1).build())
+                        .switchIfEmpty(Maybe.fromCallable(() -> Products.createOne(key.id()))))
+                .blockingGet();
+    }
+}
@@ -0,0 +1,60 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MemoryStorageBenchmark {
+    @Param({"false", "true"})
+    public boolean offHeap;
+
+    @Param({"1000000"})
+    public int count;
+
+    private MemoryQueryProvider provider;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long heapBefore = usedHeap();
+        provider = MemoryQueryProvider.builder().offHeap(offHeap).build();
+        provider.insert(Product.metaClass, Products.createMany(count), false).blockingAwait();
+        long heapAfter = usedHeap();
+        System.out.println();
+        System.out.println("Heap bytes per entity: " + (heapAfter - heapBefore) / count);
+        if (offHeap) {
+            System.out.println("Off-heap bytes per entity: " + provider.offHeapUsedBytes() / count);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        provider.close();
+    }
+
+    @Benchmark
+    public Object scanAll() {
+        return provider
+                .query(QueryInfo.<UniqueId, Product, Product>builder()
+                        .metaClass(Product.metaClass)
+                        .predicate(Product.$.price.greaterThan(150))
+                        .build())
+                .count()
+                .blockingGet();
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
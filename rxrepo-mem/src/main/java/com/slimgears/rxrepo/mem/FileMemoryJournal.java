@@ -0,0 +1,376 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.MetaCodecs;
+import com.slimgears.rxrepo.encoding.MetaContext;
+import com.slimgears.rxrepo.encoding.MetaContexts;
+import com.slimgears.rxrepo.encoding.adapter.BinaryAdapter;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+@SuppressWarnings("UnstableApiUsage")
+class FileMemoryJournal implements MemoryJournal {
+    private final static Logger log = LoggerFactory.getLogger(FileMemoryJournal.class);
+    private final static int snapshotMagic = 0x52585331;
+    private final static String logPrefix = "journal-";
+    private final static String snapshotPrefix = "snapshot-";
+    private final static String logSuffix = ".log";
+    private final static String snapshotSuffix = ".bin";
+    private final static int chunkSize = 1024 * 1024;
+
+    private final Path directory;
+    private final long snapshotInterval;
+    private final Supplier<Stream<Entry>> snapshotSupplier;
+    private final MetaContext context = MetaContexts.create(MetaCodecs.discover());
+    private final Map<String, MetaClassWithKey<?, ?>> metaClasses = new HashMap<>();
+    private final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    private final AtomicLong entriesSinceSnapshot = new AtomicLong();
+    private final AtomicLong sequenceNumber = new AtomicLong();
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "memory-journal-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long segment;
+    private FileChannel logChannel;
+
+    private FileMemoryJournal(Path directory, long snapshotInterval, Supplier<Stream<Entry>> snapshotSupplier) {
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        this.snapshotSupplier = snapshotSupplier;
+    }
+
+    static MemoryJournal open(Path directory, long snapshotInterval, Supplier<Stream<Entry>> snapshotSupplier) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new FileMemoryJournal(directory, snapshotInterval, snapshotSupplier);
+    }
+
+    @Override
+    public <T> T write(Supplier<T> commit) {
+        rotationLock.readLock().lock();
+        try {
+            return commit.get();
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void append(Entry entry) {
+        ByteBuffer record = encode(entry);
+        synchronized (this) {
+            try {
+                while (record.hasRemaining()) {
+                    logChannel.write(record);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        sequenceNumber.accumulateAndGet(entry.sequenceNumber, Math::max);
+        if (entriesSinceSnapshot.incrementAndGet() >= snapshotInterval && snapshotPending.compareAndSet(false, true)) {
+            snapshotExecutor.execute(this::snapshotInBackground);
+        }
+    }
+
+    @Override
+    public long restore(Consumer<Entry> consumer) {
+        List<Long> snapshots = segmentsOf(snapshotPrefix, snapshotSuffix);
+        long firstSegment = 0;
+        if (!snapshots.isEmpty()) {
+            firstSegment = snapshots.get(snapshots.size() - 1);
+            Path snapshotPath = pathOf(snapshotPrefix, firstSegment, snapshotSuffix);
+            read(snapshotPath, (input, size) -> {
+                if (size < Integer.BYTES + Long.BYTES || input.readInt() != snapshotMagic) {
+                    throw new IllegalStateException("Corrupted snapshot: " + snapshotPath);
+                }
+                sequenceNumber.accumulateAndGet(input.readLong(), Math::max);
+                readEntries(input, size - Integer.BYTES - Long.BYTES, consumer);
+            });
+        }
+
+        long startSegment = firstSegment;
+        List<Long> logs = segmentsOf(logPrefix, logSuffix)
+                .stream()
+                .filter(s -> s >= startSegment)
+                .collect(Collectors.toList());
+        logs.forEach(s -> read(pathOf(logPrefix, s, logSuffix), (input, size) -> readEntries(input, size, consumer)));
+
+        segment = Math.max(startSegment, logs.isEmpty() ? 0 : logs.get(logs.size() - 1)) + 1;
+        logChannel = openLog(segment);
+        log.debug("Restored journal from {} (segment {}, sequence number {})", directory, startSegment, sequenceNumber.get());
+        return sequenceNumber.get();
+    }
+
+    @Override
+    public void close() {
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            snapshot();
+        } finally {
+            try {
+                logChannel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close journal segment {}", segment, e);
+            }
+        }
+    }
+
+    private void snapshotInBackground() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Failed to write snapshot to {}, journal segments are kept until next snapshot", directory, e);
+        } finally {
+            snapshotPending.set(false);
+        }
+    }
+
+    // Only rotation is done under write lock. Writes that follow rotation go to the new segment, and may be seen by the
+    // snapshot as well, which is fine, as replaying them over the snapshot yields the same state.
+    private void snapshot() {
+        long snapshotSegment;
+        long snapshotSequenceNumber;
+        rotationLock.writeLock().lock();
+        try {
+            snapshotSequenceNumber = sequenceNumber.get();
+            snapshotSegment = rotate();
+            entriesSinceSnapshot.set(0);
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+
+        long count;
+        try (Stream<Entry> entries = snapshotSupplier.get()) {
+            count = writeSnapshot(snapshotSegment, snapshotSequenceNumber, entries);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segmentsOf(snapshotPrefix, snapshotSuffix).stream()
+                .filter(s -> s < snapshotSegment)
+                .forEach(s -> delete(pathOf(snapshotPrefix, s, snapshotSuffix)));
+        segmentsOf(logPrefix, logSuffix).stream()
+                .filter(s -> s < snapshotSegment)
+                .forEach(s -> delete(pathOf(logPrefix, s, logSuffix)));
+        log.debug("Written snapshot of {} entries (segment {})", count, snapshotSegment);
+    }
+
+    private synchronized long rotate() {
+        try {
+            logChannel.force(false);
+            logChannel.close();
+            logChannel = openLog(++segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long writeSnapshot(long snapshotSegment, long snapshotSequenceNumber, Stream<Entry> entries) throws IOException {
+        Path tempPath = pathOf(snapshotPrefix, snapshotSegment, snapshotSuffix + ".tmp");
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(chunkSize);
+            chunk.putInt(snapshotMagic);
+            chunk.putLong(snapshotSequenceNumber);
+            for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext(); ++count) {
+                ByteBuffer record = encode(iterator.next());
+                if (record.remaining() > chunk.remaining()) {
+                    flush(channel, chunk);
+                }
+                if (record.remaining() > chunk.remaining()) {
+                    writeFully(channel, record);
+                } else {
+                    chunk.put(record);
+                }
+            }
+            flush(channel, chunk);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            delete(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, pathOf(snapshotPrefix, snapshotSegment, snapshotSuffix), StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer chunk) throws IOException {
+        chunk.flip();
+        writeFully(channel, chunk);
+        chunk.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private ByteBuffer encode(Entry entry) {
+        ByteArrayOutputStream bodyStream = new ByteArrayOutputStream();
+        try (DataOutputStream body = new DataOutputStream(bodyStream)) {
+            body.writeByte(entry.operation.ordinal());
+            body.writeLong(entry.sequenceNumber);
+            body.writeUTF(entry.metaClass.asClass().getName());
+            encodeValue(body, entry.operation, entry.metaClass, entry.value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] bytes = bodyStream.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES * 2 + bytes.length);
+        record.putInt(bytes.length);
+        record.putInt((int)crc.getValue());
+        record.put(bytes);
+        record.flip();
+        return record;
+    }
+
+    private void readEntries(DataInputStream input, long size, Consumer<Entry> consumer) throws IOException {
+        long position = 0;
+        while (size - position >= Integer.BYTES * 2) {
+            int length = input.readInt();
+            int checksum = input.readInt();
+            if (length < 0 || length > size - position - Integer.BYTES * 2) {
+                log.warn("Incomplete journal record at position {}, ignoring the rest", position);
+                return;
+            }
+            byte[] body = new byte[length];
+            input.readFully(body);
+
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+            if ((int)crc.getValue() != checksum) {
+                log.warn("Corrupted journal record at position {}, ignoring the rest", position);
+                return;
+            }
+            consumer.accept(decode(ByteBuffer.wrap(body)));
+            position += Integer.BYTES * 2 + length;
+        }
+    }
+
+    private Entry decode(ByteBuffer body) {
+        Operation operation = Operation.values()[body.get()];
+        long seqNum = body.getLong();
+        byte[] className = new byte[Short.toUnsignedInt(body.getShort())];
+        body.get(className);
+        sequenceNumber.accumulateAndGet(seqNum, Math::max);
+        return decodeValue(body, operation, metaClassOf(new String(className, StandardCharsets.UTF_8)), seqNum);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, S> void encodeValue(DataOutput output, Operation operation, MetaClassWithKey<K, S> metaClass, Object value) {
+        MetaContext.Writer writer = context.ofWriter(BinaryAdapter.writer(output));
+        switch (operation) {
+            case Modified: context.codecProvider().resolve(metaClass.asType()).encode(writer, (S)value); break;
+            case Deleted: context.codecProvider().resolve(metaClass.keyProperty().type()).encode(writer, (K)value); break;
+            default: break;
+        }
+    }
+
+    private <K, S> Entry decodeValue(ByteBuffer body, Operation operation, MetaClassWithKey<K, S> metaClass, long seqNum) {
+        switch (operation) {
+            case Modified: return Entry.ofModified(metaClass, context.read(BinaryAdapter.reader(body), metaClass.asType()), seqNum);
+            case Deleted: return Entry.ofDeleted(metaClass, context.read(BinaryAdapter.reader(body), metaClass.keyProperty().type()), seqNum);
+            default: return Entry.ofDropped(metaClass, seqNum);
+        }
+    }
+
+    private MetaClassWithKey<?, ?> metaClassOf(String className) {
+        return metaClasses.computeIfAbsent(className, name -> {
+            try {
+                return MetaClasses.forTokenWithKeyUnchecked(TypeToken.of(Class.forName(name)));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Journal references unknown entity class: " + name, e);
+            }
+        });
+    }
+
+    private FileChannel openLog(long logSegment) {
+        try {
+            return FileChannel.open(pathOf(logPrefix, logSegment, logSuffix), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Files are read as stream, as they may exceed the size of a single mapped buffer
+    private void read(Path path, Reader reader) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), chunkSize))) {
+            reader.read(input, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Long> segmentsOf(String prefix, String suffix) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .map(name -> name.substring(prefix.length(), name.length() - suffix.length()))
+                    .map(Long::parseLong)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path pathOf(String prefix, long fileSegment, String suffix) {
+        return directory.resolve(String.format("%s%016d%s", prefix, fileSegment, suffix));
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", path, e);
+        }
+    }
+
+    private interface Reader {
+        void read(DataInputStream input, long size) throws IOException;
+    }
+}
@@ -1,7 +1,10 @@
 package com.slimgears.rxrepo.mem;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Striped;
+import com.slimgears.rxrepo.annotations.Indexable;
 import com.slimgears.rxrepo.encoding.MetaObjectResolver;
 import com.slimgears.rxrepo.expressions.*;
 import com.slimgears.rxrepo.query.Notification;
@@ -29,58 +32,102 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
     private final static Logger log = LoggerFactory.getLogger(MemoryEntityQueryProvider.class);
     private final AtomicLong sequenceNumber;
     private final MetaClassWithKey<K, S> metaClass;
     private final MetaObjectResolver objectResolver;
+    private final MemoryJournal journal;
+    private final MemoryObjectStore<S> objectStore;
     private final Map<K, ObjectReference<S>> objects = new ConcurrentHashMap<>();
-    private final Subject<Notification<S>> notificationSubject = PublishSubject.create();
+    private final Subject<Notification<S>> notificationSubject = PublishSubject.<Notification<S>>create().toSerialized();
+    private final Striped<Lock> keyLocks = Striped.lock(Runtime.getRuntime().availableProcessors() * 4);
     private final Lazy<List<PropertyMeta<S, ?>>> referenceProperties;
+    private final Map<String, MemoryIndex<K, S, ?>> indexes;
+    private final MemoryQueryPlanner<K, S> planner;
 
     private static class ObjectReference<S> {
-        private final AtomicReference<S> reference = new AtomicReference<>();
+        private final MemoryObjectStore<S> store;
+        private final AtomicReference<Object> handle = new AtomicReference<>();
         private final AtomicLong modificationSequenceNum;
-        private final AtomicLong sequenceNum;
 
-        private ObjectReference(AtomicLong seqNum) {
-            this.sequenceNum = seqNum;
-            this.modificationSequenceNum = new AtomicLong(seqNum.get());
+        private ObjectReference(MemoryObjectStore<S> store, long seqNum) {
+            this.store = store;
+            this.modificationSequenceNum = new AtomicLong(seqNum);
         }
 
-        public boolean compareAndSet(S expectedObj, S newObj) {
-            if (reference.compareAndSet(expectedObj, newObj)) {
-                modificationSequenceNum.set(sequenceNum.get());
+        private ObjectReference(MemoryObjectStore<S> store, S object, long seqNum) {
+            this(store, seqNum);
+            this.handle.set(store.store(object));
+        }
+
+        public boolean compareAndSet(Object expectedHandle, S newObj, long seqNum) {
+            Object newHandle = store.store(newObj);
+            if (handle.compareAndSet(expectedHandle, newHandle)) {
+                modificationSequenceNum.set(seqNum);
+                Optional.ofNullable(expectedHandle).ifPresent(store::release);
                 return true;
             }
+            store.release(newHandle);
             return false;
         }
 
+        public Object handle() {
+            return handle.get();
+        }
+
+        // Handle is released only after it was replaced, so failing to load it means there is a newer one
         public S get() {
-            return reference.get();
+            while (true) {
+                Object currentHandle = handle.get();
+                if (currentHandle == null) {
+                    return null;
+                }
+                S object = store.load(currentHandle);
+                if (object != null) {
+                    return object;
+                }
+            }
+        }
+
+        public void release() {
+            Optional.ofNullable(handle.getAndSet(null)).ifPresent(store::release);
         }
     }
 
     private MemoryEntityQueryProvider(MetaClassWithKey<K, S> metaClass,
                                       MetaObjectResolver objectResolver,
-                                      AtomicLong sequenceNumber) {
+                                      AtomicLong sequenceNumber,
+                                      MemoryJournal journal,
+                                      MemoryObjectStore<S> objectStore) {
         this.sequenceNumber = sequenceNumber;
         this.metaClass = metaClass;
         this.objectResolver = objectResolver;
+        this.journal = journal;
+        this.objectStore = objectStore;
         this.referenceProperties = Lazy.of(() -> Streams
                 .fromIterable(metaClass.properties())
                 .filter(PropertyMetas::isReference)
                 .collect(ImmutableList.toImmutableList()));
+        this.indexes = Streams
+                .fromIterable(metaClass.properties())
+                .filter(p -> p.hasAnnotation(Indexable.class) && !p.hasAnnotation(Key.class))
+                .collect(ImmutableMap.<PropertyMeta<S, ?>, String, MemoryIndex<K, S, ?>>toImmutableMap(PropertyMeta::name, MemoryIndex::create));
+        this.planner = MemoryQueryPlanner.create(metaClass, indexes, objects::size);
     }
 
     static <K, S> MemoryEntityQueryProvider<K, S> create(
             MetaClassWithKey<K, S> metaClass,
             MetaObjectResolver objectResolver,
-            AtomicLong sequenceNumber) {
-        return new MemoryEntityQueryProvider<>(metaClass, objectResolver, sequenceNumber);
+            AtomicLong sequenceNumber,
+            MemoryJournal journal,
+            MemoryObjectStore<S> objectStore) {
+        return new MemoryEntityQueryProvider<>(metaClass, objectResolver, sequenceNumber, journal, objectStore);
     }
 
     @Override
@@ -91,39 +138,75 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
     @Override
     public Maybe<Supplier<S>> insertOrUpdate(K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
         return Maybe.defer(() -> {
-            synchronized (metaClass) {
-                long seqNum = sequenceNumber.incrementAndGet();
-                Supplier<ObjectReference<S>> referenceResolver = () -> objects.computeIfAbsent(key, k -> new ObjectReference<>(sequenceNumber));
-                S oldValue = referenceResolver.get().get();
-                return entityUpdater
-                        .apply(Optional.ofNullable(referenceResolver.get().get()).map(Maybe::just).orElseGet(Maybe::empty))
-                        .flatMap(e -> referenceResolver.get().compareAndSet(oldValue, e)
-                                ? (e != null ? Maybe.just(e): Maybe.empty())
-                                : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")))
-                        .doOnSuccess(e -> {
-                            if (!Objects.equals(oldValue, e)) {
-                                Notification<S> notification = Notification.ofModified(oldValue, e, seqNum);
-                                notificationSubject.onNext(notification);
-                                log.debug("Published notification: {}", notification);
-                            }
-                        })
-                        .map(e -> () -> e);
-            }
+            Supplier<ObjectReference<S>> referenceResolver = () -> objects.computeIfAbsent(key, k -> new ObjectReference<>(objectStore, sequenceNumber.get()));
+            ObjectReference<S> reference = referenceResolver.get();
+            Object oldHandle = reference.handle();
+            S oldValue = reference.get();
+            return entityUpdater
+                    .apply(Optional.ofNullable(oldValue).map(Maybe::just).orElseGet(Maybe::empty))
+                    .flatMap(e -> commit(key, referenceResolver.get(), oldHandle, oldValue, e)
+                            ? Maybe.just(e)
+                            : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")))
+                    .map(e -> () -> e);
         });
     }
 
+    private boolean commit(K key, ObjectReference<S> reference, Object oldHandle, S oldValue, S newValue) {
+        Lock lock = keyLocks.get(key);
+        lock.lock();
+        try {
+            return journal.write(() -> {
+                long seqNum = sequenceNumber.incrementAndGet();
+                if (!reference.compareAndSet(oldHandle, newValue, seqNum)) {
+                    return false;
+                }
+                if (!Objects.equals(oldValue, newValue)) {
+                    journal.append(MemoryJournal.Entry.ofModified(metaClass, newValue, seqNum));
+                    updateIndexes(key, newValue);
+                    Notification<S> notification = Notification.ofModified(oldValue, newValue, seqNum);
+                    notificationSubject.onNext(notification);
+                    log.debug("Published notification: {}", notification);
+                }
+                return true;
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean remove(K key) {
+        Lock lock = keyLocks.get(key);
+        lock.lock();
+        try {
+            return journal.write(() -> Optional
+                    .ofNullable(objects.remove(key))
+                    .map(ref -> {
+                        journal.append(MemoryJournal.Entry.ofDeleted(metaClass, key, ref.modificationSequenceNum.get()));
+                        updateIndexes(key, null);
+                        Notification<S> notification = Notification.ofDeleted(ref.get(), ref.modificationSequenceNum.get());
+                        ref.release();
+                        return notification;
+                    })
+                    .map(n -> {
+                        notificationSubject.onNext(n);
+                        return true;
+                    })
+                    .orElse(false));
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
     @Override
     public <T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
         log.trace("Querying {}", query);
-        Predicate<S> predicate = Expressions.compileRxPredicate(query.predicate());
-        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
-        return Observable.fromIterable(objects.values())
-                .flatMapMaybe(ref -> Maybe.fromCallable(ref::get)
-                        .doOnSuccess(ob -> Expressions.sequenceNumber().set(ref.modificationSequenceNum.get()))
-                        .filter(predicate)
-                        .map(o -> Notification.ofCreated(o, ref.modificationSequenceNum.get())))
-                .compose(ob -> Optional.ofNullable(query.sorting()).map(this::toNotificationComparator).map(ob::sorted).orElse(ob))
+        Predicate<S> predicate = Expressions.compileRxPredicate(query.predicate(), query.arguments());
+        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping(), query.arguments());
+        return planner.plan(query.predicate(), query.arguments())
+                .<Observable<Notification<S>>>map(keys -> select(referencesOf(Observable.fromIterable(keys)), predicate).compose(sorted(query)))
+                .orElseGet(() -> selectOrdered(query.sorting(), predicate)
+                        .orElseGet(() -> select(Observable.fromIterable(objects.values()), predicate).compose(sorted(query))))
                 .compose(ob -> Optional.ofNullable(query.skip()).map(ob::skip).orElse(ob))
                 .compose(ob -> Optional.ofNullable(query.limit()).map(ob::take).orElse(ob))
                 .doOnNext(val -> log.trace("Object without references: {}", val))
@@ -146,6 +229,68 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
                 .doOnNext(val -> log.trace("Emitting object: {}", val));
     }
 
+    private Observable<Notification<S>> select(Observable<ObjectReference<S>> references, Predicate<S> predicate) {
+        return references
+                .flatMapMaybe(ref -> Maybe.fromCallable(ref::get)
+                        .doOnSuccess(ob -> Expressions.sequenceNumber().set(ref.modificationSequenceNum.get()))
+                        .filter(predicate)
+                        .map(o -> Notification.ofCreated(o, ref.modificationSequenceNum.get())));
+    }
+
+    private Observable<ObjectReference<S>> referencesOf(Observable<K> keys) {
+        return keys.flatMapMaybe(key -> Maybe.fromCallable(() -> objects.get(key)));
+    }
+
+    private Optional<Observable<Notification<S>>> selectOrdered(List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting, Predicate<S> predicate) {
+        if (sorting.isEmpty()) {
+            return Optional.empty();
+        }
+        SortingInfo<S, ?, ? extends Comparable<?>> primarySorting = sorting.get(0);
+        return planner.sortedIndexOf(primarySorting.property())
+                .map(index -> Observable.<Set<K>>fromIterable(() -> index.orderedKeys(primarySorting.ascending()).iterator()))
+                .map(keyGroups -> sorting.size() > 1
+                        ? keyGroups.concatMap(keys -> select(referencesOf(Observable.fromIterable(keys)), predicate).compose(sorted(sorting)))
+                        : select(referencesOf(keyGroups.concatMapIterable(keys -> keys)), predicate));
+    }
+
+    private ObservableTransformer<Notification<S>, Notification<S>> sorted(Iterable<SortingInfo<S, ?, ? extends Comparable<?>>> sorting) {
+        return ob -> Optional.ofNullable(sorting).map(this::toNotificationComparator).map(ob::sorted).orElse(ob);
+    }
+
+    private ObservableTransformer<Notification<S>, Notification<S>> sorted(QueryInfo<K, S, ?> query) {
+        if (query.limit() == null) {
+            return sorted(query.sorting());
+        }
+        long count = query.limit() + Optional.ofNullable(query.skip()).orElse(0L);
+        return ob -> Optional.ofNullable(toNotificationComparator(query.sorting()))
+                .map(comparator -> ob.compose(sortedTop(comparator, count)))
+                .orElse(ob);
+    }
+
+    private static <T> ObservableTransformer<T, T> sortedTop(Comparator<T> comparator, long count) {
+        if (count >= Integer.MAX_VALUE) {
+            return ob -> ob.sorted(comparator);
+        }
+        Comparator<Map.Entry<Long, T>> entryComparator = Comparator
+                .<Map.Entry<Long, T>, T>comparing(Map.Entry::getValue, comparator)
+                .thenComparing(Map.Entry::getKey);
+        return ob -> Observable.defer(() -> {
+            AtomicLong index = new AtomicLong();
+            return ob
+                    .map(item -> new AbstractMap.SimpleImmutableEntry<>(index.getAndIncrement(), item))
+                    .collect(() -> new PriorityQueue<Map.Entry<Long, T>>((int)Math.min(count, 1024) + 1, entryComparator.reversed()), (queue, entry) -> {
+                        queue.add(entry);
+                        if (queue.size() > count) {
+                            queue.poll();
+                        }
+                    })
+                    .flattenAsObservable(queue -> queue.stream()
+                            .sorted(entryComparator)
+                            .map(Map.Entry::getValue)
+                            .collect(Collectors.toList()));
+        });
+    }
+
     private <T> Comparator<Notification<T>> toNotificationComparator(Iterable<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos) {
         return Optional.ofNullable(SortingInfos.toComparator(sortingInfos))
                 .map(c -> Comparator.<Notification<T>, T>comparing(Notification::newValue, c))
@@ -238,29 +383,64 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
     @Override
     public Single<Integer> delete(DeleteInfo<K, S> delete) {
         Predicate<S> predicate = Expressions.compileRxPredicate(delete.predicate());
-        return Observable
-                .fromIterable(objects.values())
+        return planner.plan(delete.predicate())
+                .map(keys -> referencesOf(Observable.fromIterable(keys)))
+                .orElseGet(() -> Observable.fromIterable(objects.values()))
                 .doOnSubscribe(d -> sequenceNumber.incrementAndGet())
-                .map(ObjectReference::get)
+                .flatMapMaybe(ref -> Maybe.fromCallable(ref::get))
                 .filter(predicate)
                 .compose(ob -> Optional.ofNullable(delete.limit()).map(ob::take).orElse(ob))
                 .map(metaClass::keyOf)
-                .filter(key -> Optional
-                        .ofNullable(objects.remove(key))
-                        .map(ref -> Notification.ofDeleted(ref.get(), ref.modificationSequenceNum.get()))
-                        .map(n -> {
-                            notificationSubject.onNext(n);
-                            return true;
-                        })
-                        .orElse(false)
-                )
+                .filter(this::remove)
                 .count()
                 .map(Long::intValue);
     }
 
     @Override
     public Completable drop() {
-        return Completable.fromAction(objects::clear);
+        return Completable.fromAction(() -> journal.write(() -> {
+            journal.append(MemoryJournal.Entry.ofDropped(metaClass, sequenceNumber.incrementAndGet()));
+            clear();
+            return true;
+        }));
+    }
+
+    Stream<MemoryJournal.Entry> entries() {
+        return objects.values()
+                .stream()
+                .map(ref -> Optional.ofNullable(ref.get())
+                        .map(object -> MemoryJournal.Entry.ofModified(metaClass, object, ref.modificationSequenceNum.get())))
+                .flatMap(entry -> entry.map(Stream::of).orElseGet(Stream::empty));
+    }
+
+    @SuppressWarnings("unchecked")
+    void restore(MemoryJournal.Entry entry) {
+        switch (entry.operation) {
+            case Modified:
+                S object = (S)entry.value;
+                K key = metaClass.keyOf(object);
+                Optional.ofNullable(objects.put(key, new ObjectReference<>(objectStore, object, entry.sequenceNumber)))
+                        .ifPresent(ObjectReference::release);
+                updateIndexes(key, object);
+                break;
+            case Deleted:
+                Optional.ofNullable(objects.remove((K)entry.value))
+                        .ifPresent(ObjectReference::release);
+                updateIndexes((K)entry.value, null);
+                break;
+            case Dropped:
+                clear();
+                break;
+        }
+    }
+
+    private void clear() {
+        objects.keySet().forEach(key -> Optional.ofNullable(objects.remove(key)).ifPresent(ObjectReference::release));
+        indexes.values().forEach(MemoryIndex::clear);
+    }
+
+    private void updateIndexes(K key, S object) {
+        indexes.values().forEach(index -> index.update(key, () -> object));
     }
 
     @SuppressWarnings("unchecked")
@@ -294,7 +474,7 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
     }
 
     Maybe<S> find(K key) {
-        return Maybe.fromCallable(() -> objects.get(key)).map(ObjectReference::get);
+        return Maybe.fromCallable(() -> objects.get(key)).flatMap(ref -> Maybe.fromCallable(ref::get));
     }
 
     @Override
@@ -0,0 +1,135 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import com.google.common.primitives.Primitives;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@SuppressWarnings({"UnstableApiUsage", "rawtypes", "unchecked"})
+class MemoryIndex<K, S, V> {
+    private final static Object nullValue = new Object();
+    private final PropertyMeta<S, V> property;
+    private final Class<?> valueClass;
+    private final Map<V, Set<K>> hashIndex = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<V, Set<K>> sortedIndex;
+    private final Set<K> nullKeys = ConcurrentHashMap.newKeySet();
+    private final Map<K, Object> indexedValues = new HashMap<>();
+
+    private MemoryIndex(PropertyMeta<S, V> property) {
+        this.property = property;
+        this.valueClass = Primitives.wrap(property.type().getRawType());
+        this.sortedIndex = Comparable.class.isAssignableFrom(valueClass)
+                ? new ConcurrentSkipListMap<>()
+                : null;
+    }
+
+    static <K, S, V> MemoryIndex<K, S, V> create(PropertyMeta<S, V> property) {
+        return new MemoryIndex<>(property);
+    }
+
+    boolean isSorted() {
+        return sortedIndex != null;
+    }
+
+    boolean accepts(Object value) {
+        return valueClass.isInstance(value);
+    }
+
+    synchronized void update(K key, Supplier<S> currentObject) {
+        S object = currentObject.get();
+        Object newValue = object != null ? Optional.<Object>ofNullable(property.getValue(object)).orElse(nullValue) : null;
+        Object oldValue = indexedValues.get(key);
+        if (Objects.equals(oldValue, newValue)) {
+            return;
+        }
+        if (oldValue != null) {
+            removeKey(key, oldValue != nullValue ? (V)oldValue : null);
+        }
+        if (newValue != null) {
+            addKey(key, newValue != nullValue ? (V)newValue : null);
+            indexedValues.put(key, newValue);
+        } else {
+            indexedValues.remove(key);
+        }
+    }
+
+    synchronized void clear() {
+        indexedValues.clear();
+        hashIndex.clear();
+        nullKeys.clear();
+        if (sortedIndex != null) {
+            sortedIndex.clear();
+        }
+    }
+
+    Collection<K> keysOf(Object value) {
+        return accepts(value)
+                ? hashIndex.getOrDefault(value, Collections.emptySet())
+                : Collections.emptySet();
+    }
+
+    Stream<K> keysOf(Range<Comparable> range, boolean includeNulls) {
+        Stream<K> rangeKeys = !range.isEmpty()
+                ? subMap(range).values().stream().flatMap(Collection::stream)
+                : Stream.empty();
+        return includeNulls
+                ? Stream.concat(rangeKeys, nullKeys.stream())
+                : rangeKeys;
+    }
+
+    Stream<Set<K>> orderedKeys(boolean ascending) {
+        Stream<Set<K>> valueKeys = (ascending ? sortedIndex : sortedIndex.descendingMap()).values().stream();
+        Stream<Set<K>> nullValueKeys = Stream.of(nullKeys);
+        return ascending
+                ? Stream.concat(valueKeys, nullValueKeys)
+                : Stream.concat(nullValueKeys, valueKeys);
+    }
+
+    private ConcurrentNavigableMap<V, Set<K>> subMap(Range<Comparable> range) {
+        ConcurrentNavigableMap<V, Set<K>> map = sortedIndex;
+        if (range.hasLowerBound()) {
+            map = map.tailMap((V)range.lowerEndpoint(), range.lowerBoundType() == BoundType.CLOSED);
+        }
+        if (range.hasUpperBound()) {
+            map = map.headMap((V)range.upperEndpoint(), range.upperBoundType() == BoundType.CLOSED);
+        }
+        return map;
+    }
+
+    private void addKey(K key, V value) {
+        if (value == null) {
+            nullKeys.add(key);
+            return;
+        }
+        Set<K> keys = hashIndex.computeIfAbsent(value, v -> ConcurrentHashMap.newKeySet());
+        keys.add(key);
+        if (sortedIndex != null) {
+            sortedIndex.putIfAbsent(value, keys);
+        }
+    }
+
+    private void removeKey(K key, V value) {
+        if (value == null) {
+            nullKeys.remove(key);
+            return;
+        }
+        Set<K> keys = hashIndex.get(value);
+        if (keys == null) {
+            return;
+        }
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            hashIndex.remove(value);
+            if (sortedIndex != null) {
+                sortedIndex.remove(value);
+            }
+        }
+    }
+}
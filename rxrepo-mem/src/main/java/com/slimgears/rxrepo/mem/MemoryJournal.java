@@ -0,0 +1,69 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+interface MemoryJournal extends AutoCloseable {
+    <T> T write(Supplier<T> commit);
+    void append(Entry entry);
+    long restore(Consumer<Entry> consumer);
+
+    @Override
+    void close();
+
+    static MemoryJournal disabled() {
+        return new MemoryJournal() {
+            @Override
+            public <T> T write(Supplier<T> commit) {
+                return commit.get();
+            }
+
+            @Override
+            public void append(Entry entry) {
+            }
+
+            @Override
+            public long restore(Consumer<Entry> consumer) {
+                return 0;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    enum Operation {
+        Modified,
+        Deleted,
+        Dropped
+    }
+
+    class Entry {
+        final Operation operation;
+        final MetaClassWithKey<?, ?> metaClass;
+        final Object value;
+        final long sequenceNumber;
+
+        private Entry(Operation operation, MetaClassWithKey<?, ?> metaClass, Object value, long sequenceNumber) {
+            this.operation = operation;
+            this.metaClass = metaClass;
+            this.value = value;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        static <K, S> Entry ofModified(MetaClassWithKey<K, S> metaClass, S object, long sequenceNumber) {
+            return new Entry(Operation.Modified, metaClass, object, sequenceNumber);
+        }
+
+        static <K, S> Entry ofDeleted(MetaClassWithKey<K, S> metaClass, K key, long sequenceNumber) {
+            return new Entry(Operation.Deleted, metaClass, key, sequenceNumber);
+        }
+
+        static <K, S> Entry ofDropped(MetaClassWithKey<K, S> metaClass, long sequenceNumber) {
+            return new Entry(Operation.Dropped, metaClass, null, sequenceNumber);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.slimgears.rxrepo.mem;
+
+interface MemoryObjectStore<S> {
+    Object store(S object);
+    // Returns null if the handle has been already released
+    S load(Object handle);
+    void release(Object handle);
+
+    @SuppressWarnings("unchecked")
+    static <S> MemoryObjectStore<S> onHeap() {
+        return new MemoryObjectStore<S>() {
+            @Override
+            public Object store(S object) {
+                return object;
+            }
+
+            @Override
+            public S load(Object handle) {
+                return (S)handle;
+            }
+
+            @Override
+            public void release(Object handle) {
+            }
+        };
+    }
+}
@@ -0,0 +1,266 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.google.common.primitives.Primitives;
+import com.slimgears.rxrepo.expressions.*;
+import com.slimgears.rxrepo.query.QueryParameter;
+import com.slimgears.rxrepo.query.provider.QueryInfos;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.stream.Optionals;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@SuppressWarnings({"UnstableApiUsage", "rawtypes", "unchecked"})
+class MemoryQueryPlanner<K, S> {
+    private final MetaClassWithKey<K, S> metaClass;
+    private final Map<String, MemoryIndex<K, S, ?>> indexes;
+    private final IntSupplier objectCount;
+
+    private MemoryQueryPlanner(MetaClassWithKey<K, S> metaClass, Map<String, MemoryIndex<K, S, ?>> indexes, IntSupplier objectCount) {
+        this.metaClass = metaClass;
+        this.indexes = indexes;
+        this.objectCount = objectCount;
+    }
+
+    static <K, S> MemoryQueryPlanner<K, S> create(MetaClassWithKey<K, S> metaClass, Map<String, MemoryIndex<K, S, ?>> indexes, IntSupplier objectCount) {
+        return new MemoryQueryPlanner<>(metaClass, indexes, objectCount);
+    }
+
+    Optional<Iterable<K>> plan(ObjectExpression<S, Boolean> predicate) {
+        return plan(predicate, Collections.emptyList());
+    }
+
+    // Query parameters in predicate are resolved to arguments when looking up indexes
+    Optional<Iterable<K>> plan(ObjectExpression<S, Boolean> predicate, List<Object> arguments) {
+        return Optional.ofNullable(predicate)
+                .flatMap(p -> planOf(p, arguments))
+                .<Iterable<K>>map(plan -> () -> plan.keys().iterator());
+    }
+
+    Optional<MemoryIndex<K, S, ?>> sortedIndexOf(PropertyExpression<S, ?, ?> property) {
+        return indexOf(property).filter(MemoryIndex::isSorted);
+    }
+
+    private Optional<Plan<K>> planOf(ObjectExpression<S, ?> expression, List<Object> arguments) {
+        ObjectExpression<S, ?> exp = unwrap(expression);
+        switch (exp.type()) {
+            case And: return planOfAnd((BinaryOperationExpression<S, ?, ?, ?>)exp, arguments);
+            case Or: return planOfOr((BinaryOperationExpression<S, ?, ?, ?>)exp, arguments);
+            case Not: return planOfNot((UnaryOperationExpression<S, ?, ?>)exp, arguments);
+            case Equals: return planOfEquals((BinaryOperationExpression<S, ?, ?, ?>)exp, arguments);
+            case ValueIn: return planOfValueIn((BinaryOperationExpression<S, ?, ?, ?>)exp, arguments);
+            case GreaterThan: return planOfComparison((BinaryOperationExpression<S, ?, ?, ?>)exp, false, false, arguments);
+            case LessThan: return planOfComparison((BinaryOperationExpression<S, ?, ?, ?>)exp, true, false, arguments);
+            default: return Optional.empty();
+        }
+    }
+
+    private Optional<Plan<K>> planOfAnd(BinaryOperationExpression<S, ?, ?, ?> exp, List<Object> arguments) {
+        Optional<Plan<K>> left = planOf(exp.left(), arguments);
+        Optional<Plan<K>> right = planOf(exp.right(), arguments);
+        if (!left.isPresent() || !right.isPresent()) {
+            return left.isPresent() ? left : right;
+        }
+        if (left.get() instanceof RangePlan && right.get() instanceof RangePlan) {
+            RangePlan<K> leftRange = (RangePlan<K>)left.get();
+            RangePlan<K> rightRange = (RangePlan<K>)right.get();
+            if (leftRange.index == rightRange.index) {
+                return Optional.of(leftRange.range.isConnected(rightRange.range)
+                        ? leftRange.intersect(rightRange)
+                        : new KeysPlan<>(Collections.emptyList()));
+            }
+        }
+        return Optional.of(left.get().cost() <= right.get().cost() ? left.get() : right.get());
+    }
+
+    private Optional<Plan<K>> planOfOr(BinaryOperationExpression<S, ?, ?, ?> exp, List<Object> arguments) {
+        Optional<Plan<K>> left = planOf(exp.left(), arguments);
+        Optional<Plan<K>> right = planOf(exp.right(), arguments);
+        return left.isPresent() && right.isPresent()
+                ? Optional.of(new UnionPlan<>(ImmutableList.of(left.get(), right.get())))
+                : Optional.empty();
+    }
+
+    private Optional<Plan<K>> planOfNot(UnaryOperationExpression<S, ?, ?> exp, List<Object> arguments) {
+        ObjectExpression<S, ?> operand = unwrap(exp.operand());
+        switch (operand.type()) {
+            case GreaterThan: return planOfComparison((BinaryOperationExpression<S, ?, ?, ?>)operand, false, true, arguments);
+            case LessThan: return planOfComparison((BinaryOperationExpression<S, ?, ?, ?>)operand, true, true, arguments);
+            default: return Optional.empty();
+        }
+    }
+
+    private Optional<Plan<K>> planOfEquals(BinaryOperationExpression<S, ?, ?, ?> exp, List<Object> arguments) {
+        return Optionals.or(
+                () -> planOfValues(exp.left(), exp.right(), Collections::singleton, arguments),
+                () -> planOfValues(exp.right(), exp.left(), Collections::singleton, arguments));
+    }
+
+    private Optional<Plan<K>> planOfValueIn(BinaryOperationExpression<S, ?, ?, ?> exp, List<Object> arguments) {
+        return planOfValues(exp.left(), exp.right(), value -> (Collection<Object>)value, arguments);
+    }
+
+    private Optional<Plan<K>> planOfValues(ObjectExpression<S, ?> propertyExp, ObjectExpression<S, ?> valueExp, Function<Object, Collection<Object>> valuesOf, List<Object> arguments) {
+        Optional<PropertyExpression<S, ?, ?>> property = propertyOf(propertyExp);
+        Optional<Collection<Object>> values = constantOf(valueExp, arguments).map(valuesOf);
+        if (!property.isPresent() || !values.isPresent()) {
+            return Optional.empty();
+        }
+
+        if (Objects.equals(property.get().property().name(), metaClass.keyProperty().name())) {
+            Class<?> keyClass = Primitives.wrap(metaClass.keyProperty().type().getRawType());
+            return Optional.of(new KeysPlan<>(values.get().stream()
+                    .filter(keyClass::isInstance)
+                    .map(key -> (K)key)
+                    .distinct()
+                    .collect(Collectors.toList())));
+        }
+
+        return indexOf(property.get()).<Plan<K>>map(index -> values.get().size() == 1
+                ? new KeysPlan<>(index.keysOf(values.get().iterator().next()))
+                : new UnionPlan<>(values.get().stream()
+                        .distinct()
+                        .map(index::keysOf)
+                        .<Plan<K>>map(KeysPlan::new)
+                        .collect(ImmutableList.toImmutableList())));
+    }
+
+    private Optional<Plan<K>> planOfComparison(BinaryOperationExpression<S, ?, ?, ?> exp, boolean lessThan, boolean negated, List<Object> arguments) {
+        Optional<MemoryIndex<K, S, ?>> leftIndex = propertyOf(exp.left()).flatMap(this::indexOf);
+        Optional<MemoryIndex<K, S, ?>> index = leftIndex.isPresent()
+                ? leftIndex
+                : propertyOf(exp.right()).flatMap(this::indexOf);
+        Optional<Object> value = constantOf(leftIndex.isPresent() ? exp.right() : exp.left(), arguments);
+
+        if (!index.isPresent() || !value.isPresent() || !index.get().isSorted() || !index.get().accepts(value.get())) {
+            return Optional.empty();
+        }
+
+        boolean propertyLessThan = leftIndex.isPresent() == lessThan;
+        Comparable bound = (Comparable)value.get();
+        Range<Comparable> range = negated
+                ? (propertyLessThan ? Range.atLeast(bound) : Range.atMost(bound))
+                : (propertyLessThan ? Range.lessThan(bound) : Range.greaterThan(bound));
+
+        return Optional.of(new RangePlan<>(index.get(), range, negated, objectCount.getAsInt()));
+    }
+
+    // Indexes are kept for own properties of entity only, nested properties with the same name are not indexed
+    private Optional<MemoryIndex<K, S, ?>> indexOf(PropertyExpression<S, ?, ?> property) {
+        return unwrap(property.target()) instanceof ArgumentExpression
+                ? Optional.ofNullable(indexes.get(property.property().name()))
+                : Optional.empty();
+    }
+
+    private Optional<PropertyExpression<S, ?, ?>> propertyOf(ObjectExpression<S, ?> expression) {
+        ObjectExpression<S, ?> exp = unwrap(expression);
+        return Optional.of(exp)
+                .filter(PropertyExpression.class::isInstance)
+                .map(e -> (PropertyExpression<S, ?, ?>)e)
+                .filter(e -> unwrap(e.target()) instanceof ArgumentExpression);
+    }
+
+    private Optional<Object> constantOf(ObjectExpression<S, ?> expression, List<Object> arguments) {
+        ObjectExpression<S, ?> exp = unwrap(expression);
+        return Optional.of(exp)
+                .filter(ConstantExpression.class::isInstance)
+                .map(e -> ((ConstantExpression<S, ?>)e).value())
+                .map(value -> QueryInfos.isParameter(value) ? QueryInfos.argumentOf((QueryParameter)value, arguments) : value);
+    }
+
+    private static <S, T> ObjectExpression<S, T> unwrap(ObjectExpression<S, T> expression) {
+        ObjectExpression<S, ?> exp = expression;
+        while (true) {
+            if (exp instanceof DelegateExpression) {
+                exp = ((DelegateExpression<S, ?>)exp).delegate();
+            } else if (exp.type() == Expression.Type.AsComparable || exp.type() == Expression.Type.AsNumeric) {
+                exp = ((UnaryOperationExpression<S, ?, ?>)exp).operand();
+            } else {
+                return (ObjectExpression<S, T>)exp;
+            }
+        }
+    }
+
+    private static abstract class Plan<K> {
+        abstract long cost();
+        abstract Stream<K> keys();
+    }
+
+    private static class KeysPlan<K> extends Plan<K> {
+        private final Collection<K> keys;
+
+        private KeysPlan(Collection<K> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        long cost() {
+            return keys.size();
+        }
+
+        @Override
+        Stream<K> keys() {
+            return keys.stream();
+        }
+    }
+
+    private static class UnionPlan<K> extends Plan<K> {
+        private final ImmutableList<Plan<K>> plans;
+
+        private UnionPlan(ImmutableList<Plan<K>> plans) {
+            this.plans = plans;
+        }
+
+        @Override
+        long cost() {
+            return plans.stream().mapToLong(Plan::cost).sum();
+        }
+
+        @Override
+        Stream<K> keys() {
+            return plans.stream().flatMap(Plan::keys).distinct();
+        }
+    }
+
+    private static class RangePlan<K> extends Plan<K> {
+        private final MemoryIndex<K, ?, ?> index;
+        private final Range<Comparable> range;
+        private final boolean includeNulls;
+        private final int objectCount;
+
+        private RangePlan(MemoryIndex<K, ?, ?> index, Range<Comparable> range, boolean includeNulls, int objectCount) {
+            this.index = index;
+            this.range = range;
+            this.includeNulls = includeNulls;
+            this.objectCount = objectCount;
+        }
+
+        RangePlan<K> intersect(RangePlan<K> other) {
+            return new RangePlan<>(index, range.intersection(other.range), includeNulls && other.includeNulls, objectCount);
+        }
+
+        // Selectivity guess: each bound of the range keeps roughly a third of the entries
+        @Override
+        long cost() {
+            long cost = objectCount;
+            cost = range.hasLowerBound() ? cost / 3 : cost;
+            cost = range.hasUpperBound() ? cost / 3 : cost;
+            return cost;
+        }
+
+        @Override
+        Stream<K> keys() {
+            return index.keysOf(range, includeNulls);
+        }
+    }
+}
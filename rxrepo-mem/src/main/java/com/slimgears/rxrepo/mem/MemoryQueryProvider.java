@@ -1,5 +1,8 @@
 package com.slimgears.rxrepo.mem;
 
+import com.slimgears.rxrepo.encoding.MetaCodecs;
+import com.slimgears.rxrepo.encoding.MetaContext;
+import com.slimgears.rxrepo.encoding.MetaContexts;
 import com.slimgears.rxrepo.encoding.MetaObjectResolver;
 import com.slimgears.rxrepo.query.provider.AbstractEntityQueryProviderAdapter;
 import com.slimgears.rxrepo.query.provider.EntityQueryProvider;
@@ -8,23 +11,53 @@ import com.slimgears.util.stream.Safe;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 public class MemoryQueryProvider extends AbstractEntityQueryProviderAdapter implements MetaObjectResolver {
-    private final List<AutoCloseable> closeableList = Collections.synchronizedList(new ArrayList<>());
+    private final List<MemoryEntityQueryProvider<?, ?>> providers = Collections.synchronizedList(new ArrayList<>());
     private final AtomicLong sequenceNumber = new AtomicLong();
+    private final MemoryJournal journal;
+    private final OffHeapSlabAllocator offHeapAllocator;
+    private final MetaContext offHeapContext;
+
+    private MemoryQueryProvider(Builder builder) {
+        this.offHeapAllocator = builder.offHeap ? OffHeapSlabAllocator.create(builder.offHeapSlabSize) : null;
+        this.offHeapContext = builder.offHeap ? MetaContexts.create(MetaCodecs.discover()) : null;
+        this.journal = builder.storagePath != null
+                ? FileMemoryJournal.open(builder.storagePath, builder.snapshotInterval, this::entries)
+                : MemoryJournal.disabled();
+        this.sequenceNumber.set(journal.restore(this::restore));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
 
     public static MemoryQueryProvider create() {
-        return new MemoryQueryProvider();
+        return builder().build();
+    }
+
+    public static MemoryQueryProvider create(Path storagePath) {
+        return builder().storagePath(storagePath).build();
+    }
+
+    public static MemoryQueryProvider create(Path storagePath, long snapshotInterval) {
+        return builder().storagePath(storagePath).snapshotInterval(snapshotInterval).build();
     }
 
     @Override
     protected <K, S> EntityQueryProvider<K, S> createProvider(MetaClassWithKey<K, S> metaClass) {
-        MemoryEntityQueryProvider<K, S> provider = MemoryEntityQueryProvider.create(metaClass, this, sequenceNumber);
-        closeableList.add(provider);
+        MemoryObjectStore<S> objectStore = offHeapAllocator != null
+                ? OffHeapObjectStore.create(metaClass, offHeapContext, offHeapAllocator)
+                : MemoryObjectStore.onHeap();
+        MemoryEntityQueryProvider<K, S> provider = MemoryEntityQueryProvider.create(metaClass, this, sequenceNumber, journal, objectStore);
+        providers.add(provider);
         return provider;
     }
 
@@ -40,8 +73,59 @@ public class MemoryQueryProvider extends AbstractEntityQueryProviderAdapter impl
 
     @Override
     public void close() {
-        closeableList.stream()
-                .map(Safe::ofClosable)
-                .forEach(Safe.Closeable::close);
+        providers.forEach(provider -> Safe.ofClosable(provider).close());
+        try {
+            journal.close();
+        } finally {
+            Optional.ofNullable(offHeapAllocator).ifPresent(OffHeapSlabAllocator::close);
+        }
+    }
+
+    long offHeapUsedBytes() {
+        return offHeapAllocator != null ? offHeapAllocator.usedBytes() : 0;
+    }
+
+    private Stream<MemoryJournal.Entry> entries() {
+        synchronized (providers) {
+            return new ArrayList<>(providers).stream().flatMap(MemoryEntityQueryProvider::entries);
+        }
+    }
+
+    private void restore(MemoryJournal.Entry entry) {
+        ((MemoryEntityQueryProvider<?, ?>)entities(entry.metaClass)).restore(entry);
+    }
+
+    public static class Builder {
+        private Path storagePath;
+        private long snapshotInterval = 100000;
+        private boolean offHeap = false;
+        private int offHeapSlabSize = 64 * 1024 * 1024;
+
+        private Builder() {
+        }
+
+        public Builder storagePath(Path storagePath) {
+            this.storagePath = storagePath;
+            return this;
+        }
+
+        public Builder snapshotInterval(long snapshotInterval) {
+            this.snapshotInterval = snapshotInterval;
+            return this;
+        }
+
+        public Builder offHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        public Builder offHeapSlabSize(int offHeapSlabSize) {
+            this.offHeapSlabSize = offHeapSlabSize;
+            return this;
+        }
+
+        public MemoryQueryProvider build() {
+            return new MemoryQueryProvider(this);
+        }
     }
 }
@@ -5,13 +5,22 @@ import com.slimgears.rxrepo.query.decorator.*;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import io.reactivex.schedulers.Schedulers;
 
+import java.nio.file.Path;
 import java.time.Duration;
 
 public class MemoryRepository {
     public static Repository create(QueryProvider.Decorator... decorators) {
+        return create(MemoryQueryProvider.create(), decorators);
+    }
+
+    public static Repository create(Path storagePath, QueryProvider.Decorator... decorators) {
+        return create(MemoryQueryProvider.create(storagePath), decorators);
+    }
+
+    public static Repository create(MemoryQueryProvider queryProvider, QueryProvider.Decorator... decorators) {
         return Repository
                 .fromProvider(
-                        MemoryQueryProvider.create(),
+                        queryProvider,
                         RetryOnConcurrentConflictQueryProviderDecorator.create(Duration.ofMillis(1), 5),
                         //LockQueryProviderDecorator.create(SemaphoreLockProvider.create()),
                         LiveQueryProviderDecorator.create(Duration.ofMillis(2000)),
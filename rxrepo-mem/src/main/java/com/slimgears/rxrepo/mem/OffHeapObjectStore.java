@@ -0,0 +1,48 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.encoding.MetaCodec;
+import com.slimgears.rxrepo.encoding.MetaContext;
+import com.slimgears.rxrepo.encoding.adapter.BinaryAdapter;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+class OffHeapObjectStore<S> implements MemoryObjectStore<S> {
+    private final MetaContext context;
+    private final MetaCodec<S> codec;
+    private final OffHeapSlabAllocator allocator;
+
+    private OffHeapObjectStore(MetaClass<S> metaClass, MetaContext context, OffHeapSlabAllocator allocator) {
+        this.context = context;
+        this.codec = context.codecProvider().resolve(metaClass.asType());
+        this.allocator = allocator;
+    }
+
+    static <S> MemoryObjectStore<S> create(MetaClass<S> metaClass, MetaContext context, OffHeapSlabAllocator allocator) {
+        return new OffHeapObjectStore<>(metaClass, context, allocator);
+    }
+
+    @Override
+    public Object store(S object) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(stream)) {
+            codec.encode(context.ofWriter(BinaryAdapter.writer(output)), object);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return allocator.allocate(stream.toByteArray());
+    }
+
+    @Override
+    public S load(Object handle) {
+        return allocator.read((OffHeapSlabAllocator.Block)handle, buffer -> codec.decode(context.ofReader(BinaryAdapter.reader(buffer))));
+    }
+
+    @Override
+    public void release(Object handle) {
+        allocator.release((OffHeapSlabAllocator.Block)handle);
+    }
+}
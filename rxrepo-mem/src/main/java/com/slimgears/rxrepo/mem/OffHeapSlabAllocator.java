@@ -0,0 +1,218 @@
+package com.slimgears.rxrepo.mem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Blocks are reference counted: a block is returned to the free list (or, if it has a dedicated buffer, freed)
+ * only when its owner released it and no reader is decoding it anymore, so the bytes seen by a reader
+ * are never overwritten by another entity.
+ */
+class OffHeapSlabAllocator implements AutoCloseable {
+    private final static Logger log = LoggerFactory.getLogger(OffHeapSlabAllocator.class);
+    private final static Consumer<ByteBuffer> bufferCleaner = createBufferCleaner();
+    private final static int minBlockShift = 5;
+    private final static int maxBlockShift = 30;
+    private final int slabSize;
+    private final List<ByteBuffer> slabs = new CopyOnWriteArrayList<>();
+    private final List<Queue<Long>> freeBlocks = IntStream.rangeClosed(0, maxBlockShift)
+            .<Queue<Long>>mapToObj(i -> new ConcurrentLinkedQueue<>())
+            .collect(Collectors.toList());
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final LongAdder activeReads = new LongAdder();
+    private volatile boolean closed;
+    private ByteBuffer currentSlab;
+    private int currentSlabIndex = -1;
+
+    private OffHeapSlabAllocator(int slabSize) {
+        this.slabSize = slabSize;
+    }
+
+    static OffHeapSlabAllocator create(int slabSize) {
+        return new OffHeapSlabAllocator(slabSize);
+    }
+
+    Block allocate(byte[] bytes) {
+        ensureOpen();
+        int blockShift = blockShiftOf(bytes.length);
+        long address = allocate(blockShift);
+        Block block = new Block(slabIndexOf(address), offsetOf(address), bytes.length, blockShift);
+        ByteBuffer buffer = slabs.get(block.slabIndex).duplicate();
+        buffer.position(block.offset);
+        buffer.put(bytes);
+        usedBytes.addAndGet(1L << blockShift);
+        return block;
+    }
+
+    /**
+     * Applies reader to the contents of the block, keeping the block from being reused until reader returns.
+     * Returns {@code null} if the block has been already released by its owner.
+     */
+    <T> T read(Block block, Function<ByteBuffer, T> reader) {
+        activeReads.increment();
+        try {
+            ensureOpen();
+            if (!block.retain()) {
+                return null;
+            }
+            try {
+                ByteBuffer buffer = slabs.get(block.slabIndex).duplicate();
+                buffer.limit(block.offset + block.length);
+                buffer.position(block.offset);
+                return reader.apply(buffer.slice());
+            } finally {
+                release(block);
+            }
+        } finally {
+            activeReads.decrement();
+        }
+    }
+
+    void release(Block block) {
+        if (block.references.decrementAndGet() != 0 || closed) {
+            return;
+        }
+        usedBytes.addAndGet(-(1L << block.blockShift));
+        if (hasDedicatedBuffer(block.blockShift)) {
+            bufferCleaner.accept(slabs.set(block.slabIndex, null));
+        } else {
+            freeBlocks.get(block.blockShift).add(addressOf(block.slabIndex, block.offset));
+        }
+    }
+
+    long usedBytes() {
+        return usedBytes.get();
+    }
+
+    // Waits for reads in progress, then frees all slabs
+    @Override
+    public void close() {
+        closed = true;
+        while (activeReads.sum() > 0) {
+            Thread.yield();
+        }
+        synchronized (this) {
+            freeBlocks.forEach(Queue::clear);
+            slabs.stream().filter(slab -> slab != null).forEach(bufferCleaner);
+            slabs.clear();
+            currentSlab = null;
+            usedBytes.set(0);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Off-heap storage is closed");
+        }
+    }
+
+    private boolean hasDedicatedBuffer(int blockShift) {
+        return (1L << blockShift) > slabSize;
+    }
+
+    private long allocate(int blockShift) {
+        Long address = freeBlocks.get(blockShift).poll();
+        if (address != null) {
+            return address;
+        }
+        int blockSize = 1 << blockShift;
+        synchronized (this) {
+            // Blocks larger than slab get a dedicated buffer, which is freed when the block is released
+            if (hasDedicatedBuffer(blockShift)) {
+                slabs.add(ByteBuffer.allocateDirect(blockSize));
+                return addressOf(slabs.size() - 1, 0);
+            }
+            if (currentSlab == null || currentSlab.remaining() < blockSize) {
+                currentSlab = ByteBuffer.allocateDirect(slabSize);
+                slabs.add(currentSlab);
+                currentSlabIndex = slabs.size() - 1;
+            }
+            int offset = currentSlab.position();
+            currentSlab.position(offset + blockSize);
+            return addressOf(currentSlabIndex, offset);
+        }
+    }
+
+    private static int blockShiftOf(int length) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+        if (shift > maxBlockShift) {
+            throw new IllegalArgumentException("Object is too large for off-heap storage: " + length + " bytes");
+        }
+        return Math.max(shift, minBlockShift);
+    }
+
+    private static long addressOf(int slabIndex, int offset) {
+        return ((long)slabIndex << 32) | (offset & 0xffffffffL);
+    }
+
+    private static int slabIndexOf(long address) {
+        return (int)(address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int)address;
+    }
+
+    // Direct buffers are otherwise freed only when garbage collected, which may take long for long-living buffers
+    private static Consumer<ByteBuffer> createBufferCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            Object unsafe = unsafeField.get(null);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            return buffer -> {
+                try {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } catch (ReflectiveOperationException e) {
+                    log.debug("Could not free direct buffer", e);
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Direct buffers will be freed by garbage collector", e);
+            return buffer -> {};
+        }
+    }
+
+    static class Block {
+        private final int slabIndex;
+        private final int offset;
+        private final int length;
+        private final int blockShift;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Block(int slabIndex, int offset, int length, int blockShift) {
+            this.slabIndex = slabIndex;
+            this.offset = offset;
+            this.length = length;
+            this.blockShift = blockShift;
+        }
+
+        private boolean retain() {
+            while (true) {
+                int count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
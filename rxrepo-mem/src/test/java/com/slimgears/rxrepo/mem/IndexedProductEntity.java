@@ -0,0 +1,16 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.annotations.EntityModel;
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.test.Inventory;
+import com.slimgears.util.autovalue.annotations.Key;
+
+import javax.annotation.Nullable;
+
+@EntityModel
+public interface IndexedProductEntity {
+    @Key int id();
+    @Nullable @Indexable String name();
+    @Indexable int price();
+    @Nullable Inventory inventory();
+}
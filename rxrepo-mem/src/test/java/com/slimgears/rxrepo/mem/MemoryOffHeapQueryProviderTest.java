@@ -0,0 +1,11 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+
+public class MemoryOffHeapQueryProviderTest extends AbstractRepositoryTest {
+    @Override
+    protected Repository createRepository() {
+        return MemoryRepository.create(MemoryQueryProvider.builder().offHeap(true).build());
+    }
+}
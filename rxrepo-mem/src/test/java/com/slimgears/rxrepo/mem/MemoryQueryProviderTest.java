@@ -1,11 +1,274 @@
 package com.slimgears.rxrepo.mem;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.PreparedQuery;
+import com.slimgears.rxrepo.query.QueryParameter;
 import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.EntityCacheQueryProviderDecorator;
 import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Inventory;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.TestUtils;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.util.stream.Streams;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class MemoryQueryProviderTest extends AbstractRepositoryTest {
+    @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Override
     protected Repository createRepository() {
         return MemoryRepository.create();
     }
+
+    @Test
+    public void testEntityCacheIsInvalidatedByLiveQuery() {
+        MemoryQueryProvider queryProvider = MemoryQueryProvider.create();
+        EntitySet<UniqueId, Product> cachedProducts = MemoryRepository
+                .create(queryProvider, EntityCacheQueryProviderDecorator.create(100, Product.metaClass))
+                .entities(Product.metaClass);
+        EntitySet<UniqueId, Product> directProducts = MemoryRepository.create(queryProvider).entities(Product.metaClass);
+
+        Product product = Products.createOne();
+        directProducts.update(product).ignoreElement().blockingAwait();
+        Assert.assertEquals(product.price(), cachedProducts.find(product.key()).blockingGet().price());
+        Assert.assertEquals(product.price(), cachedProducts.find(product.key()).blockingGet().price());
+
+        directProducts.update(product.toBuilder().price(product.price() + 1).build()).ignoreElement().blockingAwait();
+        Observable.interval(10, TimeUnit.MILLISECONDS)
+                .map(i -> cachedProducts.find(product.key()).blockingGet().price())
+                .filter(price -> price == product.price() + 1)
+                .timeout(5, TimeUnit.SECONDS)
+                .blockingFirst();
+
+        cachedProducts.update(product.toBuilder().price(product.price() + 2).build()).ignoreElement().blockingAwait();
+        Assert.assertEquals(product.price() + 2, cachedProducts.find(product.key()).blockingGet().price());
+    }
+
+    @Test
+    public void testEntityCacheResolvesPreparedQueryArguments() {
+        EntitySet<UniqueId, Product> cachedProducts = MemoryRepository
+                .create(MemoryQueryProvider.create(), EntityCacheQueryProviderDecorator.create(100, Product.metaClass))
+                .entities(Product.metaClass);
+        List<Product> productList = Products.createMany(2);
+        cachedProducts.update(productList).blockingAwait();
+
+        PreparedQuery<Product> byKey = cachedProducts.prepare(q -> q.where(Product.$.key.eq(QueryParameter.of(0))).select());
+        Arrays.asList(0, 1, 0, 1).forEach(i -> Assert.assertEquals(
+                productList.get(i).key(),
+                byKey.first(productList.get(i).key()).blockingGet().key()));
+        byKey.first(UniqueId.productId(1000)).test().assertNoValues().assertComplete();
+    }
+
+    @Test
+    public void testQueryByIndexedProperties() {
+        EntitySet<Integer, IndexedProduct> products = MemoryRepository.create().entities(IndexedProduct.metaClass);
+        List<IndexedProduct> productList = indexedProducts(1000);
+        products.update(productList).blockingAwait();
+
+        Assert.assertEquals(
+                productList.stream().filter(p -> p.price() > 150).count(),
+                (long)products.query().where(IndexedProduct.$.price.greaterThan(150)).count().blockingGet());
+
+        Assert.assertEquals(
+                productList.stream().filter(p -> p.price() >= 110 && p.price() <= 120).count(),
+                (long)products.query().where(IndexedProduct.$.price.betweenInclusive(110, 120)).count().blockingGet());
+
+        Assert.assertEquals(
+                Long.valueOf(2),
+                products.query().where(IndexedProduct.$.name.in(Arrays.asList("Product-10", "Product-20"))).count().blockingGet());
+
+        Assert.assertEquals(
+                productList.stream()
+                        .map(IndexedProduct::price)
+                        .sorted(Comparator.reverseOrder())
+                        .limit(5)
+                        .collect(Collectors.toList()),
+                products.query()
+                        .orderByDescending(IndexedProduct.$.price)
+                        .limit(5)
+                        .retrieve()
+                        .map(IndexedProduct::price)
+                        .toList()
+                        .blockingGet());
+
+        IndexedProduct product = productList.get(10);
+        products.update(product.toBuilder().price(10000).build()).ignoreElement().blockingAwait();
+        Assert.assertEquals(
+                product.id(),
+                products.query().where(IndexedProduct.$.price.greaterThan(9999)).first().blockingGet().id());
+
+        products.delete().where(IndexedProduct.$.price.lessThan(120)).execute().blockingGet();
+        Assert.assertEquals(
+                Long.valueOf(0),
+                products.query().where(IndexedProduct.$.price.lessOrEqual(119)).count().blockingGet());
+        Assert.assertEquals(
+                productList.stream().filter(p -> p.price() >= 120 || p.id() == product.id()).count(),
+                (long)products.query().count().blockingGet());
+    }
+
+    @Test
+    public void testOrderByNestedPropertyDoesNotUseRootIndex() {
+        EntitySet<Integer, IndexedProduct> products = MemoryRepository.create().entities(IndexedProduct.metaClass);
+        List<IndexedProduct> productList = indexedProducts(20);
+        products.update(productList).blockingAwait();
+
+        Assert.assertEquals(
+                productList.stream()
+                        .sorted(Comparator.comparing((IndexedProduct p) -> p.inventory().name()))
+                        .map(IndexedProduct::id)
+                        .collect(Collectors.toList()),
+                products.query()
+                        .orderBy(IndexedProduct.$.inventory.name)
+                        .retrieve()
+                        .map(IndexedProduct::id)
+                        .toList()
+                        .blockingGet());
+    }
+
+    // Inventory names are ordered in reverse to product names, so that ordering by either of them is distinguishable
+    private static List<IndexedProduct> indexedProducts(int count) {
+        return Streams.fromIterable(Products.createMany(count))
+                .map(p -> IndexedProduct.builder()
+                        .id(p.key().id())
+                        .name(p.name())
+                        .price(p.price())
+                        .inventory(Inventory.builder()
+                                .id(UniqueId.inventoryId(p.key().id()))
+                                .name(String.format("Inventory-%05d", count - p.key().id()))
+                                .build())
+                        .build())
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    @Test
+    public void testSortedQueryWithSkipAndLimit() {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(1000));
+        products.update(productList).blockingAwait();
+
+        Assert.assertEquals(
+                productList.stream()
+                        .sorted(Comparator.comparing(Product::productionDate).reversed())
+                        .skip(10)
+                        .limit(20)
+                        .map(Product::key)
+                        .collect(Collectors.toList()),
+                products.query()
+                        .where(Product.$.price.greaterThan(0))
+                        .orderByDescending(Product.$.productionDate)
+                        .skip(10)
+                        .limit(20)
+                        .retrieve()
+                        .map(Product::key)
+                        .toList()
+                        .blockingGet());
+
+        Assert.assertEquals(
+                productList.stream()
+                        .sorted(Comparator.comparing(Product::productionDate))
+                        .limit(5)
+                        .map(Product::key)
+                        .collect(Collectors.toList()),
+                products.query()
+                        .orderBy(Product.$.productionDate)
+                        .limit(5)
+                        .retrieve()
+                        .map(Product::key)
+                        .toList()
+                        .blockingGet());
+    }
+
+    @Test
+    public void testLiveAggregateIsUpdatedFromNotifications() {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(100));
+        products.update(productList).blockingAwait();
+        Product product = productList.get(10);
+
+        TestObserver<Integer> maxPriceObserver = products.query()
+                .liveSelect(Product.$.price)
+                .aggregate(Aggregator.max())
+                .test()
+                .assertOf(TestUtils.countAtLeast(1))
+                .assertValueAt(0, productList.stream().map(Product::price).max(Comparator.naturalOrder()).orElse(null));
+
+        TestObserver<Long> countObserver = products.query()
+                .where(Product.$.price.greaterThan(9999))
+                .liveSelect()
+                .count()
+                .test()
+                .assertOf(TestUtils.countAtLeast(1))
+                .assertValueAt(0, 0L);
+
+        products.update(product.toBuilder().price(10000).build()).ignoreElement().blockingAwait();
+        maxPriceObserver.assertOf(TestUtils.countAtLeast(2)).assertValueAt(1, 10000);
+        countObserver.assertOf(TestUtils.countAtLeast(2)).assertValueAt(1, 1L);
+
+        products.delete().where(Product.$.key.eq(product.key())).execute().blockingGet();
+        maxPriceObserver.assertOf(TestUtils.countAtLeast(3)).assertValueAt(2, productList.stream()
+                .filter(p -> !p.key().equals(product.key()))
+                .map(Product::price)
+                .max(Comparator.naturalOrder())
+                .orElse(null));
+        countObserver.assertOf(TestUtils.countAtLeast(3)).assertValueAt(2, 0L);
+    }
+
+    @Test
+    public void testRestoreFromJournal() throws IOException {
+        Path storagePath = temporaryFolder.newFolder().toPath();
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(100));
+
+        Repository repository = MemoryRepository.create(storagePath);
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        productSet.update(productList).blockingAwait();
+        productSet.update(productList.get(0).toBuilder().price(10000).build()).ignoreElement().blockingAwait();
+        productSet.delete().where(Product.$.price.lessThan(120)).execute().blockingGet();
+        List<Product> expected = productSet.query().retrieve().toList().blockingGet();
+        repository.close();
+
+        Repository restoredRepository = MemoryRepository.create(storagePath);
+        EntitySet<UniqueId, Product> restoredProductSet = restoredRepository.entities(Product.metaClass);
+        Assert.assertEquals(
+                ImmutableSet.copyOf(expected),
+                ImmutableSet.copyOf(restoredProductSet.query().retrieve().toList().blockingGet()));
+        Assert.assertEquals(
+                Integer.valueOf(10000),
+                restoredProductSet.query().where(Product.$.key.eq(productList.get(0).key())).first().map(Product::price).blockingGet());
+        restoredRepository.close();
+    }
+
+    @Test
+    public void testRestoreFromSnapshotWrittenWhileUpdating() throws IOException {
+        Path storagePath = temporaryFolder.newFolder().toPath();
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(1000));
+
+        Repository repository = MemoryRepository.create(MemoryQueryProvider.create(storagePath, 10));
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        productList.forEach(product -> productSet.update(product).ignoreElement().blockingAwait());
+        productSet.update(productList.stream().map(p -> p.toBuilder().price(p.price() + 1).build()).collect(Collectors.toList())).blockingAwait();
+        List<Product> expected = productSet.query().retrieve().toList().blockingGet();
+        repository.close();
+
+        Repository restoredRepository = MemoryRepository.create(storagePath);
+        Assert.assertEquals(
+                ImmutableSet.copyOf(expected),
+                ImmutableSet.copyOf(restoredRepository.entities(Product.metaClass).query().retrieve().toList().blockingGet()));
+        restoredRepository.close();
+    }
 }
@@ -0,0 +1,58 @@
+package com.slimgears.rxrepo.mem;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class OffHeapSlabAllocatorTest {
+    @Test
+    public void testBlockIsNotReusedWhileBeingRead() {
+        OffHeapSlabAllocator allocator = OffHeapSlabAllocator.create(1024);
+        byte[] first = filled(100, (byte)1);
+        byte[] second = filled(100, (byte)2);
+        OffHeapSlabAllocator.Block block = allocator.allocate(first);
+
+        byte[] read = allocator.read(block, buffer -> {
+            allocator.release(block);
+            allocator.allocate(second);
+            return bytesOf(buffer);
+        });
+        Assert.assertArrayEquals(first, read);
+        Assert.assertNull(allocator.read(block, OffHeapSlabAllocatorTest::bytesOf));
+        Assert.assertEquals(128, allocator.usedBytes());
+        allocator.close();
+    }
+
+    @Test
+    public void testDedicatedBufferIsReleased() {
+        OffHeapSlabAllocator allocator = OffHeapSlabAllocator.create(1024);
+        byte[] bytes = filled(4000, (byte)3);
+        OffHeapSlabAllocator.Block block = allocator.allocate(bytes);
+        Assert.assertArrayEquals(bytes, allocator.read(block, OffHeapSlabAllocatorTest::bytesOf));
+        allocator.release(block);
+        Assert.assertEquals(0, allocator.usedBytes());
+        allocator.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadAfterCloseThrows() {
+        OffHeapSlabAllocator allocator = OffHeapSlabAllocator.create(1024);
+        OffHeapSlabAllocator.Block block = allocator.allocate(filled(10, (byte)4));
+        allocator.close();
+        allocator.read(block, OffHeapSlabAllocatorTest::bytesOf);
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+
+    private static byte[] bytesOf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -90,6 +90,10 @@ class MongoExpressionAdapter extends ExpressionVisitor<Void, Object> {
 
     @Override
     protected <V> Object visitConstant(Expression.Type type, V value, Void arg) {
+        return constant(value);
+    }
+
+    static Object constant(Object value) {
         return (value instanceof String && ((String)value).contains("$"))
                 ? new Document().append("$literal", value)
                 : value;
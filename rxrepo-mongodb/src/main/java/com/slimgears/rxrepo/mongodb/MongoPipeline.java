@@ -1,5 +1,7 @@
 package com.slimgears.rxrepo.mongodb;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -8,8 +10,10 @@ import com.slimgears.rxrepo.encoding.MetaClassFieldMapper;
 import com.slimgears.rxrepo.expressions.*;
 import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
 import com.slimgears.rxrepo.mongodb.adapter.MongoFieldMapper;
+import com.slimgears.rxrepo.query.QueryParameter;
 import com.slimgears.rxrepo.query.provider.PropertyUpdateInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfos;
 import com.slimgears.rxrepo.query.provider.SortingInfo;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.rxrepo.util.PropertyReference;
@@ -26,6 +30,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -36,6 +41,10 @@ public class MongoPipeline {
     public final static String versionField = "__version";
     private final static MetaClassFieldMapper fieldMapper = MongoFieldMapper.instance;
     private final static Logger log = LoggerFactory.getLogger(MongoPipeline.class);
+    private final static int maxCachedPipelines = 1000;
+    private final static Cache<QueryInfo<?, ?, ?>, List<Document>> pipelineCache = CacheBuilder.newBuilder()
+            .maximumSize(maxCachedPipelines)
+            .build();
 
     public static Builder builder() {
         return new Builder();
@@ -155,7 +164,26 @@ public class MongoPipeline {
     }
 
 
+    // Pipeline of a prepared query is built once per query template, arguments are substituted into a copy of it
     static <K, S, T> List<Document> aggregationPipeline(QueryInfo<K, S, T> queryInfo, Aggregator<T, T, ?> aggregator) {
+        if (queryInfo.arguments().isEmpty()) {
+            return buildPipeline(queryInfo, aggregator);
+        }
+        if (hasParameterizedSearch(queryInfo.predicate())) {
+            return buildPipeline(QueryInfos.bindArguments(queryInfo), aggregator);
+        }
+
+        QueryInfo<K, S, T> template = queryInfo.toBuilder().arguments(ImmutableList.of()).build();
+        List<Document> pipeline = pipelineCache.asMap().computeIfAbsent(template, q -> buildPipeline(template, null));
+        ImmutableList.Builder<Document> boundPipeline = ImmutableList.builder();
+        pipeline.forEach(stage -> boundPipeline.add((Document)bindParameters(stage, queryInfo.arguments())));
+        Optional.ofNullable(aggregator)
+                .map(a -> builder().aggregate(queryInfo.objectType(), a).build())
+                .ifPresent(boundPipeline::addAll);
+        return boundPipeline.build();
+    }
+
+    private static <K, S, T> List<Document> buildPipeline(QueryInfo<K, S, T> queryInfo, Aggregator<T, T, ?> aggregator) {
         Builder builder = builder();
         builder.lookupAndUnwindReferences(queryInfo.metaClass());
 
@@ -192,6 +220,42 @@ public class MongoPipeline {
         return aggregationPipeline(queryInfo, null);
     }
 
+    private static Object bindParameters(Object value, List<Object> arguments) {
+        if (value instanceof QueryParameter) {
+            return MongoExpressionAdapter.constant(QueryInfos.argumentOf((QueryParameter)value, arguments));
+        } else if (value instanceof Document) {
+            Document document = new Document();
+            ((Document)value).forEach((key, val) -> document.append(key, bindParameters(val, arguments)));
+            return document;
+        } else if (value instanceof List) {
+            return ((List<?>)value).stream()
+                    .map(val -> bindParameters(val, arguments))
+                    .collect(Collectors.toList());
+        }
+        return value;
+    }
+
+    // Search text is split into words when the pipeline is built, so it cannot be substituted later
+    private static boolean hasParameterizedSearch(@Nullable ObjectExpression<?, ?> expression) {
+        if (expression == null) {
+            return false;
+        }
+        AtomicBoolean found = new AtomicBoolean();
+        expression.reflect().convert(new ObjectExpression.Converter() {
+            @Override
+            public <_S, _T> ObjectExpression<_S, _T> convert(ObjectExpression<_S, _T> exp) {
+                if (exp.type() == Expression.Type.SearchText
+                        && exp instanceof BinaryOperationExpression
+                        && ((BinaryOperationExpression<_S, ?, ?, ?>)exp).right() instanceof ConstantExpression
+                        && QueryInfos.isParameter(((ConstantExpression<_S, ?>)((BinaryOperationExpression<_S, ?, ?, ?>)exp).right()).value())) {
+                    found.set(true);
+                }
+                return exp;
+            }
+        });
+        return found.get();
+    }
+
     static Document limit(Long limit) {
         return Optional
                 .ofNullable(limit)
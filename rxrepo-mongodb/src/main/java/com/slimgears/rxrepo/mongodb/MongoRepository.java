@@ -74,7 +74,7 @@ public class MongoRepository {
             QueryProvider queryProvider = new MongoQueryProvider(connectionString, dbName, maxConcurrentRequests * 2);
             return Repository.fromProvider(queryProvider,
                     RetryOnConcurrentConflictQueryProviderDecorator.create(Duration.ofMillis(config.retryInitialDurationMillis()), config.retryCount()),
-                    LiveQueryProviderDecorator.create(Duration.ofMillis(config.aggregationDebounceTimeMillis())),
+                    LiveQueryProviderDecorator.create(Duration.ofMillis(config.aggregationDebounceTimeMillis()), Duration.ofMillis(config.referenceBatchTimeoutMillis())),
                     decorator,
                     UpdateReferencesFirstQueryProviderDecorator.create(),
                     LimitConcurrentOperationsQueryProviderDecorator.create(maxConcurrentRequests));
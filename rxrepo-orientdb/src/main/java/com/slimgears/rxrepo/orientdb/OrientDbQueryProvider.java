@@ -130,8 +130,11 @@ public class OrientDbQueryProvider extends DefaultSqlQueryProvider {
     }
 
     private <S> void createAndSaveElements(ODatabaseDocument dbSession, MetaClass<S> metaClass, Iterable<S> entities, boolean recursive) {
+        // Schema snapshot of the session is only reloaded when it is behind (class was created by another session)
         OSchema schema = dbSession.getMetadata().getSchema();
-        schema.reload();
+        if (!schema.existsClass(metaClass.simpleName())) {
+            schema.reload();
+        }
 
         if (!schema.existsClass(metaClass.simpleName())) {
             throw new IllegalStateException(MoreStrings.format("Class {} not found", metaClass.simpleName()));
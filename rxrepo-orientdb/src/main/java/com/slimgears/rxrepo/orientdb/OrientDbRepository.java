@@ -11,11 +11,13 @@ import com.slimgears.rxrepo.query.RepositoryConfig;
 import com.slimgears.rxrepo.query.decorator.*;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.sql.*;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.stream.Lazy;
 import com.slimgears.util.stream.Safe;
 import io.reactivex.schedulers.Schedulers;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
@@ -67,6 +69,7 @@ public class OrientDbRepository {
         private long cacheMaxSize = 25000;
         private MetricCollector metricCollector = MetricCollector.empty();
         private OrientDbProvider orientDbProvider;
+        private KeyEncoder keyEncoder = DigestKeyEncoder.create();
 
         public final Builder enableBatchSupport() {
             return enableBatchSupport(true);
@@ -114,6 +117,11 @@ public class OrientDbRepository {
             return this;
         }
 
+        public final Builder keyEncoder(KeyEncoder keyEncoder) {
+            this.keyEncoder = keyEncoder;
+            return this;
+        }
+
         public final Builder cacheMaxSize(long cacheMaxSize) {
             this.cacheMaxSize = cacheMaxSize;
             return this;
@@ -220,6 +228,23 @@ public class OrientDbRepository {
             return this;
         }
 
+        @Override
+        public Builder referenceBatchTimeoutMillis(int value) {
+            configBuilder.referenceBatchTimeoutMillis(value);
+            return this;
+        }
+
+        public Builder enableEntityCache(long maxSize, MetaClassWithKey<?, ?>... metaClasses) {
+            return enableEntityCache(maxSize, null, metaClasses);
+        }
+
+        // Entities of given types are cached by key, and invalidated by live queries (see EntityCacheQueryProviderDecorator)
+        public Builder enableEntityCache(long maxSize, @Nullable Duration expirationTime, MetaClassWithKey<?, ?>... metaClasses) {
+            return decorate(queryProvider -> EntityCacheQueryProviderDecorator
+                    .create(maxSize, expirationTime, metricCollector.name("entityCache"), metaClasses)
+                    .apply(queryProvider));
+        }
+
         public Builder enableMetrics(MetricCollector metricCollector) {
             metricCollector = metricCollector.name("rxrepo.orientdb");
             MetricsQueryProviderDecorator decorator = MetricsQueryProviderDecorator.create(metricCollector);
@@ -247,7 +272,7 @@ public class OrientDbRepository {
                             svc.dbNameProvider()))
                     .referenceResolver(svc -> new OrientDbSqlReferenceResolver(svc.statementProvider()))
                     .queryProviderGenerator(svc -> batchSupport ? OrientDbQueryProvider.create(svc, updateSessionProvider, cacheExpirationTime, cacheMaxSize) : DefaultSqlQueryProvider.create(svc))
-                    .keyEncoder(DigestKeyEncoder::create);
+                    .keyEncoder(() -> keyEncoder);
         }
 
         private OrientDbSessionProvider createSessionProvider(Lazy<OrientDB> dbClient, int maxConnections) {
@@ -272,7 +297,7 @@ public class OrientDbRepository {
                             BatchUpdateQueryProviderDecorator.create(batchBufferSize),
                             RetryOnConcurrentConflictQueryProviderDecorator.create(Duration.ofMillis(config.retryInitialDurationMillis()), config.retryCount()),
                             OrientDbUpdateReferencesFirstQueryProviderDecorator.create(),
-                            LiveQueryProviderDecorator.create(Duration.ofMillis(config.aggregationDebounceTimeMillis())),
+                            LiveQueryProviderDecorator.create(Duration.ofMillis(config.aggregationDebounceTimeMillis()), Duration.ofMillis(config.referenceBatchTimeoutMillis())),
                             ObserveOnSchedulingQueryProviderDecorator.create(Schedulers.from(executorDecorator.apply(queryResultPool))),
                             OrientDbDropDatabaseQueryProviderDecorator.create(dbClient, dbName),
                             SubscribeOnSchedulingQueryProviderDecorator.create(Schedulers.from(executorDecorator.apply(Runnable::run))),
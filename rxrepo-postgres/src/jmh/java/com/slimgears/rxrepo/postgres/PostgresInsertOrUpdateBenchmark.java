@@ -0,0 +1,76 @@
+package com.slimgears.rxrepo.postgres;
+
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Observable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Rows per millisecond of insert-or-update: {@code perRow} is the baseline path, where every row is sent
+ * with its own upsert statement ({@link EntitySet#update(Object)}), {@code batch} and {@code bulkLoad} send
+ * all rows with {@link EntitySet#update(Iterable)}, using JDBC batching or COPY based bulk load.
+ * Requires running postgres at {@link #connectionUrl}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(PostgresInsertOrUpdateBenchmark.rowCount)
+public class PostgresInsertOrUpdateBenchmark {
+    static final int rowCount = 1000;
+    private static final String connectionUrl = "jdbc:postgresql://localhost/test_db?user=root&password=root";
+
+    @Param({"perRow", "batch", "bulkLoad"})
+    public String mode;
+
+    private Repository repository;
+    private EntitySet<UniqueId, Product> products;
+    private List<Product> rows;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = PostgresRepository.builder()
+                .connection(connectionUrl)
+                .schemaName("benchmark")
+                .enableBulkLoad("bulkLoad".equals(mode) ? rowCount : 0)
+                .build();
+        repository.clear().blockingAwait();
+        products = repository.entities(Product.metaClass);
+        rows = new ArrayList<>();
+        Products.createMany(rowCount).forEach(rows::add);
+        products.update(rows).blockingAwait();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.clear().blockingAwait();
+        repository.close();
+    }
+
+    @Benchmark
+    public void insertOrUpdate() {
+        int price = ++iteration;
+        List<Product> updatedRows = rows.stream()
+                .map(p -> p.toBuilder().price(price).build())
+                .collect(Collectors.toList());
+        if ("perRow".equals(mode)) {
+            Observable.fromIterable(updatedRows)
+                    .concatMapSingle(p -> products.update(p))
+                    .ignoreElements()
+                    .blockingAwait();
+        } else {
+            products.update(updatedRows).blockingAwait();
+        }
+    }
+}
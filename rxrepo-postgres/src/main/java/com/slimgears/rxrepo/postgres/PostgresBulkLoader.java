@@ -0,0 +1,139 @@
+package com.slimgears.rxrepo.postgres;
+
+import com.slimgears.rxrepo.sql.KeyEncoder;
+import com.slimgears.rxrepo.sql.SqlReferenceResolver;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlTypeMapper;
+import com.slimgears.rxrepo.sql.jdbc.JdbcSqlStatementExecutorDecorator;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Loads entities into postgres with {@code COPY ... FROM STDIN} (csv) into a temporary staging table, which is then
+ * merged into the entity table with single {@code INSERT ... ON CONFLICT} statement.
+ * Row values are produced by {@link PostgresSqlStatementProvider} and mapped the same way as statement arguments,
+ * so references, keys and {@code __sequenceNum} end up the same as with regular upsert statements.
+ */
+public class PostgresBulkLoader {
+    private final static Logger log = LoggerFactory.getLogger(PostgresBulkLoader.class);
+    private final static int copyBufferSize = 1 << 16;
+    private final Callable<Connection> connectionSupplier;
+    private final PostgresSqlStatementProvider statementProvider;
+    private final SqlReferenceResolver referenceResolver;
+    private final SqlTypeMapper typeMapper;
+    private final KeyEncoder keyEncoder;
+
+    private PostgresBulkLoader(Callable<Connection> connectionSupplier,
+                               PostgresSqlStatementProvider statementProvider,
+                               SqlReferenceResolver referenceResolver,
+                               SqlTypeMapper typeMapper,
+                               KeyEncoder keyEncoder) {
+        this.connectionSupplier = connectionSupplier;
+        this.statementProvider = statementProvider;
+        this.referenceResolver = referenceResolver;
+        this.typeMapper = typeMapper;
+        this.keyEncoder = keyEncoder;
+    }
+
+    public static PostgresBulkLoader create(Callable<Connection> connectionSupplier,
+                                            PostgresSqlStatementProvider statementProvider,
+                                            SqlReferenceResolver referenceResolver,
+                                            SqlTypeMapper typeMapper,
+                                            KeyEncoder keyEncoder) {
+        return new PostgresBulkLoader(connectionSupplier, statementProvider, referenceResolver, typeMapper, keyEncoder);
+    }
+
+    public <K, S> Completable insertOrUpdate(MetaClassWithKey<K, S> metaClass, Iterable<PropertyResolver> propertyResolvers) {
+        return Completable.fromAction(() -> {
+            String stagingTableName = "rxrepo_bulk_" + statementProvider.tableName(metaClass);
+            List<String> columns = statementProvider.forBulkLoadColumns(metaClass);
+            try (Connection connection = connectionSupplier.call()) {
+                connection.setAutoCommit(false);
+                try {
+                    execute(connection, statementProvider.forBulkLoadStaging(metaClass, stagingTableName));
+                    long rowCount = copy(connection, statementProvider.forBulkLoadCopy(stagingTableName, columns), metaClass, columns, propertyResolvers);
+                    execute(connection, statementProvider.forBulkLoadMerge(metaClass, stagingTableName, columns));
+                    connection.commit();
+                    log.debug("Bulk loaded {} rows into {}", rowCount, statementProvider.tableName(metaClass));
+                } catch (Exception e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private <K, S> long copy(Connection connection, String copyStatement, MetaClassWithKey<K, S> metaClass, List<String> columns, Iterable<PropertyResolver> propertyResolvers) throws SQLException {
+        log.trace("Executing copy: {}", copyStatement);
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copyStatement);
+        try {
+            StringBuilder buffer = new StringBuilder();
+            long rowCount = 0;
+            for (PropertyResolver propertyResolver : propertyResolvers) {
+                appendRow(buffer, statementProvider.forBulkLoadRow(metaClass, columns, propertyResolver, referenceResolver));
+                ++rowCount;
+                if (buffer.length() >= copyBufferSize) {
+                    write(copyIn, buffer);
+                }
+            }
+            write(copyIn, buffer);
+            copyIn.endCopy();
+            return rowCount;
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private void appendRow(StringBuilder buffer, Object[] row) {
+        for (int i = 0; i < row.length; ++i) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            appendValue(buffer, JdbcSqlStatementExecutorDecorator.toSqlArgument(row[i], typeMapper, keyEncoder));
+        }
+        buffer.append('\n');
+    }
+
+    private static void appendValue(StringBuilder buffer, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            buffer.append(value);
+        } else if (value instanceof byte[]) {
+            buffer.append("\\x");
+            for (byte b : (byte[])value) {
+                buffer.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+        } else {
+            buffer.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    private static void write(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private static void execute(Connection connection, SqlStatement statement) throws SQLException {
+        log.trace("Executing statement: {}", statement.statement());
+        try (Statement jdbcStatement = connection.createStatement()) {
+            jdbcStatement.execute(statement.statement());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.slimgears.rxrepo.postgres;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.CompletableSubject;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+/**
+ * Listens to postgres notification channel on single dedicated connection, which should not be taken from connection
+ * pool, as it is held as long as there are observers. The connection is opened when the first observer subscribes
+ * and closed when the last one is disposed. When the connection fails, it is closed, and the channel is listened
+ * again on a new connection after {@code reconnectDelay} (notifications sent in between are lost).
+ * Notifications received together are emitted as one batch.
+ */
+public class PostgresNotificationListener {
+    private final static Logger log = LoggerFactory.getLogger(PostgresNotificationListener.class);
+    private final Callable<Connection> connectionSupplier;
+    private final String channel;
+    private final Duration pollTimeout;
+    private final Duration reconnectDelay;
+    private final Observable<List<String>> notifications;
+    private volatile CompletableSubject listening = CompletableSubject.create();
+
+    private PostgresNotificationListener(Callable<Connection> connectionSupplier, String channel, Duration pollTimeout, Duration reconnectDelay) {
+        this.connectionSupplier = connectionSupplier;
+        this.channel = channel;
+        this.pollTimeout = pollTimeout;
+        this.reconnectDelay = reconnectDelay;
+        this.notifications = Observable.<List<String>>create(this::listen)
+                .subscribeOn(Schedulers.newThread())
+                .share();
+    }
+
+    public static PostgresNotificationListener create(Callable<Connection> connectionSupplier, String channel) {
+        return create(connectionSupplier, channel, Duration.ofMillis(500), Duration.ofSeconds(1));
+    }
+
+    public static PostgresNotificationListener create(Callable<Connection> connectionSupplier, String channel, Duration pollTimeout, Duration reconnectDelay) {
+        return new PostgresNotificationListener(connectionSupplier, channel, pollTimeout, reconnectDelay);
+    }
+
+    public Observable<List<String>> notifications() {
+        return notifications;
+    }
+
+    // Completes once the channel is listened to by the observers subscribed before
+    public Completable listening() {
+        return Completable.defer(() -> listening);
+    }
+
+    // Listening session keeps its own subject, as the loop of disposed session may still be running
+    private void listen(ObservableEmitter<List<String>> emitter) {
+        CompletableSubject listening = this.listening;
+        emitter.setCancellable(() -> this.listening = CompletableSubject.create());
+        while (!emitter.isDisposed()) {
+            try {
+                listenOnNewConnection(emitter, listening);
+            } catch (Exception e) {
+                if (emitter.isDisposed()) {
+                    return;
+                }
+                log.warn("Listening to channel {} failed, reconnecting in {}", channel, reconnectDelay, e);
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException ignored) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void listenOnNewConnection(ObservableEmitter<List<String>> emitter, CompletableSubject listening) throws Exception {
+        try (Connection connection = connectionSupplier.call()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("listen " + channel);
+            }
+            log.debug("Listening to channel {}", channel);
+            listening.onComplete();
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            while (!emitter.isDisposed()) {
+                PGNotification[] received = pgConnection.getNotifications((int)pollTimeout.toMillis());
+                if (received != null && received.length > 0) {
+                    emitter.onNext(Arrays.stream(received)
+                            .map(PGNotification::getParameter)
+                            .collect(Collectors.toList()));
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("unlisten " + channel);
+            } catch (SQLException e) {
+                log.debug("Could not unlisten channel {}", channel, e);
+            }
+            log.debug("Stopped listening to channel {}", channel);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.slimgears.rxrepo.postgres;
 import com.slimgears.rxrepo.query.RepositoryConfig;
 import com.slimgears.rxrepo.sql.SqlServiceFactory;
 import com.slimgears.rxrepo.sql.SqlStatementExecutor;
+import com.slimgears.rxrepo.sql.SqlTypeMapper;
 import com.slimgears.rxrepo.sql.jdbc.JdbcRepository;
 
 import java.sql.Connection;
@@ -12,6 +13,8 @@ public class PostgresRepository {
     public static class Builder<B extends Builder<B>> extends JdbcRepository.Builder<B> {
         private String schemaName = "repository";
         private SqlStatementExecutor.Decorator executorDecorator = SqlStatementExecutor.Decorator.identity();
+        private int bulkLoadThreshold = 0;
+        private boolean liveQueries = false;
 
         public B schemaName(String name) {
             this.schemaName = name;
@@ -23,16 +26,65 @@ public class PostgresRepository {
             return self();
         }
 
+        public B enableBulkLoad(int minRowCount) {
+            this.bulkLoadThreshold = minRowCount;
+            return self();
+        }
+
+        public B enableLiveQueries() {
+            this.liveQueries = true;
+            return self();
+        }
+
+        @Override
+        protected SqlStatementExecutor createStatementExecutor(Callable<Connection> connectionSupplier,
+                                                               SqlTypeMapper typeMapper,
+                                                               int statementBatchSize,
+                                                               boolean rewriteBatchedInserts,
+                                                               int fetchSize) {
+            return liveQueries
+                    ? new PostgresSqlStatementExecutor(
+                            connectionSupplier,
+                            typeMapper,
+                            statementBatchSize,
+                            rewriteBatchedInserts,
+                            fetchSize,
+                            PostgresNotificationListener.create(connectionFactory(), notificationChannel()))
+                    : super.createStatementExecutor(connectionSupplier, typeMapper, statementBatchSize, rewriteBatchedInserts, fetchSize);
+        }
+
+        @Override
+        protected boolean supportsLiveQueries() {
+            return liveQueries || super.supportsLiveQueries();
+        }
+
+        private String notificationChannel() {
+            return ("rxrepo_" + schemaName).toLowerCase();
+        }
+
         @Override
         protected SqlServiceFactory.Builder<?> serviceFactoryBuilder(RepositoryConfig config, Callable<Connection> connectionSupplier) {
-            return super.serviceFactoryBuilder(config, connectionSupplier)
+            SqlServiceFactory.Builder<?> builder = super.serviceFactoryBuilder(config, connectionSupplier)
                     .dbName(schemaName)
                     .decorateExecutorBefore(() -> executorDecorator)
                     .expressionGenerator(PostgresSqlExpressionGenerator::new)
                     .statementProvider(sf -> new PostgresSqlStatementProvider(
                             sf.expressionGenerator(),
                             sf.typeMapper(),
-                            sf.dbNameProvider()));
+                            sf.dbNameProvider(),
+                            liveQueries));
+            return bulkLoadThreshold > 0
+                    ? builder.queryProviderGenerator(sf -> PostgresSqlQueryProvider.create(
+                            sf,
+                            PostgresBulkLoader.create(
+                                    connectionSupplier,
+                                    new PostgresSqlStatementProvider(sf.expressionGenerator(), sf.typeMapper(), sf.dbNameProvider()),
+                                    sf.referenceResolver(),
+                                    sf.typeMapper(),
+                                    sf.keyEncoder()),
+                            bulkLoadThreshold,
+                            lockingUpdates()))
+                    : builder;
         }
     }
 
@@ -0,0 +1,57 @@
+package com.slimgears.rxrepo.postgres;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.sql.DefaultSqlQueryProvider;
+import com.slimgears.rxrepo.sql.SqlServiceFactory;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+
+import java.util.Collection;
+import java.util.function.Predicate;
+
+public class PostgresSqlQueryProvider extends DefaultSqlQueryProvider {
+    private final PostgresBulkLoader bulkLoader;
+    private final int bulkLoadThreshold;
+
+    private PostgresSqlQueryProvider(SqlServiceFactory serviceFactory,
+                                     PostgresBulkLoader bulkLoader,
+                                     int bulkLoadThreshold,
+                                     Predicate<MetaClassWithKey<?, ?>> lockingUpdates) {
+        super(serviceFactory.statementProvider(),
+                serviceFactory.statementExecutor(),
+                serviceFactory.schemaProvider(),
+                serviceFactory.referenceResolver(),
+                lockingUpdates);
+        this.bulkLoader = bulkLoader;
+        this.bulkLoadThreshold = bulkLoadThreshold;
+    }
+
+    public static QueryProvider create(SqlServiceFactory serviceFactory, PostgresBulkLoader bulkLoader, int bulkLoadThreshold) {
+        return create(serviceFactory, bulkLoader, bulkLoadThreshold, metaClass -> false);
+    }
+
+    public static QueryProvider create(SqlServiceFactory serviceFactory,
+                                       PostgresBulkLoader bulkLoader,
+                                       int bulkLoadThreshold,
+                                       Predicate<MetaClassWithKey<?, ?>> lockingUpdates) {
+        return new PostgresSqlQueryProvider(serviceFactory, bulkLoader, bulkLoadThreshold, lockingUpdates);
+    }
+
+    @Override
+    public <K, S> Completable insertOrUpdate(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+        // Non-collection iterable is copied once, as it is iterated again when written
+        Collection<S> entityCollection = entities instanceof Collection
+                ? (Collection<S>)entities
+                : Lists.newArrayList(entities);
+        if (entityCollection.size() < bulkLoadThreshold) {
+            return super.insertOrUpdate(metaClass, entityCollection, recursive);
+        }
+        return schemaGenerator.useTable(metaClass)
+                .andThen(bulkLoader.insertOrUpdate(
+                        metaClass,
+                        Iterables.transform(entityCollection, e -> PropertyResolver.fromObject(metaClass, e))));
+    }
+}
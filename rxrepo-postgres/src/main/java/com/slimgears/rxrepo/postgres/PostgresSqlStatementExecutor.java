@@ -0,0 +1,139 @@
+package com.slimgears.rxrepo.postgres;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.sql.LiveQueryStatement;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlTypeMapper;
+import com.slimgears.rxrepo.sql.jdbc.JdbcSqlStatementExecutor;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+/**
+ * Serves live queries from notifications sent by the triggers created by {@link PostgresSqlStatementProvider}.
+ * All live queries share one {@link PostgresNotificationListener}. For each batch of notifications, the rows before
+ * change (sent with notification) and current rows (fetched by key) are filtered by the live query itself,
+ * and turned into old / new notification pairs. Each live query processes notifications on its own worker thread.
+ */
+public class PostgresSqlStatementExecutor extends JdbcSqlStatementExecutor {
+    private final static ObjectMapper objectMapper = new ObjectMapper();
+    private final PostgresNotificationListener notificationListener;
+
+    public PostgresSqlStatementExecutor(Callable<Connection> connectionSupplier,
+                                        SqlTypeMapper typeMapper,
+                                        int maxBatchSize,
+                                        boolean rewriteBatchedInserts,
+                                        int fetchSize,
+                                        PostgresNotificationListener notificationListener) {
+        super(connectionSupplier, typeMapper, maxBatchSize, rewriteBatchedInserts, fetchSize);
+        this.notificationListener = notificationListener;
+    }
+
+    @Override
+    public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
+        LiveQueryStatement source = LiveQueryStatement.of(statement).orElse(null);
+        if (source == null) {
+            return Observable.error(new IllegalArgumentException("Could not determine table of live query: " + statement.statement()));
+        }
+        return notificationListener.notifications()
+                .observeOn(Schedulers.io())
+                .map(payloads -> payloads.stream()
+                        .map(this::toChange)
+                        .filter(Optional::isPresent)
+                        .map(Optional::get)
+                        .filter(change -> change.table.equalsIgnoreCase(source.tableName()))
+                        .collect(Collectors.toList()))
+                .filter(changes -> !changes.isEmpty())
+                .concatMap(changes -> toNotifications(source, changes));
+    }
+
+    @Override
+    public Completable liveQueryReady(SqlStatement statement) {
+        return notificationListener.listening();
+    }
+
+    private Observable<Notification<PropertyResolver>> toNotifications(LiveQueryStatement source, List<Change> changes) {
+        String keyField = changes.get(0).keyField;
+        String fullTableName = source.fullTableName();
+        Map<String, Change> changesByKey = new LinkedHashMap<>();
+        ArrayNode oldRows = JsonNodeFactory.instance.arrayNode();
+        ArrayNode keys = JsonNodeFactory.instance.arrayNode();
+        changes.forEach(change -> {
+            Change previous = changesByKey.get(change.keyText());
+            if (previous == null) {
+                changesByKey.put(change.keyText(), change);
+                keys.add(change.key);
+                if (change.oldRow != null) {
+                    oldRows.add(change.oldRow);
+                }
+            } else {
+                previous.sequenceNumber = Math.max(previous.sequenceNumber, change.sequenceNumber);
+            }
+        });
+
+        Single<Map<String, PropertyResolver>> oldValues = oldRows.size() > 0
+                ? queryByLiveKey(source.withSource("\"" + keyField + "\"",
+                        "json_populate_recordset(null::" + fullTableName + ", ?::json)", oldRows.toString()))
+                : Single.just(Collections.emptyMap());
+        Single<Map<String, PropertyResolver>> newValues = queryByLiveKey(source.withSource("\"" + keyField + "\"",
+                "(select * from " + fullTableName + " where \"" + keyField + "\" in " +
+                        "(select \"" + keyField + "\" from json_populate_recordset(null::" + fullTableName + ", ?::json)))",
+                keys.toString()));
+
+        return Single.zip(oldValues, newValues, (oldMap, newMap) -> changesByKey.values()
+                .stream()
+                .map(change -> Notification.ofModified(
+                        oldMap.get(change.keyText()),
+                        newMap.get(change.keyText()),
+                        change.sequenceNumber))
+                .filter(notification -> !notification.isEmpty())
+                .collect(Collectors.toList()))
+                .flattenAsObservable(notifications -> notifications);
+    }
+
+    // Malformed payload is skipped, as failing would terminate notifications shared by all live queries
+    private Optional<Change> toChange(String payload) {
+        try {
+            return Optional.of(new Change(objectMapper.readTree(payload)));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not parse notification: {}", payload, e);
+            return Optional.empty();
+        }
+    }
+
+    private static class Change {
+        private final String table;
+        private final JsonNode key;
+        private final String keyField;
+        private final JsonNode oldRow;
+        private long sequenceNumber;
+
+        private Change(JsonNode payload) {
+            this.table = payload.get("table").asText();
+            this.key = payload.get("key");
+            this.keyField = key.fieldNames().next();
+            this.oldRow = payload.get("old");
+            this.sequenceNumber = payload.path("seq").asLong();
+        }
+
+        private String keyText() {
+            return key.get(keyField).asText();
+        }
+    }
+}
@@ -11,8 +11,14 @@ import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.generic.MoreStrings;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -22,16 +28,85 @@ import static com.slimgears.rxrepo.sql.StatementUtils.concat;
 
 public class PostgresSqlStatementProvider extends DefaultSqlStatementProvider {
     private static final String sequenceName = "generation";
+    private static final String bulkRowFieldName = "__bulkRow";
+    private static final int maxUpsertRows = 1000;
+    private static final int maxParamsPerStatement = Short.MAX_VALUE;
+    private static final String notifyTriggerName = "rxrepo_notify";
+
+    private final boolean notifyChanges;
 
     public PostgresSqlStatementProvider(SqlExpressionGenerator sqlExpressionGenerator,
                                         SqlTypeMapper sqlTypeMapper,
                                         Supplier<String> dbNameSupplier) {
+        this(sqlExpressionGenerator, sqlTypeMapper, dbNameSupplier, false);
+    }
+
+    public PostgresSqlStatementProvider(SqlExpressionGenerator sqlExpressionGenerator,
+                                        SqlTypeMapper sqlTypeMapper,
+                                        Supplier<String> dbNameSupplier,
+                                        boolean notifyChanges) {
         super(sqlExpressionGenerator, sqlTypeMapper, dbNameSupplier);
+        this.notifyChanges = notifyChanges;
     }
 
     @Override
     public SqlStatement forCreateSchema() {
-         return super.forCreateSchema().append(SqlStatement.of("create sequence if not exists", sequenceName()));
+        SqlStatement statement = super.forCreateSchema().append(SqlStatement.of("create sequence if not exists", sequenceName()));
+        return notifyChanges
+                ? statement.append(forCreateNotifyFunction())
+                : statement;
+    }
+
+    @Override
+    public <K, S> SqlStatement forCreateTable(MetaClassWithKey<K, S> metaClass) {
+        SqlStatement statement = super.forCreateTable(metaClass);
+        return notifyChanges
+                ? statement.append(
+                        of("drop trigger if exists", notifyTriggerName, "on", fullTableName(metaClass)),
+                        of("create trigger", notifyTriggerName,
+                                "after insert or update or delete on", fullTableName(metaClass),
+                                "for each row execute procedure", notifyFunctionName() + "('" + metaClass.keyProperty().name() + "')"))
+                : statement;
+    }
+
+    public String notificationChannel() {
+        return ("rxrepo_" + databaseName()).toLowerCase();
+    }
+
+    // Payload: {"table": ..., "key": {<keyField>: ...}, "seq": ..., "old": <row before change>}
+    // Seq is the one written with the row, or the next one of generation sequence when the write did not advance it
+    // (deletes, or updates not setting it), so it increases with every write.
+    // Row image is omitted when payload would exceed pg_notify limit of 8000 bytes
+    private SqlStatement forCreateNotifyFunction() {
+        String sequenceField = "\"" + SqlFields.sequenceFieldName + "\"";
+        return of(
+                "create or replace function", notifyFunctionName() + "() returns trigger as $$",
+                "declare",
+                "  changed record;",
+                "  seq bigint;",
+                "  payload jsonb;",
+                "begin",
+                "  if TG_OP = 'DELETE' then changed := OLD; else changed := NEW; end if;",
+                "  if TG_OP = 'DELETE' or (TG_OP = 'UPDATE' and NEW." + sequenceField + " is not distinct from OLD." + sequenceField + ") then",
+                "    seq := nextval('" + sequenceName() + "');",
+                "  else",
+                "    seq := NEW." + sequenceField + ";",
+                "  end if;",
+                "  payload := jsonb_build_object(",
+                "    'table', TG_TABLE_NAME,",
+                "    'key', jsonb_build_object(TG_ARGV[0], to_jsonb(changed) -> TG_ARGV[0]),",
+                "    'seq', seq);",
+                "  if TG_OP <> 'INSERT' and octet_length(payload::text) + octet_length(to_jsonb(OLD)::text) < 7900 then",
+                "    payload := payload || jsonb_build_object('old', to_jsonb(OLD));",
+                "  end if;",
+                "  perform pg_notify('" + notificationChannel() + "', payload::text);",
+                "  return null;",
+                "end;",
+                "$$ language plpgsql");
+    }
+
+    private String notifyFunctionName() {
+        return databaseName() + ".rxrepo_notify";
     }
 
     @Override
@@ -41,6 +116,18 @@ public class PostgresSqlStatementProvider extends DefaultSqlStatementProvider {
                 Stream.of("\"" + SqlFields.sequenceFieldName + "\" " + toSqlType(Long.class)));
     }
 
+    @Override
+    protected <K, S> Map<String, String> changeLogColumns(MetaClassWithKey<K, S> metaClass) {
+        Map<String, String> columns = super.changeLogColumns(metaClass);
+        columns.put("\"" + SqlFields.sequenceFieldName + "\"", toSqlType(Long.class));
+        return columns;
+    }
+
+    @Override
+    protected String nextSequenceNumber() {
+        return "nextval('" + sequenceName() + "')";
+    }
+
     @Override
     protected <S, T> Stream<String> toProjectionFields(MetaClassWithKey<?, S> metaClass, ObjectExpression<S, T> expression, Collection<PropertyExpression<T, ?, ?>> properties) {
         return Stream.concat(
@@ -53,14 +140,18 @@ public class PostgresSqlStatementProvider extends DefaultSqlStatementProvider {
         return Optional.of(super.whereClauseForUpdate(statement))
                 .map(Strings::emptyToNull)
                 .map(w -> MoreStrings.format("{} AND ({}.\"{}\" <= currval('{}'))", w, fullTableName(statement.metaClass()), SqlFields.sequenceFieldName, sequenceName()))
-                .orElseGet(() -> MoreStrings.format("where {}.\"{}\" <= currval('{}')", fullTableName(statement.metaClass()), SqlFields.sequenceFieldName, sequenceName()));
+                .orElseGet(() -> sequenceGuardClause(statement.metaClass()));
+    }
+
+    private String sequenceGuardClause(MetaClassWithKey<?, ?> metaClass) {
+        return MoreStrings.format("where {}.\"{}\" <= currval('{}')", fullTableName(metaClass), SqlFields.sequenceFieldName, sequenceName());
     }
 
     @Override
     protected <K, T> Stream<Assignment> toAssignments(MetaClassWithKey<K, T> metaClass, PropertyResolver propertyResolver, SqlReferenceResolver referenceResolver) {
         return Stream.concat(
                 super.toAssignments(metaClass, propertyResolver, referenceResolver),
-                Stream.of(Assignment.of("\"" + SqlFields.sequenceFieldName + "\"", "nextval('" + sequenceName() + "')")));
+                Stream.of(Assignment.of("\"" + SqlFields.sequenceFieldName + "\"", nextSequenceNumber())));
     }
 
     @Override
@@ -69,14 +160,119 @@ public class PostgresSqlStatementProvider extends DefaultSqlStatementProvider {
                 "update",
                 fullTableName(updateInfo.metaClass()),
                 "set",
-                updateInfo.propertyUpdates()
-                        .stream()
-                        .map(pu -> concat(sqlExpressionGenerator.toSqlExpression(pu.property()), "=", sqlExpressionGenerator.toSqlExpression(pu.updater())))
-                        .collect(Collectors.joining(", ")),
+                assignmentsClause(updateInfo),
                 whereClauseForUpdate(updateInfo),
                 "returning *");
     }
 
+    // Sequence number serves as row version: it is compared with the one read, and advanced by the update
+    @Override
+    public <K, S> SqlStatement forUpdateIfNotModified(MetaClassWithKey<K, S> metaClass,
+                                                      PropertyResolver propertyResolver,
+                                                      SqlReferenceResolver referenceResolver,
+                                                      long sequenceNumber) {
+        return statement(() -> {
+            UpdateInfo<K, S> updateInfo = toUpdateInfo(metaClass, propertyResolver)
+                    .toBuilder()
+                    .predicate(PropertyExpression.ofObject(metaClass.keyProperty()).eq(metaClass.keyOf(propertyResolver.toObject(metaClass))))
+                    .build();
+            String sequenceField = "\"" + SqlFields.sequenceFieldName + "\"";
+            return of(
+                    "update",
+                    fullTableName(metaClass),
+                    "set",
+                    assignmentsClause(updateInfo),
+                    whereClause(updateInfo),
+                    "and", fullTableName(metaClass) + "." + sequenceField, "=", sqlExpressionGenerator.fromConstant(sequenceNumber),
+                    "returning *");
+        });
+    }
+
+    @Override
+    public <K, S> Stream<SqlStatement> forBatchInsertOrUpdate(MetaClassWithKey<K, S> metaClass, Iterable<PropertyResolver> propertyResolvers, SqlReferenceResolver referenceResolver) {
+        List<String> columns = forBulkLoadColumns(metaClass);
+        int maxRows = Math.max(1, Math.min(maxUpsertRows, maxParamsPerStatement / Math.max(1, columns.size())));
+        List<List<PropertyResolver>> chunks = new ArrayList<>();
+        List<PropertyResolver> chunk = new ArrayList<>();
+        Set<Object> chunkKeys = new HashSet<>();
+        for (PropertyResolver propertyResolver : propertyResolvers) {
+            // Same row cannot be updated twice by one 'on conflict do update' statement
+            Object key = propertyResolver.getProperty(metaClass.keyProperty());
+            if (chunk.size() >= maxRows || !chunkKeys.add(key)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkKeys.clear();
+                chunkKeys.add(key);
+            }
+            chunk.add(propertyResolver);
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks.stream().map(c -> statement(() -> forBatchInsertOrUpdateStatement(metaClass, c, columns, referenceResolver)));
+    }
+
+    private <K, S> SqlStatement forBatchInsertOrUpdateStatement(MetaClassWithKey<K, S> metaClass, List<PropertyResolver> propertyResolvers, List<String> columns, SqlReferenceResolver referenceResolver) {
+        String keyName = metaClass.keyProperty().name();
+        return of(
+                forBatchInsertStatement(metaClass, propertyResolvers, referenceResolver).statement(),
+                "on conflict(" + keyName + ") do update set",
+                mergeAssignmentsClause(metaClass, columns),
+                sequenceGuardClause(metaClass));
+    }
+
+    // Null (not set) values keep the stored ones, and sequence number is advanced for every updated row
+    private String mergeAssignmentsClause(MetaClassWithKey<?, ?> metaClass, List<String> columns) {
+        return Stream.concat(
+                columns.stream().map(c -> c + " = coalesce(excluded." + c + ", " + fullTableName(metaClass) + "." + c + ")"),
+                Stream.of("\"" + SqlFields.sequenceFieldName + "\" = " + nextSequenceNumber()))
+                .collect(Collectors.joining(", "));
+    }
+
+    public <K, S> List<String> forBulkLoadColumns(MetaClassWithKey<K, S> metaClass) {
+        return toAssignableProperties(metaClass)
+                .map(this::fullFieldName)
+                .collect(Collectors.toList());
+    }
+
+    public <K, S> Object[] forBulkLoadRow(MetaClassWithKey<K, S> metaClass, List<String> columns, PropertyResolver propertyResolver, SqlReferenceResolver referenceResolver) {
+        List<Object> params = new ArrayList<>();
+        List<Assignment> assignments = sqlExpressionGenerator.withParams(params, () -> super.toAssignments(metaClass, propertyResolver, referenceResolver)
+                .collect(Collectors.toList()));
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < assignments.size(); ++i) {
+            Assignment assignment = assignments.get(i);
+            if (!assignment.value().replaceAll("[()\\s]", "").equals("?")) {
+                throw new IllegalStateException("Bulk load does not support value expression: " + assignment.value());
+            }
+            values.put(fullFieldName(assignment.name()), params.get(i));
+        }
+        return columns.stream().map(values::get).toArray();
+    }
+
+    public <K, S> SqlStatement forBulkLoadStaging(MetaClassWithKey<K, S> metaClass, String stagingTableName) {
+        return of("create temp table", stagingTableName, "(like", fullTableName(metaClass), ") on commit drop")
+                .append(of("alter table", stagingTableName, "add column \"" + bulkRowFieldName + "\" bigserial"));
+    }
+
+    public String forBulkLoadCopy(String stagingTableName, List<String> columns) {
+        return concat("copy", stagingTableName, "(" + String.join(", ", columns) + ")", "from stdin with (format csv)");
+    }
+
+    public <K, S> SqlStatement forBulkLoadMerge(MetaClassWithKey<K, S> metaClass, String stagingTableName, List<String> columns) {
+        String keyName = metaClass.keyProperty().name();
+        String fields = String.join(", ", columns);
+        String sequenceField = "\"" + SqlFields.sequenceFieldName + "\"";
+        return of(
+                "insert into", fullTableName(metaClass), "(" + fields + ", " + sequenceField + ")",
+                "select", fields + ", nextval('" + sequenceName() + "')",
+                "from (select distinct on (" + keyName + ")", fields,
+                "from", stagingTableName,
+                "order by", keyName + ", \"" + bulkRowFieldName + "\" desc) as staged",
+                "on conflict(" + keyName + ") do update set",
+                mergeAssignmentsClause(metaClass, columns),
+                sequenceGuardClause(metaClass));
+    }
 
     private String sequenceName() {
         return databaseName() + "." + sequenceName;
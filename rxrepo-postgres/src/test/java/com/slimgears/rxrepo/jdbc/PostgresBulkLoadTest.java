@@ -0,0 +1,83 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.postgres.PostgresRepository;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Ignore
+public class PostgresBulkLoadTest {
+    private static final int productCount = 100;
+
+    @ClassRule
+    public static TestRule postgresRule = PostgresTestUtils.rule();
+
+    private Repository repository;
+    private EntitySet<UniqueId, Product> products;
+
+    @Before
+    public void setUp() {
+        repository = PostgresRepository.builder()
+                .connection(PostgresTestUtils.connectionUrl)
+                .schemaName(PostgresTestUtils.schemaName)
+                .enableBulkLoad(productCount)
+                .build();
+        products = repository.entities(Product.metaClass);
+    }
+
+    @After
+    public void tearDown() {
+        repository.clear().blockingAwait();
+        repository.close();
+    }
+
+    @Test
+    public void testBulkLoadRoundTrip() throws SQLException {
+        List<Product> inserted = ImmutableList.copyOf(Products.createMany(productCount));
+        products.update(inserted).blockingAwait();
+
+        Assert.assertEquals(Long.valueOf(productCount), products.query().count().blockingGet());
+        for (Product product : inserted.subList(0, 10)) {
+            Assert.assertEquals(product, products.find(product.key()).blockingGet());
+        }
+        long maxInsertedSequenceNum = querySequenceNum("max");
+
+        List<Product> updated = inserted.stream()
+                .map(p -> p.toBuilder().price(p.price() + 1).build())
+                .collect(Collectors.toList());
+        products.update(updated).blockingAwait();
+
+        Assert.assertEquals(Long.valueOf(productCount), products.query().count().blockingGet());
+        for (Product product : updated.subList(0, 10)) {
+            Assert.assertEquals(product, products.find(product.key()).blockingGet());
+        }
+        Assert.assertTrue(querySequenceNum("min") > maxInsertedSequenceNum);
+    }
+
+    private long querySequenceNum(String aggregation) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(PostgresTestUtils.connectionUrl);
+             ResultSet resultSet = connection
+                     .prepareStatement("select " + aggregation + "(\"__sequenceNum\") from " + PostgresTestUtils.schemaName + ".Product")
+                     .executeQuery()) {
+            Assert.assertTrue(resultSet.next());
+            return resultSet.getLong(1);
+        }
+    }
+}
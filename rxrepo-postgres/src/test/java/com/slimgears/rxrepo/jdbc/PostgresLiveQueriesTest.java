@@ -0,0 +1,58 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.Iterables;
+import com.slimgears.rxrepo.postgres.PostgresRepository;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import io.reactivex.observers.TestObserver;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.List;
+
+@Ignore
+public class PostgresLiveQueriesTest extends AbstractRepositoryTest {
+    @ClassRule
+    public static TestRule postgresRule = PostgresTestUtils.rule();
+
+    @Test
+    public void testNotificationSequenceNumbersIncreaseWithEveryWrite() {
+        Product product = Iterables.getFirst(Products.createMany(1), null);
+        products.update(product).ignoreElement().blockingAwait();
+
+        TestObserver<Notification<Product>> observer = products.query()
+                .where(Product.$.key.eq(product.key()))
+                .liveSelect()
+                .observe()
+                .filter(n -> !n.isEmpty())
+                .test();
+
+        products.update(product.toBuilder().price(product.price() + 1).build()).ignoreElement().blockingAwait();
+        products.update(product.toBuilder().price(product.price() + 2).build()).ignoreElement().blockingAwait();
+        products.delete().where(Product.$.key.eq(product.key())).execute().ignoreElement().blockingAwait();
+
+        observer.awaitCount(3).assertNoErrors().assertValueCount(3);
+        List<Notification<Product>> notifications = observer.values();
+        Assert.assertTrue(notifications.get(0).isModify());
+        Assert.assertTrue(notifications.get(2).isDelete());
+        Assert.assertTrue(notifications.get(0).sequenceNumber() < notifications.get(1).sequenceNumber());
+        Assert.assertTrue(notifications.get(1).sequenceNumber() < notifications.get(2).sequenceNumber());
+        observer.dispose();
+    }
+
+    @Override
+    protected Repository createRepository() {
+        return PostgresRepository
+                .builder()
+                .connection(PostgresTestUtils.connectionUrl)
+                .schemaName(PostgresTestUtils.schemaName)
+                .enableLiveQueries()
+                .build();
+    }
+}
@@ -0,0 +1,59 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.postgres.PostgresNotificationListener;
+import io.reactivex.observers.TestObserver;
+import org.junit.Assert;
+import org.junit.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class PostgresNotificationListenerTest {
+    private final List<Connection> connections = new ArrayList<>();
+
+    @Test
+    public void testListensAgainOnNewConnectionAfterFailure() throws SQLException {
+        PostgresNotificationListener listener = PostgresNotificationListener.create(
+                this::createConnection, "test_channel", Duration.ofMillis(10), Duration.ofMillis(10));
+
+        TestObserver<List<String>> observer = listener.notifications().test();
+        observer.awaitCount(1).assertNoErrors().assertValue(Collections.singletonList("payload"));
+
+        Assert.assertEquals(2, connections.size());
+        verify(connections.get(0)).close();
+        observer.dispose();
+        verify(connections.get(1), timeout(1000)).close();
+    }
+
+    // First connection fails while waiting for notifications, second one delivers notification
+    private synchronized Connection createConnection() throws SQLException {
+        Connection connection = mock(Connection.class, withSettings().extraInterfaces(PGConnection.class));
+        when(connection.createStatement()).thenReturn(mock(Statement.class));
+        when(connection.unwrap(PGConnection.class)).thenReturn((PGConnection)connection);
+        if (connections.isEmpty()) {
+            when(((PGConnection)connection).getNotifications(anyInt())).thenThrow(new SQLException("Connection reset"));
+        } else {
+            PGNotification notification = mock(PGNotification.class);
+            when(notification.getParameter()).thenReturn("payload");
+            when(((PGConnection)connection).getNotifications(anyInt()))
+                    .thenReturn(new PGNotification[]{notification})
+                    .thenReturn(new PGNotification[0]);
+        }
+        connections.add(connection);
+        return connection;
+    }
+}
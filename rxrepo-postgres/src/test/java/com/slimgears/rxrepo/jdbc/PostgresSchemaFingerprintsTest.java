@@ -0,0 +1,66 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.postgres.PostgresRepository;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+@Ignore
+public class PostgresSchemaFingerprintsTest {
+    private static final int productCount = 10;
+
+    @ClassRule
+    public static TestRule postgresRule = PostgresTestUtils.rule();
+
+    @Test
+    public void testSchemaIsReusedOnRestart() throws SQLException {
+        List<Product> inserted = ImmutableList.copyOf(Products.createMany(productCount));
+        try (Repository repository = createRepository()) {
+            repository.entities(Product.metaClass).update(inserted).blockingAwait();
+        }
+        String fingerprint = queryFingerprint("Product");
+        Assert.assertNotNull(fingerprint);
+
+        Repository repository = createRepository();
+        try {
+            Assert.assertEquals(Long.valueOf(productCount), repository.entities(Product.metaClass).query().count().blockingGet());
+            Assert.assertEquals(inserted.get(0), repository.entities(Product.metaClass).find(inserted.get(0).key()).blockingGet());
+            Assert.assertEquals(fingerprint, queryFingerprint("Product"));
+        } finally {
+            repository.clear().blockingAwait();
+            repository.close();
+        }
+    }
+
+    private static Repository createRepository() {
+        return PostgresRepository.builder()
+                .connection(PostgresTestUtils.connectionUrl)
+                .schemaName(PostgresTestUtils.schemaName)
+                .enableSchemaFingerprints()
+                .build();
+    }
+
+    private static String queryFingerprint(String tableName) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(PostgresTestUtils.connectionUrl);
+             PreparedStatement statement = connection.prepareStatement(
+                     "select \"__fingerprint\" from " + PostgresTestUtils.schemaName + ".__schema where \"__table\" = ?")) {
+            statement.setString(1, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+}
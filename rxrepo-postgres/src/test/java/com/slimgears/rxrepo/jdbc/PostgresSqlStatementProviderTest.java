@@ -0,0 +1,111 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.postgres.PostgresSqlStatementProvider;
+import com.slimgears.rxrepo.query.provider.PropertyUpdateInfo;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.sql.DefaultSqlExpressionGenerator;
+import com.slimgears.rxrepo.sql.DefaultSqlReferenceResolver;
+import com.slimgears.rxrepo.sql.DigestKeyEncoder;
+import com.slimgears.rxrepo.sql.SqlExpressionGenerator;
+import com.slimgears.rxrepo.sql.SqlReferenceResolver;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlTypes;
+import com.slimgears.rxrepo.test.Manufacturer;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class PostgresSqlStatementProviderTest {
+    private static final String advanceSequence = "\"__sequenceNum\" = nextval('repository.generation')";
+    private PostgresSqlStatementProvider statementProvider;
+    private SqlReferenceResolver referenceResolver;
+
+    @Before
+    public void setUp() {
+        SqlExpressionGenerator expressionGenerator = new DefaultSqlExpressionGenerator();
+        statementProvider = new PostgresSqlStatementProvider(expressionGenerator, SqlTypes.instance, () -> "repository");
+        referenceResolver = new DefaultSqlReferenceResolver(DigestKeyEncoder.create(), expressionGenerator);
+    }
+
+    @Test
+    public void testBatchInsertOrUpdateAdvancesSequenceNumOnUpdate() {
+        List<SqlStatement> statements = statementProvider.forBatchInsertOrUpdate(
+                Manufacturer.metaClass,
+                Stream.of(
+                        Manufacturer.create(UniqueId.manufacturerId(1), "Manufacturer-1"),
+                        Manufacturer.create(UniqueId.manufacturerId(2), "Manufacturer-2"),
+                        Manufacturer.create(UniqueId.manufacturerId(1), "Manufacturer-1a"))
+                        .map(m -> PropertyResolver.fromObject(Manufacturer.metaClass, m))
+                        .collect(Collectors.toList()),
+                referenceResolver)
+                .collect(Collectors.toList());
+
+        // Second update of the same key goes to separate statement
+        Assert.assertEquals(2, statements.size());
+        statements.forEach(statement -> {
+            Assert.assertTrue(statement.statement(), statement.statement().contains("nextval('repository.generation')"));
+            String updateClause = updateClauseOf(statement);
+            Assert.assertTrue(updateClause, updateClause.contains(advanceSequence));
+            Assert.assertTrue(updateClause, updateClause.endsWith("where repository.Manufacturer.\"__sequenceNum\" <= currval('repository.generation')"));
+        });
+    }
+
+    @Test
+    public void testBulkLoadMergeAdvancesSequenceNumOnUpdate() {
+        List<String> columns = statementProvider.forBulkLoadColumns(Manufacturer.metaClass);
+        SqlStatement statement = statementProvider.forBulkLoadMerge(Manufacturer.metaClass, "rxrepo_bulk_Manufacturer", columns);
+
+        String updateClause = updateClauseOf(statement);
+        Assert.assertTrue(updateClause, updateClause.contains(advanceSequence));
+        Assert.assertTrue(updateClause, updateClause.endsWith("where repository.Manufacturer.\"__sequenceNum\" <= currval('repository.generation')"));
+        columns.forEach(c -> Assert.assertTrue(updateClause, updateClause.contains(c + " = coalesce(excluded." + c)));
+    }
+
+    @Test
+    public void testEveryUpdateAdvancesSequenceNum() {
+        Manufacturer manufacturer = Manufacturer.create(UniqueId.manufacturerId(1), "Manufacturer-1");
+        PropertyResolver propertyResolver = PropertyResolver.fromObject(Manufacturer.metaClass, manufacturer);
+
+        String upsert = statementProvider.forUpdate(Manufacturer.metaClass, propertyResolver, referenceResolver).statement();
+        Assert.assertTrue(upsert, updateClauseOf(upsert).contains(advanceSequence));
+
+        String update = statementProvider.forUpdate(UpdateInfo.<UniqueId, Manufacturer>builder()
+                .metaClass(Manufacturer.metaClass)
+                .predicate(Manufacturer.$.name.eq("Manufacturer-1"))
+                .propertyUpdatesAdd(PropertyUpdateInfo.create(Manufacturer.$.name, "Manufacturer-1a"))
+                .build()).statement();
+        Assert.assertTrue(update, update.contains(advanceSequence));
+
+        String conditionalUpdate = statementProvider.forUpdateIfNotModified(Manufacturer.metaClass, propertyResolver, referenceResolver, 10L).statement();
+        Assert.assertTrue(conditionalUpdate, conditionalUpdate.contains(advanceSequence));
+        Assert.assertEquals(conditionalUpdate, conditionalUpdate.indexOf(advanceSequence), conditionalUpdate.lastIndexOf(advanceSequence));
+    }
+
+    @Test
+    public void testNotifyFunctionSendsAdvancedSequenceNum() {
+        PostgresSqlStatementProvider notifyingStatementProvider = new PostgresSqlStatementProvider(
+                new DefaultSqlExpressionGenerator(), SqlTypes.instance, () -> "repository", true);
+        String statement = notifyingStatementProvider.forCreateSchema().statement();
+
+        Assert.assertTrue(statement, statement.contains(
+                "if TG_OP = 'DELETE' or (TG_OP = 'UPDATE' and NEW.\"__sequenceNum\" is not distinct from OLD.\"__sequenceNum\") then"));
+        Assert.assertTrue(statement, statement.contains("seq := nextval('repository.generation');"));
+        Assert.assertTrue(statement, statement.contains("'seq', seq);"));
+    }
+
+    private static String updateClauseOf(SqlStatement statement) {
+        return updateClauseOf(statement.statement());
+    }
+
+    private static String updateClauseOf(String statement) {
+        int pos = statement.indexOf("on conflict");
+        Assert.assertTrue(statement, pos >= 0);
+        return statement.substring(pos);
+    }
+}
@@ -0,0 +1,66 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.postgres.PostgresRepository;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Ignore
+public class PostgresStreamingQueriesTest {
+    private static final int fetchSize = 10;
+    private static final int productCount = 100;
+
+    @ClassRule
+    public static TestRule postgresRule = PostgresTestUtils.rule();
+
+    private Repository repository;
+    private EntitySet<UniqueId, Product> products;
+
+    @Before
+    public void setUp() {
+        repository = PostgresRepository.builder()
+                .connection(PostgresTestUtils.connectionUrl)
+                .schemaName(PostgresTestUtils.schemaName)
+                .enableStreamingQueries(fetchSize)
+                .build();
+        products = repository.entities(Product.metaClass);
+    }
+
+    @After
+    public void tearDown() {
+        repository.clear().blockingAwait();
+        repository.close();
+    }
+
+    @Test
+    public void testQueryReadsAllRowsThroughCursor() {
+        List<Product> inserted = ImmutableList.copyOf(Products.createMany(productCount));
+        products.update(inserted).blockingAwait();
+
+        // Slow consumer holds the cursor open across several fetches
+        List<Product> retrieved = products.query()
+                .select()
+                .retrieve()
+                .doOnNext(p -> Thread.sleep(1))
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(
+                inserted.stream().map(Product::key).collect(Collectors.toSet()),
+                retrieved.stream().map(Product::key).collect(Collectors.toSet()));
+        Assert.assertEquals(productCount, retrieved.size());
+    }
+}
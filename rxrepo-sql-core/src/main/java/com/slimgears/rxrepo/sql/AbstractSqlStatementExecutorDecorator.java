@@ -4,8 +4,11 @@ import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.functions.Function;
 
 import java.util.stream.Collectors;
 
@@ -21,6 +24,11 @@ public abstract class AbstractSqlStatementExecutorDecorator implements SqlStatem
         return underlyingExecutor.executeQuery(statement.mapArgs(this::mapArgument));
     }
 
+    @Override
+    public Flowable<PropertyResolver> executeStreamingQuery(SqlStatement statement) {
+        return underlyingExecutor.executeStreamingQuery(mapArgs(statement));
+    }
+
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
         return underlyingExecutor.executeCommandReturnEntries(mapArgs(statement));
@@ -47,6 +55,22 @@ public abstract class AbstractSqlStatementExecutorDecorator implements SqlStatem
         return underlyingExecutor.executeLiveQuery(statement.mapArgs(this::mapArgument));
     }
 
+    @Override
+    public Completable liveQueryReady(SqlStatement statement) {
+        return underlyingExecutor.liveQueryReady(mapArgs(statement));
+    }
+
+    // Arguments of statements executed within transaction are mapped the same way
+    @Override
+    public <T> Maybe<T> executeInTransaction(Function<SqlStatementExecutor, Maybe<T>> work) {
+        return underlyingExecutor.executeInTransaction(executor -> work.apply(new AbstractSqlStatementExecutorDecorator(executor) {
+            @Override
+            protected Object mapArgument(Object arg) {
+                return AbstractSqlStatementExecutorDecorator.this.mapArgument(arg);
+            }
+        }));
+    }
+
     protected Object mapArgument(Object arg) {
         return arg;
     }
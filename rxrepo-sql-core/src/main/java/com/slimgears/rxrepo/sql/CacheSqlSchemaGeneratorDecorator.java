@@ -9,6 +9,7 @@ import com.slimgears.util.stream.Optionals;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,9 +49,13 @@ public class CacheSqlSchemaGeneratorDecorator implements SqlSchemaGenerator {
 
     private <K, T> Completable createOrUpdateWithReferences(MetaClassWithKey<K, T> metaClass) {
         log.trace("Creating meta class: {}", metaClass.simpleName());
-        Completable references = referencedTypesOf(metaClass)
-                .map(MetaClasses::forTokenWithKeyUnchecked)
-                .concatMapCompletable(this::createOrUpdate);
+        // Referenced tables are created first, so tables are created in order of reference graph,
+        // and independent branches of the graph are created concurrently when supported
+        Observable<MetaClassWithKey<?, ?>> referencedMetaClasses = referencedTypesOf(metaClass)
+                .map(MetaClasses::forTokenWithKeyUnchecked);
+        Completable references = underlyingProvider.supportsParallelCreation()
+                ? referencedMetaClasses.flatMapCompletable(meta -> createOrUpdate(meta).subscribeOn(Schedulers.io()))
+                : referencedMetaClasses.concatMapCompletable(this::createOrUpdate);
 
         return references.andThen(underlyingProvider.createOrUpdate(metaClass));
     }
@@ -68,6 +73,11 @@ public class CacheSqlSchemaGeneratorDecorator implements SqlSchemaGenerator {
                 .filter(t -> !Objects.equals(t, metaClass.asType())));
     }
 
+    @Override
+    public boolean supportsParallelCreation() {
+        return underlyingProvider.supportsParallelCreation();
+    }
+
     @Override
     public void clear() {
         cache.clear();
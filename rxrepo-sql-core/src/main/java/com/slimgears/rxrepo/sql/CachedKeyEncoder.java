@@ -0,0 +1,36 @@
+package com.slimgears.rxrepo.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.slimgears.util.autovalue.annotations.HasMetaClass;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps up to {@code maxSize} recent encodings, keyed by meta class and key, so repeatedly referenced keys
+ * are encoded once.
+ */
+public class CachedKeyEncoder implements KeyEncoder {
+    private final KeyEncoder underlyingEncoder;
+    private final Cache<List<Object>, String> encodedKeys;
+
+    private CachedKeyEncoder(KeyEncoder underlyingEncoder, long maxSize) {
+        this.underlyingEncoder = underlyingEncoder;
+        this.encodedKeys = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public static KeyEncoder of(KeyEncoder underlyingEncoder, long maxSize) {
+        return new CachedKeyEncoder(underlyingEncoder, maxSize);
+    }
+
+    @Override
+    public String encode(Object key) {
+        Object metaClass = key instanceof HasMetaClass ? ((HasMetaClass<?>)key).metaClass() : key.getClass();
+        return encodedKeys
+                .asMap()
+                .computeIfAbsent(Arrays.asList(metaClass, key), k -> underlyingEncoder.encode(key));
+    }
+}
@@ -0,0 +1,139 @@
+package com.slimgears.rxrepo.sql;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.HasEntityMeta;
+import com.slimgears.rxrepo.query.provider.HasPredicate;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Appends writes to {@link SqlChangeLog}: row images of affected keys are logged before the write,
+ * and key markers after it, so once the poller sees a marker the change is already visible. Writes also compact
+ * the change logs (see {@link SqlChangeLog#compact}), as logs of the tables nobody polls would grow otherwise.
+ */
+public class ChangeLogQueryProviderDecorator extends AbstractQueryProviderDecorator {
+    private final static int maxKeysPerStatement = 1000;
+    private final SqlStatementExecutor statementExecutor;
+    private final DefaultSqlStatementProvider statementProvider;
+    private final SqlSchemaGenerator schemaGenerator;
+    private final SqlChangeLog changeLog;
+
+    private ChangeLogQueryProviderDecorator(QueryProvider underlyingProvider,
+                                            SqlStatementExecutor statementExecutor,
+                                            DefaultSqlStatementProvider statementProvider,
+                                            SqlSchemaGenerator schemaGenerator,
+                                            SqlChangeLog changeLog) {
+        super(underlyingProvider);
+        this.statementExecutor = statementExecutor;
+        this.statementProvider = statementProvider;
+        this.schemaGenerator = schemaGenerator;
+        this.changeLog = changeLog;
+    }
+
+    public static QueryProvider.Decorator create(SqlStatementExecutor statementExecutor,
+                                                 DefaultSqlStatementProvider statementProvider,
+                                                 SqlSchemaGenerator schemaGenerator,
+                                                 SqlChangeLog changeLog) {
+        return src -> new ChangeLogQueryProviderDecorator(src, statementExecutor, statementProvider, schemaGenerator, changeLog);
+    }
+
+    @Override
+    public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+        return Completable.defer(() -> {
+            List<S> entityList = ImmutableList.copyOf(entities);
+            return super.insert(metaClass, entityList, recursive)
+                    .andThen(logMarkers(metaClass, keysOf(metaClass, entityList)));
+        });
+    }
+
+    @Override
+    public <K, S> Completable insertOrUpdate(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+        return Completable.defer(() -> {
+            List<S> entityList = ImmutableList.copyOf(entities);
+            List<K> keys = keysOf(metaClass, entityList);
+            return logImages(metaClass, keys)
+                    .andThen(super.insertOrUpdate(metaClass, entityList, recursive))
+                    .andThen(logMarkers(metaClass, keys));
+        });
+    }
+
+    @Override
+    public <K, S> Single<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+        List<K> keys = Collections.singletonList(metaClass.keyOf(entity));
+        return logImages(metaClass, keys)
+                .andThen(super.insertOrUpdate(metaClass, entity, recursive))
+                .flatMap(result -> logMarkers(metaClass, keys).toSingleDefault(result));
+    }
+
+    @Override
+    public <K, S> Maybe<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+        List<K> keys = Collections.singletonList(key);
+        return logImages(metaClass, keys)
+                .andThen(super.insertOrUpdate(metaClass, key, recursive, entityUpdater))
+                .flatMap(result -> logMarkers(metaClass, keys).andThen(Maybe.just(result)));
+    }
+
+    @Override
+    public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+        return keysOf(update).flatMap(keys -> logImages(update.metaClass(), keys)
+                .andThen(super.update(update))
+                .flatMap(count -> logMarkers(update.metaClass(), keys).toSingleDefault(count)));
+    }
+
+    @Override
+    public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
+        return keysOf(delete).flatMap(keys -> logImages(delete.metaClass(), keys)
+                .andThen(super.delete(delete))
+                .flatMap(count -> logMarkers(delete.metaClass(), keys).toSingleDefault(count)));
+    }
+
+    private <K, S> List<K> keysOf(MetaClassWithKey<K, S> metaClass, List<S> entities) {
+        return entities.stream().map(metaClass::keyOf).collect(Collectors.toList());
+    }
+
+    private <K, S, Q extends HasEntityMeta<K, S> & HasPredicate<S>> Single<List<Object>> keysOf(Q statement) {
+        return schemaGenerator.useTable(statement.metaClass())
+                .andThen(statementExecutor
+                        .executeQuery(statementProvider.forChangeLogKeys(statement))
+                        .map(pr -> pr.getProperty(SqlFields.changeKeyField, Object.class))
+                        .toList());
+    }
+
+    private <K, S> Completable logImages(MetaClassWithKey<K, S> metaClass, Collection<?> keys) {
+        return logChanges(metaClass, keys, statementProvider::forLogChangeImages);
+    }
+
+    private <K, S> Completable logMarkers(MetaClassWithKey<K, S> metaClass, Collection<?> keys) {
+        return logChanges(metaClass, keys, statementProvider::forLogChangeMarkers)
+                .andThen(changeLog.compact(statementExecutor));
+    }
+
+    private <K, S> Completable logChanges(MetaClassWithKey<K, S> metaClass,
+                                          Collection<?> keys,
+                                          BiFunction<MetaClassWithKey<K, S>, Collection<?>, SqlStatement> statementFactory) {
+        if (keys.isEmpty()) {
+            return Completable.complete();
+        }
+        return schemaGenerator.useTable(metaClass)
+                .andThen(Completable.defer(() -> statementExecutor.executeCommands(
+                        Lists.partition(ImmutableList.copyOf(keys), maxKeysPerStatement)
+                                .stream()
+                                .map(chunk -> statementFactory.apply(metaClass, chunk))
+                                .collect(Collectors.toList()))));
+    }
+}
@@ -1,5 +1,8 @@
 package com.slimgears.rxrepo.sql;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
 import com.slimgears.rxrepo.expressions.Aggregator;
@@ -8,9 +11,11 @@ import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
 import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.QueryParameter;
 import com.slimgears.rxrepo.query.provider.*;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.rxrepo.util.PropertyResolvers;
+import com.slimgears.util.autovalue.annotations.HasMetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.stream.Optionals;
 import com.slimgears.util.stream.Streams;
@@ -19,10 +24,15 @@ import io.reactivex.functions.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -30,71 +40,131 @@ import java.util.stream.Stream;
 @SuppressWarnings("UnstableApiUsage")
 public class DefaultSqlQueryProvider implements QueryProvider {
     private final static Logger log = LoggerFactory.getLogger(DefaultSqlQueryProvider.class);
+    private final static int maxPreparedStatements = 1000;
     protected final SqlStatementProvider statementProvider;
     private final SqlStatementExecutor statementExecutor;
     protected final SqlSchemaGenerator schemaGenerator;
     private final SqlReferenceResolver referenceResolver;
+    private final Predicate<MetaClassWithKey<?, ?>> lockingUpdates;
     private final Map<SqlStatement, Observable<Notification<PropertyResolver>>> liveQueriesCache = new ConcurrentHashMap<>();
+    private final Cache<List<Object>, SqlStatement> preparedStatements = CacheBuilder.newBuilder()
+            .maximumSize(maxPreparedStatements)
+            .build();
 
     protected DefaultSqlQueryProvider(SqlStatementProvider statementProvider,
                                       SqlStatementExecutor statementExecutor,
                                       SqlSchemaGenerator schemaGenerator,
                                       SqlReferenceResolver referenceResolver) {
+        this(statementProvider, statementExecutor, schemaGenerator, referenceResolver, metaClass -> false);
+    }
+
+    protected DefaultSqlQueryProvider(SqlStatementProvider statementProvider,
+                                      SqlStatementExecutor statementExecutor,
+                                      SqlSchemaGenerator schemaGenerator,
+                                      SqlReferenceResolver referenceResolver,
+                                      Predicate<MetaClassWithKey<?, ?>> lockingUpdates) {
         this.statementProvider = statementProvider;
         this.statementExecutor = statementExecutor;
         this.schemaGenerator = schemaGenerator;
         this.referenceResolver = referenceResolver;
+        this.lockingUpdates = lockingUpdates;
     }
 
     public static QueryProvider create(SqlServiceFactory serviceFactory) {
+        return create(serviceFactory, metaClass -> false);
+    }
+
+    // Atomic updates of entities matching 'lockingUpdates' lock the row while updating, instead of optimistic update
+    public static QueryProvider create(SqlServiceFactory serviceFactory, Predicate<MetaClassWithKey<?, ?>> lockingUpdates) {
         return new DefaultSqlQueryProvider(
                 serviceFactory.statementProvider(),
                 serviceFactory.statementExecutor(),
                 serviceFactory.schemaProvider(),
-                serviceFactory.referenceResolver());
+                serviceFactory.referenceResolver(),
+                lockingUpdates);
     }
 
     @Override
     public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
         return schemaGenerator.useTable(metaClass)
-                .andThen(statementExecutor.executeCommand(
-                        statementProvider.forInsert(
-                                metaClass,
-                                Streams.fromIterable(entities)
-                                        .map(e -> PropertyResolver.fromObject(metaClass, e))
-                                        .collect(Collectors.toList()),
-                                referenceResolver)));
+                .andThen(statementExecutor.executeCommand(insertStatement(metaClass, entities)));
+    }
+
+    private <K, S> SqlStatement insertStatement(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+        return statementProvider.forInsert(
+                metaClass,
+                Streams.fromIterable(entities)
+                        .map(e -> PropertyResolver.fromObject(metaClass, e))
+                        .collect(Collectors.toList()),
+                referenceResolver);
     }
 
     @Override
     public <K, S> Completable insertOrUpdate(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
-        return insertOrUpdatePropertyResolvers(metaClass, Streams.fromIterable(entities).map(e -> PropertyResolver.fromObject(metaClass, e)));
+        return insertOrUpdatePropertyResolvers(metaClass, Streams.fromIterable(entities)
+                .map(e -> PropertyResolver.fromObject(metaClass, e))
+                .collect(Collectors.toList()));
     }
 
+    /**
+     * Row is read and updated on the same connection. Update is applied only if row was not modified since it was read
+     * (by its sequence number, see {@link SqlStatementProvider#forUpdateIfNotModified}), otherwise
+     * {@link ConcurrentModificationException} is raised. Rows of entities with locking updates are read with
+     * {@code select ... for update} instead, so concurrent updates of the same key wait for each other.
+     * All statements go through the transaction executor, as the transaction holds its connection until committed.
+     * When updater leaves entity unchanged, nothing is written and current entity is returned.
+     */
     @Override
     public <K, S> Maybe<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
-        SqlStatement statement = statementProvider.forQuery(QueryInfo
+        QueryInfo<K, S, S> query = QueryInfo
                 .<K, S, S>builder()
                 .metaClass(metaClass)
                 .predicate(PropertyExpression.ofObject(metaClass.keyProperty()).eq(key))
                 .limit(1L)
-                .build());
+                .build();
+        SqlStatement statement = lockingUpdates.test(metaClass)
+                ? statementProvider.forLockingQuery(query)
+                : statementProvider.forQuery(query);
 
         return schemaGenerator.useTable(metaClass)
-                .andThen(statementExecutor
+                .andThen(statementExecutor.executeInTransaction(executor -> executor
                         .executeQuery(statement)
                         .firstElement()
-                        .flatMap((PropertyResolver pr) -> {
-                            S oldObj = pr.toObject(metaClass);
-                            return entityUpdater
-                                    .apply(Maybe.just(oldObj))
-                                    .map(newObj -> pr.mergeWith(PropertyResolver.fromObject(metaClass, newObj)))
-                                    .filter(newPr -> !pr.equals(newPr))
-                                    .flatMap(newPr -> updatePropertyResolver(metaClass, newPr));
-                        })
-                        .switchIfEmpty(Maybe.defer(() -> entityUpdater
-                                .apply(Maybe.empty())
-                                .flatMap(e -> insert(metaClass, Collections.singleton(e), recursive).toMaybe()))));
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMap(row -> row.isPresent()
+                                ? update(executor, metaClass, row.get(), entityUpdater)
+                                : entityUpdater
+                                        .apply(Maybe.empty())
+                                        .flatMap(e -> executor.executeCommand(insertStatement(metaClass, Collections.singleton(e))).toMaybe()))));
+    }
+
+    private <K, S> Maybe<Supplier<S>> update(SqlStatementExecutor executor,
+                                             MetaClassWithKey<K, S> metaClass,
+                                             PropertyResolver pr,
+                                             Function<Maybe<S>, Maybe<S>> entityUpdater) throws Exception {
+        S oldObj = pr.toObject(metaClass);
+        Object sequenceNumber = pr.getProperty(SqlFields.sequenceFieldName, Long.class);
+        return entityUpdater
+                .apply(Maybe.just(oldObj))
+                .map(newObj -> pr.mergeWith(PropertyResolver.fromObject(metaClass, newObj)))
+                .flatMap(newPr -> {
+                    if (pr.equals(newPr)) {
+                        return Maybe.<Supplier<S>>just(() -> oldObj);
+                    }
+                    SqlStatement statement = sequenceNumber instanceof Number
+                            ? statementProvider.forUpdateIfNotModified(metaClass, newPr, referenceResolver, ((Number)sequenceNumber).longValue())
+                            : null;
+                    return statement != null
+                            ? executor.executeCommandReturnEntries(statement)
+                                    .firstElement()
+                                    .switchIfEmpty(Maybe.error(() -> new ConcurrentModificationException(
+                                            metaClass.simpleName() + " [" + metaClass.keyOf(oldObj) + "] was modified concurrently")))
+                                    .<Supplier<S>>map(updated -> () -> updated.toObject(metaClass))
+                            : executor.executeCommandReturnEntries(statementProvider.forUpdate(metaClass, newPr, referenceResolver))
+                                    .firstElement()
+                                    .<Supplier<S>>map(updated -> () -> updated.toObject(metaClass));
+                });
     }
 
     @Override
@@ -107,9 +177,8 @@ public class DefaultSqlQueryProvider implements QueryProvider {
         return insertOrUpdateStatement(metaClass, statementProvider.forUpdate(metaClass, propertyResolver, referenceResolver));
     }
 
-    private <K, S> Completable insertOrUpdatePropertyResolvers(MetaClassWithKey<K, S> metaClass, Stream<PropertyResolver> propertyResolvers) {
-        return insertOrUpdateStatements(metaClass, propertyResolvers
-                .map(pr -> statementProvider.forInsertOrUpdate(metaClass, pr, referenceResolver)));
+    private <K, S> Completable insertOrUpdatePropertyResolvers(MetaClassWithKey<K, S> metaClass, Iterable<PropertyResolver> propertyResolvers) {
+        return insertOrUpdateStatements(metaClass, statementProvider.forBatchInsertOrUpdate(metaClass, propertyResolvers, referenceResolver));
     }
 
     private <K, S> Completable insertOrUpdateStatements(MetaClassWithKey<K, S> metaClass, Stream<SqlStatement> statements) {
@@ -137,7 +206,8 @@ public class DefaultSqlQueryProvider implements QueryProvider {
         return schemaGenerator
                 .useTable(query.metaClass())
                 .andThen(statementExecutor
-                        .executeQuery(statementProvider.forQuery(query))
+                        .executeStreamingQuery(preparedStatement(query, "query", statementProvider::forQuery))
+                        .toObservable()
                         .compose(toCreateNotifications(objectType, query.mapping(), query.properties())));
     }
 
@@ -170,8 +240,9 @@ public class DefaultSqlQueryProvider implements QueryProvider {
     }
 
     @Override
-    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
-        log.trace("Preparing live query of {}", query.metaClass().simpleName());
+    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> queryInfo) {
+        log.trace("Preparing live query of {}", queryInfo.metaClass().simpleName());
+        QueryInfo<K, S, T> query = QueryInfos.bindArguments(queryInfo);
         TypeToken<? extends T> objectType = HasMapping.objectType(query);
         SqlStatement statement = statementProvider.forQuery(query.toBuilder().properties(ImmutableSet.of()).build());
         return schemaGenerator
@@ -198,7 +269,7 @@ public class DefaultSqlQueryProvider implements QueryProvider {
         ObjectExpression<T, R> aggregation = aggregator.apply(CollectionExpression.indirectArg(MoreTypeTokens.collection(elementType)));
         TypeToken<R> resultType = aggregation.reflect().objectType();
         return schemaGenerator.useTable(query.metaClass()).andThen(statementExecutor
-                .executeQuery(statementProvider.forAggregation(query, aggregation, SqlFields.aggregationField))
+                .executeQuery(preparedStatement(query, aggregation, q -> statementProvider.forAggregation(q, aggregation, SqlFields.aggregationField)))
                 .map(pr -> {
                     Object obj = pr.getProperty(SqlFields.aggregationField, resultType.getRawType());
                     //noinspection unchecked
@@ -209,6 +280,26 @@ public class DefaultSqlQueryProvider implements QueryProvider {
                 .firstElement());
     }
 
+    private <K, S, T> SqlStatement preparedStatement(QueryInfo<K, S, T> query, Object statementKind, java.util.function.Function<QueryInfo<K, S, T>, SqlStatement> statementFactory) {
+        if (query.arguments().isEmpty()) {
+            return statementFactory.apply(query);
+        }
+        if (!query.arguments().stream().allMatch(DefaultSqlQueryProvider::isPlainArgument)) {
+            return statementFactory.apply(QueryInfos.bindArguments(query));
+        }
+        QueryInfo<K, S, T> template = query.toBuilder().arguments(ImmutableList.of()).build();
+        return preparedStatements
+                .asMap()
+                .computeIfAbsent(Arrays.asList(template, statementKind), key -> statementFactory.apply(template))
+                .mapArgs(arg -> QueryInfos.isParameter(arg) ? QueryInfos.argumentOf((QueryParameter)arg, query.arguments()) : arg);
+    }
+
+    private static boolean isPlainArgument(Object argument) {
+        return argument instanceof Collection
+                ? ((Collection<?>)argument).stream().noneMatch(HasMetaClass.class::isInstance)
+                : !(argument instanceof HasMetaClass);
+    }
+
     @Override
     public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
         return schemaGenerator
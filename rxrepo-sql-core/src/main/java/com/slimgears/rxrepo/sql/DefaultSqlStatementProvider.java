@@ -22,6 +22,7 @@ import com.slimgears.util.stream.Streams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Timestamp;
 import java.util.*;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -113,20 +114,15 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
         return statement(() -> forBatchInsertStatement(metaClass, propertyResolvers, referenceResolver));
     }
 
-    @SuppressWarnings("unchecked")
+    @Override
+    public <K, S, T> SqlStatement forLockingQuery(QueryInfo<K, S, T> queryInfo) {
+        return forQuery(queryInfo).append("for update");
+    }
+
     protected <K, S> SqlStatement forInsertOrUpdate(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, SqlReferenceResolver resolver, boolean forced) {
         return statement(() -> {
             SqlStatement insertStatement = forInsertStatement(metaClass, propertyResolver, resolver);
-            Lazy<S> object = Lazy.of(() -> propertyResolver.toObject(metaClass));
-            UpdateInfo<K, S> updateInfo = UpdateInfo.<K, S>builder()
-                    .metaClass(metaClass)
-                    .propertyUpdates(PropertyExpressions.valueProvidersFromMeta(metaClass)
-                            .flatMap(p -> Optional.ofNullable(p.value(object.get()))
-                                    .map(v -> PropertyUpdateInfo.create((PropertyExpression<S, ?, Object>)p.property(), v))
-                                    .map(Stream::of)
-                                    .orElseGet(Stream::empty))
-                            .collect(ImmutableList.toImmutableList()))
-                    .build();
+            UpdateInfo<K, S> updateInfo = toUpdateInfo(metaClass, propertyResolver);
             SqlStatement updateStatement = forUpdateStatement(updateInfo);
             return of(insertStatement.statement() + "\n" +
                     "on conflict(" + metaClass.keyProperty().name() + ") do\n" +
@@ -156,6 +152,134 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
         return statement(() -> forInsertStatement(metaClass, propertyResolver, resolver));
     }
 
+    public <K, S> String changeLogTableName(MetaClassWithKey<K, S> metaClass) {
+        return fullTableName(metaClass) + "__changes";
+    }
+
+    public <K, S> String changeLogKeyField(MetaClassWithKey<K, S> metaClass) {
+        return sqlExpressionGenerator.toSqlExpression(PropertyExpression.ofObject(metaClass.keyProperty()));
+    }
+
+    // Change log rows are either row images (copy of the row before change) or markers (key only),
+    // written after the change is applied. Change time is used to retain rows until all pollers have read them
+    public <K, S> SqlStatement forCreateChangeLog(MetaClassWithKey<K, S> metaClass) {
+        return of("create table if not exists",
+                changeLogTableName(metaClass),
+                Stream.concat(
+                        Stream.of(
+                                "\"" + SqlFields.changeIdField + "\" " + toSqlType(Long.class) + " generated by default as identity primary key",
+                                "\"" + SqlFields.changeKeyField + "\" " + toSqlType(toFieldType(metaClass.keyProperty())),
+                                "\"" + SqlFields.changeTimeField + "\" timestamp default current_timestamp"),
+                        changeLogColumns(metaClass).entrySet().stream().map(e -> e.getKey() + " " + e.getValue()))
+                        .collect(Collectors.joining(",\n", "(\n", ")")));
+    }
+
+    public <K, S, Q extends HasEntityMeta<K, S> & HasPredicate<S>> SqlStatement forChangeLogKeys(Q statement) {
+        return statement(() -> of(
+                "select",
+                changeLogKeyField(statement.metaClass()),
+                "as",
+                "\"" + SqlFields.changeKeyField + "\"",
+                fromClause(statement),
+                whereClause(statement)));
+    }
+
+    public <K, S> SqlStatement forLogChangeImages(MetaClassWithKey<K, S> metaClass, Collection<?> keys) {
+        String columns = String.join(", ", changeLogColumns(metaClass).keySet());
+        return SqlStatement.create(concat(
+                "insert into",
+                changeLogTableName(metaClass),
+                "(" + columns + ", \"" + SqlFields.changeKeyField + "\")",
+                "select",
+                columns + ", " + changeLogKeyField(metaClass),
+                "from",
+                fullTableName(metaClass),
+                "where",
+                changeLogKeyField(metaClass),
+                "in",
+                parameterList(keys.size())), keys.toArray());
+    }
+
+    public <K, S> SqlStatement forLogChangeMarkers(MetaClassWithKey<K, S> metaClass, Collection<?> keys) {
+        String sequenceNumber = nextSequenceNumber();
+        return sequenceNumber != null
+                ? SqlStatement.create(concat(
+                        "insert into",
+                        changeLogTableName(metaClass),
+                        "(\"" + SqlFields.changeKeyField + "\", \"" + SqlFields.sequenceFieldName + "\")",
+                        "values",
+                        String.join(", ", Collections.nCopies(keys.size(), "(?, " + sequenceNumber + ")"))), keys.toArray())
+                : SqlStatement.create(concat(
+                        "insert into",
+                        changeLogTableName(metaClass),
+                        "(\"" + SqlFields.changeKeyField + "\")",
+                        "values",
+                        String.join(", ", Collections.nCopies(keys.size(), "(?)"))), keys.toArray());
+    }
+
+    // Reads changes after given change id, and the ones missed by previous reads (not committed yet at that time).
+    // Change sequence number is comparable with sequence numbers of the rows when the dialect has those,
+    // otherwise change id is used
+    public <K, S> SqlStatement forReadChangeLog(MetaClassWithKey<K, S> metaClass, long afterChangeId, Collection<Long> missingChangeIds, int limit) {
+        String changeIdField = "\"" + SqlFields.changeIdField + "\"";
+        return SqlStatement.create(concat(
+                "select",
+                changeIdField + ",",
+                "\"" + SqlFields.changeKeyField + "\",",
+                changeLogKeyField(metaClass), "as", "\"" + SqlFields.changeImageField + "\",",
+                nextSequenceNumber() != null ? "\"" + SqlFields.sequenceFieldName + "\"" : changeIdField,
+                "as", "\"" + SqlFields.changeSequenceField + "\"",
+                "from",
+                changeLogTableName(metaClass),
+                "where",
+                changeIdField + " > ?",
+                missingChangeIds.isEmpty() ? "" : concat("or", changeIdField, "in", parameterList(missingChangeIds.size())),
+                "order by",
+                changeIdField,
+                "limit " + limit), Stream.concat(Stream.of(afterChangeId), missingChangeIds.stream()).toArray());
+    }
+
+    // Next sequence number, written by every insert or update of a row and with change log markers,
+    // or null when the dialect has no row sequence numbers
+    protected String nextSequenceNumber() {
+        return null;
+    }
+
+    public <K, S> SqlStatement forLastChangeId(MetaClassWithKey<K, S> metaClass) {
+        return of("select",
+                "max(\"" + SqlFields.changeIdField + "\") as \"" + SqlFields.changeIdField + "\"",
+                "from",
+                changeLogTableName(metaClass));
+    }
+
+    public <K, S> SqlStatement forCompactChangeLog(MetaClassWithKey<K, S> metaClass, Date olderThan) {
+        return SqlStatement.create(concat(
+                "delete from",
+                changeLogTableName(metaClass),
+                "where",
+                "\"" + SqlFields.changeTimeField + "\" < ?"), new Timestamp(olderThan.getTime()));
+    }
+
+    // Row sources for re-running a live query over changed rows only
+    public <K, S> String forChangeLogImagesSource(MetaClassWithKey<K, S> metaClass, int changeCount) {
+        return concat("(select * from", changeLogTableName(metaClass), "where", "\"" + SqlFields.changeIdField + "\"", "in", parameterList(changeCount) + ")");
+    }
+
+    public <K, S> String forChangedRowsSource(MetaClassWithKey<K, S> metaClass, int keyCount) {
+        return concat("(select * from", fullTableName(metaClass), "where", changeLogKeyField(metaClass), "in", parameterList(keyCount) + ")");
+    }
+
+    protected <K, S> Map<String, String> changeLogColumns(MetaClassWithKey<K, S> metaClass) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        PropertyExpressions.embeddedPropertiesForMeta(metaClass)
+                .forEach(p -> columns.put(fullFieldName(p), toSqlType(toFieldType(p.property()))));
+        return columns;
+    }
+
+    private static String parameterList(int count) {
+        return "(" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
+
     protected <K, S> Stream<String> fieldDefs(MetaClassWithKey<K, S> metaClass) {
         return PropertyExpressions.embeddedPropertiesForMeta(metaClass)
                 .map(this::toFieldDef);
@@ -166,14 +290,39 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
                 "update",
                 fullTableName(updateInfo.metaClass()),
                 "set",
-                updateInfo.propertyUpdates()
-                        .stream()
-                        .map(pu -> concat(sqlExpressionGenerator.toSqlExpression(pu.property()), "=", sqlExpressionGenerator.toSqlExpression(pu.updater())))
-                        .collect(Collectors.joining(", ")),
+                assignmentsClause(updateInfo),
                 whereClauseForUpdate(updateInfo),
                 limitClause(updateInfo));
     }
 
+    // Sequence number serves as row version (see forUpdateIfNotModified), so every update advances it
+    protected <K, S> String assignmentsClause(UpdateInfo<K, S> updateInfo) {
+        String sequenceNumber = nextSequenceNumber();
+        return Stream.concat(
+                updateInfo.propertyUpdates()
+                        .stream()
+                        .map(pu -> concat(sqlExpressionGenerator.toSqlExpression(pu.property()), "=", sqlExpressionGenerator.toSqlExpression(pu.updater()))),
+                sequenceNumber != null
+                        ? Stream.of(concat("\"" + SqlFields.sequenceFieldName + "\"", "=", sequenceNumber))
+                        : Stream.empty())
+                .collect(Collectors.joining(", "));
+    }
+
+    // Update of all non-null properties of the object
+    @SuppressWarnings("unchecked")
+    protected <K, S> UpdateInfo<K, S> toUpdateInfo(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver) {
+        Lazy<S> object = Lazy.of(() -> propertyResolver.toObject(metaClass));
+        return UpdateInfo.<K, S>builder()
+                .metaClass(metaClass)
+                .propertyUpdates(PropertyExpressions.valueProvidersFromMeta(metaClass)
+                        .flatMap(p -> Optional.ofNullable(p.value(object.get()))
+                                .map(v -> PropertyUpdateInfo.create((PropertyExpression<S, ?, Object>)p.property(), v))
+                                .map(Stream::of)
+                                .orElseGet(Stream::empty))
+                        .collect(ImmutableList.toImmutableList()))
+                .build();
+    }
+
     protected <K, S> SqlStatement forInsertStatement(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, SqlReferenceResolver resolver) {
         Collection<Assignment> assignments = toAssignments(metaClass, propertyResolver, resolver)
                 .collect(Collectors.toList());
@@ -225,6 +374,40 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
         return of("create schema if not exists", databaseName());
     }
 
+    public String schemaFingerprintsTableName() {
+        return databaseName() + ".__schema";
+    }
+
+    public SqlStatement forCreateSchemaFingerprints() {
+        return of("create table if not exists",
+                schemaFingerprintsTableName(),
+                "(\"" + SqlFields.schemaTableField + "\" " + toSqlType(String.class) + " primary key, " +
+                        "\"" + SqlFields.schemaFingerprintField + "\" " + toSqlType(String.class) + ")");
+    }
+
+    public SqlStatement forReadSchemaFingerprints() {
+        return of("select",
+                "\"" + SqlFields.schemaTableField + "\", \"" + SqlFields.schemaFingerprintField + "\"",
+                "from",
+                schemaFingerprintsTableName());
+    }
+
+    public SqlStatement forDeleteSchemaFingerprint(String tableName) {
+        return SqlStatement.create(concat(
+                "delete from",
+                schemaFingerprintsTableName(),
+                "where",
+                "\"" + SqlFields.schemaTableField + "\" = ?"), tableName);
+    }
+
+    public SqlStatement forInsertSchemaFingerprint(String tableName, String fingerprint) {
+        return SqlStatement.create(concat(
+                "insert into",
+                schemaFingerprintsTableName(),
+                "(\"" + SqlFields.schemaTableField + "\", \"" + SqlFields.schemaFingerprintField + "\")",
+                "values (?, ?)"), tableName, fingerprint);
+    }
+
     protected SqlStatement statement(Supplier<SqlStatement> statementSupplier) {
         List<Object> params = new ArrayList<>();
         SqlStatement statement = sqlExpressionGenerator.withParams(params, statementSupplier::get);
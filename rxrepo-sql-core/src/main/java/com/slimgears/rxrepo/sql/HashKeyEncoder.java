@@ -0,0 +1,49 @@
+package com.slimgears.rxrepo.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes keys as 128-bit murmur3 hash of {@code key.toString()}, in 22 characters of url-safe base64.
+ * Much cheaper than {@link DigestKeyEncoder}, but not cryptographic, so recently encoded keys are tracked
+ * (up to {@code collisionCheckSize}) and a collision between two different keys fails the encoding.
+ * Encoded keys are persisted, so the encoder of existing repository should not be changed.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class HashKeyEncoder implements KeyEncoder {
+    private final static HashFunction hashFunction = Hashing.murmur3_128();
+    private final static BaseEncoding encoding = BaseEncoding.base64Url().omitPadding();
+    private final Cache<String, String> encodedKeys;
+
+    private HashKeyEncoder(long collisionCheckSize) {
+        this.encodedKeys = collisionCheckSize > 0
+                ? CacheBuilder.newBuilder().maximumSize(collisionCheckSize).build()
+                : null;
+    }
+
+    public static KeyEncoder create(long collisionCheckSize) {
+        return new HashKeyEncoder(collisionCheckSize);
+    }
+
+    public static KeyEncoder create() {
+        return create(100000);
+    }
+
+    @Override
+    public String encode(Object key) {
+        String keyText = key.toString();
+        String encodedKey = encoding.encode(hashFunction.hashString(keyText, StandardCharsets.UTF_8).asBytes());
+        if (encodedKeys != null) {
+            String previousKeyText = encodedKeys.asMap().putIfAbsent(encodedKey, keyText);
+            if (previousKeyText != null && !previousKeyText.equals(keyText)) {
+                throw new IllegalStateException("Key hash collision: " + previousKeyText + " and " + keyText + " are both encoded as " + encodedKey);
+            }
+        }
+        return encodedKey;
+    }
+}
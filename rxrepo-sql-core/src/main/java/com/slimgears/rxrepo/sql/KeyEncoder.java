@@ -2,4 +2,8 @@ package com.slimgears.rxrepo.sql;
 
 public interface KeyEncoder {
     String encode(Object key);
+
+    default KeyEncoder cached(long maxSize) {
+        return CachedKeyEncoder.of(this, maxSize);
+    }
 }
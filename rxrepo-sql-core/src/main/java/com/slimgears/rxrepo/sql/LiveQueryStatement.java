@@ -0,0 +1,55 @@
+package com.slimgears.rxrepo.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Live query statement split around its 'from &lt;db&gt;.&lt;table&gt;' clause, so the same query
+ * (projection, predicate) can be evaluated against a different source of rows, e.g. changed rows only.
+ */
+public class LiveQueryStatement {
+    private final static Pattern fromTablePattern = Pattern.compile("(?i)\\sfrom\\s+(([\\w\"]+)\\.([\\w\"]+))");
+    private final String head;
+    private final String tail;
+    private final Object[] args;
+    private final String fullTableName;
+    private final String tableAlias;
+
+    private LiveQueryStatement(SqlStatement statement, Matcher fromMatcher) {
+        this.head = statement.statement().substring(0, fromMatcher.start());
+        this.tail = statement.statement().substring(fromMatcher.end());
+        this.args = statement.args();
+        this.fullTableName = fromMatcher.group(1);
+        this.tableAlias = fromMatcher.group(3);
+    }
+
+    public static Optional<LiveQueryStatement> of(SqlStatement statement) {
+        Matcher matcher = fromTablePattern.matcher(statement.statement());
+        return matcher.find()
+                ? Optional.of(new LiveQueryStatement(statement, matcher))
+                : Optional.empty();
+    }
+
+    public String fullTableName() {
+        return fullTableName;
+    }
+
+    public String tableName() {
+        return tableAlias.replace("\"", "");
+    }
+
+    // Replaces 'from <table>' with given source, keeping table name as alias,
+    // and adds key to the projection (as liveKeyField) so the rows can be matched to the changes
+    public SqlStatement withSource(String keyField, String source, Object... sourceArgs) {
+        int argIndex = (int)head.chars().filter(c -> c == '?').count();
+        List<Object> args = new ArrayList<>(Arrays.asList(this.args));
+        args.addAll(argIndex, Arrays.asList(sourceArgs));
+        return SqlStatement.create(
+                head + ", " + keyField + " as \"" + SqlFields.liveKeyField + "\" from " + source + " as " + tableAlias + tail,
+                args.toArray());
+    }
+}
@@ -4,8 +4,12 @@ import com.slimgears.nanometer.MetricCollector;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import io.reactivex.subjects.CompletableSubject;
 
 public class MetricsSqlStatementExecutorDecorator implements SqlStatementExecutor.Decorator {
     private final MetricCollector metricCollector;
@@ -26,6 +30,19 @@ public class MetricsSqlStatementExecutorDecorator implements SqlStatementExecuto
                 return executor.executeQuery(statement).compose(asyncCollector("query").forObservable());
             }
 
+            // Measured through termination signal, as converting to Observable would drop the cursor backpressure
+            @Override
+            public Flowable<PropertyResolver> executeStreamingQuery(SqlStatement statement) {
+                return Flowable.defer(() -> {
+                    CompletableSubject termination = CompletableSubject.create();
+                    termination.compose(asyncCollector("query").forCompletable()).onErrorComplete().subscribe();
+                    return executor.executeStreamingQuery(statement)
+                            .doOnComplete(termination::onComplete)
+                            .doOnCancel(termination::onComplete)
+                            .doOnError(termination::onError);
+                });
+            }
+
             @Override
             public Single<Integer> executeCommandReturnCount(SqlStatement statement) {
                 return executor.executeCommandReturnCount(statement).compose(asyncCollector("command").forSingle());
@@ -41,11 +58,21 @@ public class MetricsSqlStatementExecutorDecorator implements SqlStatementExecuto
                 return executor.executeLiveQuery(statement).compose(asyncCollector("liveQuery").forObservable());
             }
 
+            @Override
+            public Completable liveQueryReady(SqlStatement statement) {
+                return executor.liveQueryReady(statement);
+            }
+
             @Override
             public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
                 return executor.executeCommandReturnEntries(statement).compose(asyncCollector("command").forObservable());
             }
 
+            @Override
+            public <T> Maybe<T> executeInTransaction(Function<SqlStatementExecutor, Maybe<T>> work) {
+                return executor.executeInTransaction(transactionExecutor -> work.apply(MetricsSqlStatementExecutorDecorator.this.apply(transactionExecutor)));
+            }
+
             private MetricCollector.Async asyncCollector(String name) {
                 return metricCollector.name(name).asyncDefault();
             }
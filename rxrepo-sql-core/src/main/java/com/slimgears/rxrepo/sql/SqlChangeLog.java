@@ -0,0 +1,119 @@
+package com.slimgears.rxrepo.sql;
+
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Dialect independent change log: for every table a '&lt;table&gt;__changes' table is created, to which writes append
+ * row images (before change) and key markers (after change). Registered tables are polled by {@link SqlChangeLogPoller}
+ * to serve live queries on databases without native change notification. Log rows are kept for {@code retentionTime},
+ * which should be longer than any write transaction and poll interval, and are deleted by {@link #compact} from every
+ * registered table, whether it has live queries or not.
+ */
+public class SqlChangeLog {
+    private final static Logger log = LoggerFactory.getLogger(SqlChangeLog.class);
+    private final Map<String, Table<?, ?>> tables = new ConcurrentHashMap<>();
+    private final Duration minPollInterval;
+    private final Duration maxPollInterval;
+    private final int maxBatchSize;
+    private final Duration retentionTime;
+
+    private SqlChangeLog(Duration minPollInterval, Duration maxPollInterval, int maxBatchSize, Duration retentionTime) {
+        this.minPollInterval = minPollInterval;
+        this.maxPollInterval = maxPollInterval;
+        this.maxBatchSize = maxBatchSize;
+        this.retentionTime = retentionTime;
+    }
+
+    public static SqlChangeLog create(Duration minPollInterval, Duration maxPollInterval) {
+        return create(minPollInterval, maxPollInterval, 1000);
+    }
+
+    public static SqlChangeLog create(Duration minPollInterval, Duration maxPollInterval, int maxBatchSize) {
+        return create(minPollInterval, maxPollInterval, maxBatchSize, Duration.ofMinutes(1));
+    }
+
+    public static SqlChangeLog create(Duration minPollInterval, Duration maxPollInterval, int maxBatchSize, Duration retentionTime) {
+        return new SqlChangeLog(minPollInterval, maxPollInterval, maxBatchSize, retentionTime);
+    }
+
+    public Duration minPollInterval() {
+        return minPollInterval;
+    }
+
+    public Duration maxPollInterval() {
+        return maxPollInterval;
+    }
+
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public Duration retentionTime() {
+        return retentionTime;
+    }
+
+    public Optional<Table<?, ?>> table(String fullTableName) {
+        return Optional.ofNullable(tables.get(fullTableName.replace("\"", "").toLowerCase()));
+    }
+
+    public <K, S> void register(MetaClassWithKey<K, S> metaClass, DefaultSqlStatementProvider statementProvider) {
+        String fullTableName = statementProvider.databaseName() + "." + statementProvider.tableName(metaClass);
+        tables.put(fullTableName.toLowerCase(), new Table<>(metaClass, statementProvider));
+    }
+
+    public void clear() {
+        tables.clear();
+    }
+
+    // Each table is compacted once per half of retention time at most, so it can be called on every poll or write
+    public Completable compact(SqlStatementExecutor statementExecutor) {
+        return Completable.defer(() -> {
+            long nowNanos = System.nanoTime();
+            long intervalNanos = retentionTime.toNanos() / 2;
+            Date olderThan = new Date(System.currentTimeMillis() - retentionTime.toMillis());
+            return Completable.concat(tables.values()
+                    .stream()
+                    .filter(table -> table.claimCompaction(nowNanos, intervalNanos))
+                    .map(table -> statementExecutor
+                            .executeCommand(table.statementProvider.forCompactChangeLog(table.metaClass, olderThan))
+                            .doOnError(e -> log.warn("Failed to compact change log of {}", table.metaClass.simpleName(), e))
+                            .onErrorComplete())
+                    .collect(Collectors.toList()));
+        });
+    }
+
+    public static class Table<K, S> {
+        private final MetaClassWithKey<K, S> metaClass;
+        private final DefaultSqlStatementProvider statementProvider;
+        private final AtomicLong lastCompactionNanos = new AtomicLong(System.nanoTime());
+
+        private Table(MetaClassWithKey<K, S> metaClass, DefaultSqlStatementProvider statementProvider) {
+            this.metaClass = metaClass;
+            this.statementProvider = statementProvider;
+        }
+
+        public MetaClassWithKey<K, S> metaClass() {
+            return metaClass;
+        }
+
+        public DefaultSqlStatementProvider statementProvider() {
+            return statementProvider;
+        }
+
+        private boolean claimCompaction(long nowNanos, long intervalNanos) {
+            long lastNanos = lastCompactionNanos.get();
+            return nowNanos - lastNanos >= intervalNanos && lastCompactionNanos.compareAndSet(lastNanos, nowNanos);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.slimgears.rxrepo.sql;
+
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.CompletableSubject;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Single polling thread per repository, reading change logs (see {@link SqlChangeLog}) of the tables which have active
+ * live queries, in change order. Poll interval doubles while there are no changes, or polling fails (up to max interval),
+ * and is reset to min interval once changes appear. Changes of the same key within a batch are coalesced.
+ * Change ids are allocated when a change is written, but become visible once it is committed, so the ids skipped
+ * by a read are read again until they appear, or until retention time passes (e.g. rolled back writes).
+ * Log rows are deleted by age rather than by read position (see {@link SqlChangeLog#compact}), so any number
+ * of repositories can poll the same database.
+ */
+public class SqlChangeLogPoller {
+    private final static Logger log = LoggerFactory.getLogger(SqlChangeLogPoller.class);
+    private final static int maxPendingChanges = 10000;
+    private final static int maxMissingChangesPerRead = 1000;
+    private final SqlStatementExecutor statementExecutor;
+    private final SqlChangeLog changeLog;
+    private final Map<String, TableState<?, ?>> tableStates = new ConcurrentHashMap<>();
+    private final Map<String, CompletableSubject> firstPolls = new ConcurrentHashMap<>();
+    private final Observable<Object> pollLoop;
+
+    private SqlChangeLogPoller(SqlStatementExecutor statementExecutor, SqlChangeLog changeLog) {
+        this.statementExecutor = statementExecutor;
+        this.changeLog = changeLog;
+        this.pollLoop = Observable.create(emitter -> {
+            long intervalMillis = changeLog.minPollInterval().toMillis();
+            while (!emitter.isDisposed()) {
+                int changeCount = 0;
+                for (TableState<?, ?> state : tableStates.values()) {
+                    changeCount += state.poll();
+                }
+                changeLog.compact(statementExecutor).blockingAwait();
+                intervalMillis = changeCount > 0
+                        ? changeLog.minPollInterval().toMillis()
+                        : Math.min(intervalMillis * 2, changeLog.maxPollInterval().toMillis());
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        })
+                .subscribeOn(Schedulers.newThread())
+                .share();
+    }
+
+    public static SqlChangeLogPoller create(SqlStatementExecutor statementExecutor, SqlChangeLog changeLog) {
+        return new SqlChangeLogPoller(statementExecutor, changeLog);
+    }
+
+    public <K, S> Observable<List<Change>> changes(SqlChangeLog.Table<K, S> table) {
+        return Observable.create(emitter -> {
+            TableState<?, ?> state = acquire(table);
+            Disposable changes = state.changes.subscribe(emitter::onNext, emitter::tryOnError);
+            Disposable polling = pollLoop.subscribe(tick -> {}, emitter::tryOnError);
+            emitter.setDisposable(Disposables.fromAction(() -> {
+                changes.dispose();
+                polling.dispose();
+                release(state);
+            }));
+        });
+    }
+
+    // Completes once change log of the table has been polled for live query, so the changes made afterwards are notified
+    public <K, S> Completable polled(SqlChangeLog.Table<K, S> table) {
+        return firstPollOf(table.statementProvider().changeLogTableName(table.metaClass()));
+    }
+
+    private CompletableSubject firstPollOf(String changeLogTableName) {
+        return firstPolls.computeIfAbsent(changeLogTableName, name -> CompletableSubject.create());
+    }
+
+    private synchronized <K, S> TableState<?, ?> acquire(SqlChangeLog.Table<K, S> table) {
+        TableState<?, ?> state = tableStates.computeIfAbsent(table.statementProvider().changeLogTableName(table.metaClass()), name -> new TableState<>(table));
+        state.refCount++;
+        return state;
+    }
+
+    private synchronized void release(TableState<?, ?> state) {
+        if (--state.refCount == 0) {
+            String changeLogTableName = state.statementProvider.changeLogTableName(state.metaClass);
+            tableStates.remove(changeLogTableName);
+            firstPolls.remove(changeLogTableName);
+        }
+    }
+
+    private static long toLong(Object value) {
+        return Optional.ofNullable(value)
+                .map(Number.class::cast)
+                .map(Number::longValue)
+                .orElse(0L);
+    }
+
+    public static class Change {
+        private final Object key;
+        private final Long imageChangeId;
+        private long changeId;
+        private long sequenceNumber;
+
+        private Change(Object key, Long imageChangeId, long changeId, long sequenceNumber) {
+            this.key = key;
+            this.imageChangeId = imageChangeId;
+            this.changeId = changeId;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        public Object key() {
+            return key;
+        }
+
+        // Change log row holding the image of the row before this change, or null if the row did not exist
+        public Long imageChangeId() {
+            return imageChangeId;
+        }
+
+        public long changeId() {
+            return changeId;
+        }
+
+        // Comparable with sequence numbers of queried rows (see DefaultSqlStatementProvider.forReadChangeLog)
+        public long sequenceNumber() {
+            return sequenceNumber;
+        }
+    }
+
+    private class TableState<K, S> {
+        private final MetaClassWithKey<K, S> metaClass;
+        private final DefaultSqlStatementProvider statementProvider;
+        private final Subject<List<Change>> changes = PublishSubject.<List<Change>>create().toSerialized();
+        private final Map<String, Long> pendingImages = new HashMap<>();
+        private final Map<Long, Long> missingChangeIds = new LinkedHashMap<>();
+        private int refCount;
+        private long lastChangeId;
+
+        private TableState(SqlChangeLog.Table<K, S> table) {
+            this.metaClass = table.metaClass();
+            this.statementProvider = table.statementProvider();
+            this.lastChangeId = statementExecutor.executeQuery(statementProvider.forLastChangeId(metaClass))
+                    .map(pr -> toLong(pr.getProperty(SqlFields.changeIdField, Object.class)))
+                    .first(0L)
+                    .blockingGet();
+        }
+
+        private int poll() {
+            try {
+                long nowNanos = System.nanoTime();
+                long retentionNanos = changeLog.retentionTime().toNanos();
+                missingChangeIds.values().removeIf(missedAtNanos -> nowNanos - missedAtNanos > retentionNanos);
+                List<Long> missing = missingChangeIds.keySet().stream()
+                        .limit(maxMissingChangesPerRead)
+                        .collect(Collectors.toList());
+
+                List<Object[]> rows = statementExecutor
+                        .executeQuery(statementProvider.forReadChangeLog(metaClass, lastChangeId, missing, changeLog.maxBatchSize()))
+                        .map(pr -> new Object[] {
+                                toLong(pr.getProperty(SqlFields.changeIdField, Object.class)),
+                                pr.getProperty(SqlFields.changeKeyField, Object.class),
+                                pr.getProperty(SqlFields.changeImageField, Object.class) != null,
+                                toLong(pr.getProperty(SqlFields.changeSequenceField, Object.class))})
+                        .toList()
+                        .blockingGet();
+
+                Map<String, Change> batch = new LinkedHashMap<>();
+                for (Object[] row : rows) {
+                    long changeId = (Long)row[0];
+                    if (changeId > lastChangeId) {
+                        trackMissingChanges(lastChangeId, changeId, nowNanos);
+                        lastChangeId = changeId;
+                    } else {
+                        missingChangeIds.remove(changeId);
+                    }
+
+                    String keyText = String.valueOf(row[1]);
+                    long sequenceNumber = (Long)row[3];
+                    if ((Boolean)row[2]) {
+                        pendingImages.putIfAbsent(keyText, changeId);
+                    } else {
+                        Long imageChangeId = pendingImages.remove(keyText);
+                        Change change = batch.get(keyText);
+                        if (change != null) {
+                            change.changeId = Math.max(change.changeId, changeId);
+                            change.sequenceNumber = Math.max(change.sequenceNumber, sequenceNumber);
+                        } else {
+                            batch.put(keyText, new Change(row[1], imageChangeId, changeId, sequenceNumber));
+                        }
+                    }
+                }
+
+                // Images of writes which have failed are never followed by marker
+                pendingImages.values().removeIf(changeId -> changeId < lastChangeId - maxPendingChanges);
+
+                if (!batch.isEmpty()) {
+                    log.trace("{}: {} changes", metaClass.simpleName(), batch.size());
+                    changes.onNext(new ArrayList<>(batch.values()));
+                }
+                String changeLogTableName = statementProvider.changeLogTableName(metaClass);
+                if (tableStates.get(changeLogTableName) == this) {
+                    firstPollOf(changeLogTableName).onComplete();
+                }
+                return rows.size();
+            } catch (RuntimeException e) {
+                // Live queries are kept, polling is retried with growing interval
+                log.warn("Failed to poll change log of {}", metaClass.simpleName(), e);
+                return 0;
+            }
+        }
+
+        // Ids between last read and currently read change ids belong to the changes not committed yet
+        private void trackMissingChanges(long lastChangeId, long changeId, long nowNanos) {
+            if (changeId - lastChangeId - 1 > maxPendingChanges) {
+                log.warn("{}: too many missing changes between {} and {}, skipping", metaClass.simpleName(), lastChangeId, changeId);
+                return;
+            }
+            for (long id = lastChangeId + 1; id < changeId; ++id) {
+                missingChangeIds.put(id, nowNanos);
+            }
+        }
+    }
+}
@@ -3,4 +3,12 @@ package com.slimgears.rxrepo.sql;
 public class SqlFields {
     public static String sequenceFieldName = "__sequenceNum";
     public final static String aggregationField = "__aggregation";
+    public final static String liveKeyField = "__liveKey";
+    public final static String changeIdField = "__changeId";
+    public final static String changeKeyField = "__changeKey";
+    public final static String changeImageField = "__changeImage";
+    public final static String changeTimeField = "__changeTime";
+    public final static String changeSequenceField = "__changeSeq";
+    public final static String schemaTableField = "__table";
+    public final static String schemaFingerprintField = "__fingerprint";
 }
@@ -8,6 +8,11 @@ public interface SqlSchemaGenerator {
     <K, T> Completable createOrUpdate(MetaClassWithKey<K, T> metaClass);
     void clear();
 
+    // Whether tables which do not reference each other can be created concurrently
+    default boolean supportsParallelCreation() {
+        return false;
+    }
+
     default <K, T> Completable useTable(MetaClassWithKey<K, T> metaClass) {
 //        return createDatabase().andThen(createOrUpdate(metaClass));
         createDatabase().andThen(createOrUpdate(metaClass)).blockingAwait();
@@ -25,6 +25,7 @@ public interface SqlServiceFactory {
 
     abstract class Builder<B extends Builder<B>> {
         private QueryProvider.Decorator decorator = QueryProvider.Decorator.identity();
+        private Function<SqlServiceFactory, QueryProvider.Decorator> queryProviderDecorator = sf -> QueryProvider.Decorator.identity();
         protected Function<SqlServiceFactory, SqlStatementExecutor.Decorator> executorDecorator = sf -> SqlStatementExecutor.Decorator.identity();
 
         protected Function<SqlServiceFactory, SqlStatementProvider> statementProvider;
@@ -126,10 +127,19 @@ public interface SqlServiceFactory {
         public abstract SqlServiceFactory build();
 
         public final Repository buildRepository(RepositoryConfigModel config, QueryProvider.Decorator... decorators) {
-            return Repository.fromProvider(this.decorator.apply(build().queryProvider()), config, decorators)
+            SqlServiceFactory serviceFactory = build();
+            QueryProvider queryProvider = queryProviderDecorator.apply(serviceFactory).apply(serviceFactory.queryProvider());
+            return Repository.fromProvider(this.decorator.apply(queryProvider), config, decorators)
                     .onClose(repo -> onClose.run());
         }
 
+        // Applied to query provider before decorators added with decorate()
+        public B decorateQueryProvider(Function<SqlServiceFactory, QueryProvider.Decorator> decorator) {
+            Function<SqlServiceFactory, QueryProvider.Decorator> oldDecorator = this.queryProviderDecorator;
+            this.queryProviderDecorator = sf -> oldDecorator.apply(sf).andThen(decorator.apply(sf));
+            return self();
+        }
+
         public final B decorate(QueryProvider.Decorator... decorators) {
             this.decorator = this.decorator.andThen(of(decorators));
             return self();
@@ -3,9 +3,13 @@ package com.slimgears.rxrepo.sql;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.functions.Function;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -26,6 +30,23 @@ public interface SqlStatementExecutor {
         return executeCommands(Collections.singleton(statement));
     }
 
+    // Executors which cannot hold a cursor fall back to buffering query results
+    default Flowable<PropertyResolver> executeStreamingQuery(SqlStatement statement) {
+        return executeQuery(statement).toFlowable(BackpressureStrategy.BUFFER);
+    }
+
+    // Statements executed by 'work' through the given executor share single connection and transaction,
+    // committed on success. Executors without transaction support run 'work' on themselves
+    default <T> Maybe<T> executeInTransaction(Function<SqlStatementExecutor, Maybe<T>> work) {
+        return Maybe.defer(() -> work.apply(this));
+    }
+
+    // Completes once live query of the statement, subscribed before, is established, so the changes made afterwards
+    // are notified. Executors establishing live queries on subscription complete immediately
+    default Completable liveQueryReady(SqlStatement statement) {
+        return Completable.complete();
+    }
+
 
     interface Decorator {
         SqlStatementExecutor apply(SqlStatementExecutor executor);
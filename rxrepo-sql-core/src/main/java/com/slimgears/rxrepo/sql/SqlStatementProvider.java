@@ -7,6 +7,10 @@ import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.autovalue.annotations.MetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.stream.Streams;
+
+import javax.annotation.Nullable;
+import java.util.stream.Stream;
 
 public interface SqlStatementProvider {
     <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo);
@@ -50,7 +54,28 @@ public interface SqlStatementProvider {
         return forInsertOrUpdate(metaClass, PropertyResolver.fromObject(metaClass, entity), referenceResolver);
     }
 
+    default <K, S> Stream<SqlStatement> forBatchInsertOrUpdate(MetaClassWithKey<K, S> metaClass,
+                                                               Iterable<PropertyResolver> propertyResolvers,
+                                                               SqlReferenceResolver referenceResolver) {
+        return Streams.fromIterable(propertyResolvers).map(pr -> forInsertOrUpdate(metaClass, pr, referenceResolver));
+    }
+
     default <K, S> SqlStatement forInsert(MetaClassWithKey<K, S> metaClass, S entity, SqlReferenceResolver referenceResolver) {
         return forInsert(metaClass, PropertyResolver.fromObject(metaClass, entity), referenceResolver);
     }
+
+    // Query which locks selected rows until the end of transaction (see SqlStatementExecutor.executeInTransaction)
+    default <K, S, T> SqlStatement forLockingQuery(QueryInfo<K, S, T> queryInfo) {
+        return forQuery(queryInfo);
+    }
+
+    // Update returning the updated row, only if its sequence number was not changed since it was read.
+    // Providers which do not keep sequence numbers in rows return null
+    @Nullable
+    default <K, S> SqlStatement forUpdateIfNotModified(MetaClassWithKey<K, S> metaClass,
+                                                       PropertyResolver propertyResolver,
+                                                       SqlReferenceResolver referenceResolver,
+                                                       long sequenceNumber) {
+        return null;
+    }
 }
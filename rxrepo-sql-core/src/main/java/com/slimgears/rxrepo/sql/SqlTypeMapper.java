@@ -2,10 +2,17 @@ package com.slimgears.rxrepo.sql;
 
 import com.google.common.reflect.TypeToken;
 
+import java.util.function.Function;
+
 @SuppressWarnings("UnstableApiUsage")
 public interface SqlTypeMapper {
     String toSqlType(TypeToken<?> typeToken);
     boolean isSupported(TypeToken<?> typeToken);
     <T> Object toSqlValue(T value);
     <T> T fromSqlValue(TypeToken<T> type, Object sqlValue);
+
+    // Converter resolved once, to be applied to many values of the same type (e.g. column of result set)
+    default <T> Function<Object, T> fromSqlValueConverter(TypeToken<T> type) {
+        return sqlValue -> fromSqlValue(type, sqlValue);
+    }
 }
@@ -169,6 +169,18 @@ public class SqlTypes implements SqlTypeMapper {
                 .orElse(null);
     }
 
+    @Override
+    public <T> Function<Object, T> fromSqlValueConverter(TypeToken<T> type) {
+        Class<T> cls = TypeTokens.asClass(type);
+        TypeConverter<T> converter = toTypeConverterOptional(type).orElse(null);
+        return sqlValue -> {
+            if (cls.isInstance(sqlValue)) {
+                return cls.cast(sqlValue);
+            }
+            return sqlValue != null && converter != null ? converter.fromSqlValue(sqlValue) : null;
+        };
+    }
+
     @Override
     public <T> T fromSqlValue(TypeToken<T> type, Object sqlValue) {
         return Optionals.or(
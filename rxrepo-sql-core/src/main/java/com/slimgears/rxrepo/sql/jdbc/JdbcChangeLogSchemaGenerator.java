@@ -0,0 +1,48 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.sql.DefaultSqlStatementProvider;
+import com.slimgears.rxrepo.sql.SqlChangeLog;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlStatementExecutor;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+
+import java.util.List;
+
+/**
+ * Creates change log table (see {@link SqlChangeLog}) along with every table, and registers the table in change log.
+ */
+public class JdbcChangeLogSchemaGenerator extends JdbcSchemaGenerator {
+    private final DefaultSqlStatementProvider changeLogStatementProvider;
+    private final SqlChangeLog changeLog;
+
+    public JdbcChangeLogSchemaGenerator(SqlStatementExecutor statementExecutor,
+                                        DefaultSqlStatementProvider statementProvider,
+                                        JdbcSchemaFingerprints fingerprints,
+                                        SqlChangeLog changeLog) {
+        super(statementExecutor, statementProvider, fingerprints);
+        this.changeLogStatementProvider = statementProvider;
+        this.changeLog = changeLog;
+    }
+
+    @Override
+    public <K, T> Completable createOrUpdate(MetaClassWithKey<K, T> metaClass) {
+        return super.createOrUpdate(metaClass)
+                .doOnComplete(() -> changeLog.register(metaClass, changeLogStatementProvider));
+    }
+
+    @Override
+    public void clear() {
+        changeLog.clear();
+        super.clear();
+    }
+
+    @Override
+    protected <K, T> List<SqlStatement> tableStatements(MetaClassWithKey<K, T> metaClass) {
+        return ImmutableList.<SqlStatement>builder()
+                .addAll(super.tableStatements(metaClass))
+                .add(changeLogStatementProvider.forCreateChangeLog(metaClass))
+                .build();
+    }
+}
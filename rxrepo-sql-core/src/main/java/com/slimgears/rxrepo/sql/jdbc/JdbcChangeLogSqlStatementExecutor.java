@@ -0,0 +1,96 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.sql.DefaultSqlStatementProvider;
+import com.slimgears.rxrepo.sql.LiveQueryStatement;
+import com.slimgears.rxrepo.sql.SqlChangeLog;
+import com.slimgears.rxrepo.sql.SqlChangeLogPoller;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlTypeMapper;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+/**
+ * Serves live queries from {@link SqlChangeLog}. For each batch of changes polled by {@link SqlChangeLogPoller},
+ * the row images before change and the current rows are filtered by the live query itself, and turned into
+ * old / new notification pairs.
+ */
+public class JdbcChangeLogSqlStatementExecutor extends JdbcSqlStatementExecutor {
+    private final SqlChangeLog changeLog;
+    private final SqlChangeLogPoller poller;
+
+    public JdbcChangeLogSqlStatementExecutor(Callable<Connection> connectionSupplier,
+                                             SqlTypeMapper typeMapper,
+                                             int maxBatchSize,
+                                             boolean rewriteBatchedInserts,
+                                             int fetchSize,
+                                             SqlChangeLog changeLog) {
+        super(connectionSupplier, typeMapper, maxBatchSize, rewriteBatchedInserts, fetchSize);
+        this.changeLog = changeLog;
+        this.poller = SqlChangeLogPoller.create(this, changeLog);
+    }
+
+    @Override
+    public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
+        Optional<LiveQueryStatement> source = LiveQueryStatement.of(statement);
+        Optional<SqlChangeLog.Table<?, ?>> table = source.flatMap(s -> changeLog.table(s.fullTableName()));
+        if (!table.isPresent()) {
+            return Observable.error(new IllegalArgumentException("Could not find change log for live query: " + statement.statement()));
+        }
+        return liveQuery(source.get(), table.get());
+    }
+
+    @Override
+    public Completable liveQueryReady(SqlStatement statement) {
+        return LiveQueryStatement.of(statement)
+                .flatMap(s -> changeLog.table(s.fullTableName()))
+                .<Completable>map(poller::polled)
+                .orElseGet(() -> Completable.error(new IllegalArgumentException("Could not find change log for live query: " + statement.statement())));
+    }
+
+    private <K, S> Observable<Notification<PropertyResolver>> liveQuery(LiveQueryStatement source, SqlChangeLog.Table<K, S> table) {
+        return poller.changes(table).concatMap(changes -> toNotifications(source, table, changes));
+    }
+
+    private <K, S> Observable<Notification<PropertyResolver>> toNotifications(LiveQueryStatement source,
+                                                                              SqlChangeLog.Table<K, S> table,
+                                                                              List<SqlChangeLogPoller.Change> changes) {
+        MetaClassWithKey<K, S> metaClass = table.metaClass();
+        DefaultSqlStatementProvider statementProvider = table.statementProvider();
+        String keyField = statementProvider.changeLogKeyField(metaClass);
+        Object[] imageChangeIds = changes.stream()
+                .map(SqlChangeLogPoller.Change::imageChangeId)
+                .filter(Objects::nonNull)
+                .toArray();
+        Object[] keys = changes.stream()
+                .map(SqlChangeLogPoller.Change::key)
+                .toArray();
+
+        Single<Map<String, PropertyResolver>> oldValues = imageChangeIds.length > 0
+                ? queryByLiveKey(source.withSource(keyField, statementProvider.forChangeLogImagesSource(metaClass, imageChangeIds.length), imageChangeIds))
+                : Single.just(Collections.emptyMap());
+        Single<Map<String, PropertyResolver>> newValues = queryByLiveKey(source.withSource(keyField, statementProvider.forChangedRowsSource(metaClass, keys.length), keys));
+
+        return Single.zip(oldValues, newValues, (oldMap, newMap) -> changes
+                .stream()
+                .map(change -> Notification.ofModified(
+                        change.imageChangeId() != null ? oldMap.get(String.valueOf(change.key())) : null,
+                        newMap.get(String.valueOf(change.key())),
+                        change.sequenceNumber()))
+                .filter(notification -> !notification.isEmpty())
+                .collect(Collectors.toList()))
+                .flattenAsObservable(notifications -> notifications);
+    }
+}
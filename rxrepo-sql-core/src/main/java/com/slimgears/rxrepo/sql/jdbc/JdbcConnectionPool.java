@@ -0,0 +1,332 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import com.slimgears.nanometer.MetricCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of JDBC connections. Connections handed out by {@link #getConnection()} return to the pool on close,
+ * and cache their prepared statements (LRU, keyed by statement text): statements obtained from
+ * {@link Connection#prepareStatement(String)} stay open when closed by the caller and are reused by the next
+ * caller preparing the same text on this connection.
+ * Idle connections are validated before being handed out only when they were idle longer than
+ * validation idle time, or when a call on the connection has failed.
+ */
+public class JdbcConnectionPool implements Callable<Connection>, AutoCloseable {
+    private final static Logger log = LoggerFactory.getLogger(JdbcConnectionPool.class);
+    private final Callable<Connection> connectionFactory;
+    private final int maxStatementsPerConnection;
+    private final Duration acquireTimeout;
+    private final Duration validationTimeout;
+    private final long validationIdleTimeNanos;
+    private final Semaphore permits;
+    private final BlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final MetricCollector.Gauge openConnectionsGauge;
+    private final MetricCollector.Gauge activeConnectionsGauge;
+    private final MetricCollector.Gauge statementCacheHitsGauge;
+    private final MetricCollector.Gauge statementCacheMissesGauge;
+    private final MetricCollector.Timer acquireTimer;
+
+    private JdbcConnectionPool(Builder builder) {
+        this.connectionFactory = Objects.requireNonNull(builder.connectionFactory);
+        this.maxStatementsPerConnection = builder.maxStatementsPerConnection;
+        this.acquireTimeout = builder.acquireTimeout;
+        this.validationTimeout = builder.validationTimeout;
+        this.validationIdleTimeNanos = builder.validationIdleTime.toNanos();
+        this.permits = new Semaphore(builder.maxSize, true);
+        MetricCollector metrics = builder.metricCollector.name("connectionPool");
+        this.openConnectionsGauge = metrics.gauge("openConnections");
+        this.activeConnectionsGauge = metrics.gauge("activeConnections");
+        this.statementCacheHitsGauge = metrics.gauge("statementCacheHits");
+        this.statementCacheMissesGauge = metrics.gauge("statementCacheMisses");
+        this.acquireTimer = metrics.timer("acquireTime");
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private Callable<Connection> connectionFactory;
+        private int maxSize = 10;
+        private int maxStatementsPerConnection = 100;
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+        private Duration validationTimeout = Duration.ofSeconds(5);
+        private Duration validationIdleTime = Duration.ofSeconds(30);
+        private MetricCollector metricCollector = MetricCollector.empty();
+
+        public Builder connectionFactory(Callable<Connection> connectionFactory) {
+            this.connectionFactory = connectionFactory;
+            return this;
+        }
+
+        public Builder maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public Builder maxStatementsPerConnection(int maxStatementsPerConnection) {
+            this.maxStatementsPerConnection = maxStatementsPerConnection;
+            return this;
+        }
+
+        public Builder acquireTimeout(Duration acquireTimeout) {
+            this.acquireTimeout = acquireTimeout;
+            return this;
+        }
+
+        public Builder validationTimeout(Duration validationTimeout) {
+            this.validationTimeout = validationTimeout;
+            return this;
+        }
+
+        public Builder validationIdleTime(Duration validationIdleTime) {
+            this.validationIdleTime = validationIdleTime;
+            return this;
+        }
+
+        public Builder metricCollector(MetricCollector metricCollector) {
+            this.metricCollector = metricCollector;
+            return this;
+        }
+
+        public JdbcConnectionPool build() {
+            return new JdbcConnectionPool(this);
+        }
+    }
+
+    @Override
+    public Connection call() throws SQLException {
+        return getConnection();
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("Connection pool is closed");
+        }
+        MetricCollector.Timer.Stopper stopper = acquireTimer.stopper().start();
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Could not acquire connection within " + acquireTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for connection", e);
+        } finally {
+            stopper.stop();
+        }
+
+        try {
+            PooledConnection connection = takeValidConnection();
+            activeConnectionsGauge.record(activeConnections.incrementAndGet());
+            return connection.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            PooledConnection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+                connection.closePhysical();
+            }
+        }
+    }
+
+    private PooledConnection takeValidConnection() throws SQLException {
+        PooledConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            if (!connection.requiresValidation() || connection.isValid()) {
+                return connection;
+            }
+            log.debug("Discarding invalid pooled connection");
+            connection.closePhysical();
+        }
+        return new PooledConnection(openConnection());
+    }
+
+    private Connection openConnection() throws SQLException {
+        try {
+            Connection connection = connectionFactory.call();
+            openConnectionsGauge.record(openConnections.incrementAndGet());
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private void release(PooledConnection connection) {
+        activeConnectionsGauge.record(activeConnections.decrementAndGet());
+        try {
+            if (closed.get() || !connection.reset()) {
+                connection.closePhysical();
+            } else {
+                idleConnections.offerFirst(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+        private volatile boolean failed;
+        private volatile long releasedAtNanos = System.nanoTime();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= maxStatementsPerConnection) {
+                        return false;
+                    }
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        private Connection lease() {
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection)Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                if (released.compareAndSet(false, true)) {
+                                    release(this);
+                                }
+                                return null;
+                            case "isClosed":
+                                return released.get() || connection.isClosed();
+                        }
+                        if (released.get()) {
+                            throw new SQLException("Connection is closed");
+                        }
+                        return "prepareStatement".equals(method.getName()) && args != null && args.length == 1
+                                ? prepareStatement((String)args[0])
+                                : invokeTracked(connection, method, args);
+                    });
+        }
+
+        private PreparedStatement prepareStatement(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement != null && !statement.isClosed()) {
+                statementCacheHitsGauge.record(statementCacheHits.incrementAndGet());
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.setFetchSize(0);
+                statement.setMaxRows(0);
+            } else {
+                statementCacheMissesGauge.record(statementCacheMisses.incrementAndGet());
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return cachedStatement(statement);
+        }
+
+        private PreparedStatement cachedStatement(PreparedStatement statement) {
+            InvocationHandler handler = (proxy, method, args) -> "close".equals(method.getName())
+                    ? null
+                    : invokeTracked(statement, method, args);
+            return (PreparedStatement)Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    handler);
+        }
+
+        private Object invokeTracked(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return invoke(target, method, args);
+            } catch (SQLException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        private boolean requiresValidation() {
+            return failed || System.nanoTime() - releasedAtNanos > validationIdleTimeNanos;
+        }
+
+        private boolean isValid() {
+            try {
+                boolean valid = connection.isValid((int)Math.max(1, validationTimeout.getSeconds()));
+                failed = !valid;
+                return valid;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private boolean reset() {
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                releasedAtNanos = System.nanoTime();
+                return !connection.isClosed();
+            } catch (SQLException e) {
+                log.debug("Could not reset pooled connection", e);
+                return false;
+            }
+        }
+
+        private void closePhysical() {
+            statements.values().forEach(JdbcConnectionPool::closeQuietly);
+            statements.clear();
+            closeQuietly(connection);
+            openConnectionsGauge.record(openConnections.decrementAndGet());
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Could not close {}", closeable, e);
+        }
+    }
+}
@@ -6,7 +6,10 @@ import io.reactivex.Observable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 public class JdbcHelper {
@@ -24,12 +27,21 @@ public class JdbcHelper {
         }
     }
 
-    private static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
+    public static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
         for (int i = 0; i < params.length; ++i) {
             preparedStatement.setObject(i + 1, params[i]);
         }
     }
 
+    public static Map<String, Object> readRow(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); ++i) {
+            row.put(metaData.getColumnName(i), resultSet.getObject(i));
+        }
+        return row;
+    }
+
     public static Observable<ResultSet> toObservable(ResultSet resultSet) {
         return Observable.<ResultSet>generate(emitter -> {
             if (resultSet.next()) {
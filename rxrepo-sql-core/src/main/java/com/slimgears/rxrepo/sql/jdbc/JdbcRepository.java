@@ -1,21 +1,47 @@
 package com.slimgears.rxrepo.sql.jdbc;
 
+import com.google.common.collect.ImmutableSet;
+import com.slimgears.nanometer.MetricCollector;
 import com.slimgears.rxrepo.query.RepositoryConfig;
 import com.slimgears.rxrepo.query.decorator.BatchUpdateQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.EntityCacheQueryProviderDecorator;
 import com.slimgears.rxrepo.query.decorator.ObserveOnSchedulingQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.RetryOnConcurrentConflictQueryProviderDecorator;
 import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.sql.*;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.schedulers.Schedulers;
 
+import javax.annotation.Nullable;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.function.Predicate;
 
 public class JdbcRepository {
     public static class Builder<B extends Builder<B>> extends AbstractSqlRepositoryBuilder<B> {
         private Callable<Connection> connectionSupplier;
         private int batchSize = 0;
+        private int connectionPoolSize = 0;
+        private Duration connectionAcquireTimeout = Duration.ofSeconds(30);
+        private int statementCacheSize = 100;
+        private int statementBatchSize = 1000;
+        private boolean rewriteBatchedInserts = false;
+        private int fetchSize = 0;
+        private MetricCollector metricCollector = MetricCollector.empty();
+        private SqlChangeLog changeLog;
+        private KeyEncoder keyEncoder = DigestKeyEncoder.create();
+        private boolean schemaFingerprints = false;
+        private final Set<MetaClassWithKey<?, ?>> lockingUpdates = new HashSet<>();
+        private final Set<MetaClassWithKey<?, ?>> cachedEntities = new HashSet<>();
+        private long entityCacheSize = 0;
+        private Duration entityCacheExpirationTime;
 
         public B connection(Callable<Connection> connectionSupplier) {
             this.connectionSupplier = connectionSupplier;
@@ -31,30 +57,187 @@ public class JdbcRepository {
             return self();
         }
 
+        public B statementBatchSize(int statementBatchSize) {
+            this.statementBatchSize = statementBatchSize;
+            return self();
+        }
+
+        public B rewriteBatchedInserts(boolean rewriteBatchedInserts) {
+            this.rewriteBatchedInserts = rewriteBatchedInserts;
+            return self();
+        }
+
+        public B enableStreamingQueries(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return self();
+        }
+
+        public B connectionPool(int maxSize) {
+            this.connectionPoolSize = maxSize;
+            return self();
+        }
+
+        public B connectionPool(int maxSize, Duration acquireTimeout) {
+            this.connectionAcquireTimeout = acquireTimeout;
+            return connectionPool(maxSize);
+        }
+
+        public B statementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return self();
+        }
+
+        public B keyEncoder(KeyEncoder keyEncoder) {
+            this.keyEncoder = keyEncoder;
+            return self();
+        }
+
+        public B enableMetrics(MetricCollector metricCollector) {
+            this.metricCollector = metricCollector.name("rxrepo.jdbc");
+            return self();
+        }
+
+        public B enableChangeLog() {
+            return enableChangeLog(Duration.ofMillis(50), Duration.ofSeconds(2));
+        }
+
+        public B enableChangeLog(Duration minPollInterval, Duration maxPollInterval) {
+            this.changeLog = SqlChangeLog.create(minPollInterval, maxPollInterval);
+            return self();
+        }
+
+        // Change log rows are deleted once older than retention time, so every repository sharing the database can read them
+        public B enableChangeLog(Duration minPollInterval, Duration maxPollInterval, Duration retentionTime) {
+            this.changeLog = SqlChangeLog.create(minPollInterval, maxPollInterval, 1000, retentionTime);
+            return self();
+        }
+
+        public B enableSchemaFingerprints() {
+            this.schemaFingerprints = true;
+            return self();
+        }
+
+        // Atomic updates of given entities lock the row (select ... for update) instead of optimistic update with retries
+        public B enableLockingUpdates(MetaClassWithKey<?, ?>... metaClasses) {
+            this.lockingUpdates.addAll(Arrays.asList(metaClasses));
+            return self();
+        }
+
+        public B enableEntityCache(long maxSize, MetaClassWithKey<?, ?>... metaClasses) {
+            return enableEntityCache(maxSize, null, metaClasses);
+        }
+
+        // Entities of given types are cached by key, and invalidated by live queries (see EntityCacheQueryProviderDecorator),
+        // so live queries have to be enabled as well (e.g. enableChangeLog())
+        public B enableEntityCache(long maxSize, @Nullable Duration expirationTime, MetaClassWithKey<?, ?>... metaClasses) {
+            this.entityCacheSize = maxSize;
+            this.entityCacheExpirationTime = expirationTime;
+            this.cachedEntities.addAll(Arrays.asList(metaClasses));
+            return self();
+        }
+
+        // Opens physical connections, bypassing connection pool (for long-lived connections, such as listeners)
+        protected Callable<Connection> connectionFactory() {
+            return Objects.requireNonNull(connectionSupplier);
+        }
+
+        // Whether the repository notifies about changes made by other repositories sharing the database
+        protected boolean supportsLiveQueries() {
+            return changeLog != null;
+        }
+
+        protected Predicate<MetaClassWithKey<?, ?>> lockingUpdates() {
+            return ImmutableSet.copyOf(lockingUpdates)::contains;
+        }
+
         @Override
         protected SqlServiceFactory.Builder<?> serviceFactoryBuilder(RepositoryConfig config) {
             Objects.requireNonNull(connectionSupplier);
-            return serviceFactoryBuilder(config, connectionSupplier);
+            if (!cachedEntities.isEmpty() && !supportsLiveQueries()) {
+                throw new IllegalStateException("Entity cache requires live queries, which are not enabled (see enableChangeLog())");
+            }
+            if (connectionPoolSize <= 0) {
+                return serviceFactoryBuilder(config, connectionSupplier);
+            }
+            JdbcConnectionPool connectionPool = JdbcConnectionPool.builder()
+                    .connectionFactory(connectionSupplier)
+                    .maxSize(connectionPoolSize)
+                    .acquireTimeout(connectionAcquireTimeout)
+                    .maxStatementsPerConnection(statementCacheSize)
+                    .metricCollector(metricCollector)
+                    .build();
+            return serviceFactoryBuilder(config, connectionPool)
+                    .onClose(connectionPool::close);
         }
 
         protected SqlServiceFactory.Builder<?> serviceFactoryBuilder(RepositoryConfig config, Callable<Connection> connectionSupplier) {
-            return DefaultSqlServiceFactory.builder()
-                    .keyEncoder(DigestKeyEncoder::create)
+            SqlServiceFactory.Builder<?> builder = DefaultSqlServiceFactory.builder()
+                    .metricCollector(metricCollector)
+                    .keyEncoder(() -> keyEncoder)
                     .expressionGenerator(DefaultSqlExpressionGenerator::new)
                     .dbNameProvider(() -> "repository")
                     .typeMapper(() -> SqlTypes.instance)
-                    .schemaProvider(sf -> new JdbcSchemaGenerator(sf.statementExecutor(), sf.statementProvider()))
+                    .schemaProvider(this::createSchemaGenerator)
                     .referenceResolver(sf -> new DefaultSqlReferenceResolver(sf.keyEncoder(), sf.expressionGenerator()))
                     .statementProvider(sf -> new DefaultSqlStatementProvider(sf.expressionGenerator(), sf.typeMapper(), sf.dbNameProvider()))
-                    .statementExecutor(sf -> new JdbcSqlStatementExecutor(connectionSupplier, sf.typeMapper()))
+                    .statementExecutor(sf -> createStatementExecutor(connectionSupplier, sf.typeMapper(), statementBatchSize, rewriteBatchedInserts, fetchSize))
                     .decorateExecutor(sf -> JdbcSqlStatementExecutorDecorator.create(sf.typeMapper(), sf.keyEncoder()))
+                    .queryProviderGenerator(sf -> DefaultSqlQueryProvider.create(sf, lockingUpdates()))
                     .decorate(
 //                            LockQueryProviderDecorator.create(SemaphoreLockProvider.create()),
 //                            LiveQueryProviderDecorator.create(Duration.ofMillis(config.aggregationDebounceTimeMillis())),
                             ObserveOnSchedulingQueryProviderDecorator.create(Schedulers.io()),
                             BatchUpdateQueryProviderDecorator.create(batchSize),
+                            RetryOnConcurrentConflictQueryProviderDecorator.create(Duration.ofMillis(config.retryInitialDurationMillis()), config.retryCount()),
                             UpdateReferencesFirstQueryProviderDecorator.create()
                     );
+            if (changeLog != null) {
+                builder.decorateQueryProvider(sf -> ChangeLogQueryProviderDecorator.create(
+                        sf.statementExecutor(),
+                        defaultStatementProvider(sf, "Change log"),
+                        sf.schemaProvider(),
+                        changeLog));
+            }
+            // Entities are cached once live query of their type has been established by the executor
+            return !cachedEntities.isEmpty()
+                    ? builder.decorateQueryProvider(sf -> EntityCacheQueryProviderDecorator.create(
+                            ImmutableSet.copyOf(cachedEntities)::contains,
+                            entityCacheSize,
+                            entityCacheExpirationTime,
+                            metricCollector.name("entityCache"),
+                            metaClass -> sf.statementExecutor().liveQueryReady(liveQueryStatement(sf, metaClass))))
+                    : builder;
+        }
+
+        private <K, S> SqlStatement liveQueryStatement(SqlServiceFactory serviceFactory, MetaClassWithKey<K, S> metaClass) {
+            return serviceFactory.statementProvider().forQuery(QueryInfo.<K, S, S>builder().metaClass(metaClass).build());
+        }
+
+        private SqlSchemaGenerator createSchemaGenerator(SqlServiceFactory serviceFactory) {
+            JdbcSchemaFingerprints fingerprints = schemaFingerprints
+                    ? JdbcSchemaFingerprints.create(serviceFactory.statementExecutor(), defaultStatementProvider(serviceFactory, "Schema fingerprints"))
+                    : null;
+            return changeLog != null
+                    ? new JdbcChangeLogSchemaGenerator(serviceFactory.statementExecutor(), defaultStatementProvider(serviceFactory, "Change log"), fingerprints, changeLog)
+                    : new JdbcSchemaGenerator(serviceFactory.statementExecutor(), serviceFactory.statementProvider(), fingerprints);
+        }
+
+        private static DefaultSqlStatementProvider defaultStatementProvider(SqlServiceFactory serviceFactory, String feature) {
+            SqlStatementProvider statementProvider = serviceFactory.statementProvider();
+            if (!(statementProvider instanceof DefaultSqlStatementProvider)) {
+                throw new IllegalStateException(feature + " is not supported by " + statementProvider.getClass().getSimpleName());
+            }
+            return (DefaultSqlStatementProvider)statementProvider;
+        }
+
+        protected SqlStatementExecutor createStatementExecutor(Callable<Connection> connectionSupplier,
+                                                               SqlTypeMapper typeMapper,
+                                                               int statementBatchSize,
+                                                               boolean rewriteBatchedInserts,
+                                                               int fetchSize) {
+            return changeLog != null
+                    ? new JdbcChangeLogSqlStatementExecutor(connectionSupplier, typeMapper, statementBatchSize, rewriteBatchedInserts, fetchSize, changeLog)
+                    : new JdbcSqlStatementExecutor(connectionSupplier, typeMapper, statementBatchSize, rewriteBatchedInserts, fetchSize);
         }
     }
 
@@ -1,59 +1,88 @@
 package com.slimgears.rxrepo.sql.jdbc;
 
-import com.google.common.collect.ImmutableMap;
-import com.google.common.reflect.TypeToken;
-import com.slimgears.rxrepo.sql.FlattenedPropertyResolver;
 import com.slimgears.rxrepo.sql.SqlTypeMapper;
 import com.slimgears.rxrepo.util.PropertyResolver;
-import com.slimgears.util.stream.Lazy;
-import com.slimgears.util.stream.Safe;
+import io.reactivex.functions.Function;
 
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.IntStream;
 
-@SuppressWarnings("UnstableApiUsage")
+/**
+ * Property resolver over current row of result set. Column values are read and converted only when requested,
+ * through {@link JdbcRowLayout} shared by all rows of the query (see {@link #rowMapper}).
+ */
 public class JdbcResultSetPropertyResolver implements PropertyResolver {
-    private final ResultSet resultSet;
-    private final SqlTypeMapper typeMapper;
-    private final Lazy<Map<String, Integer>> columnNames;
+    private final ColumnReader columnReader;
+    private final JdbcRowLayout layout;
+
+    interface ColumnReader {
+        Object read(int index) throws SQLException;
+    }
+
+    private JdbcResultSetPropertyResolver(ColumnReader columnReader, JdbcRowLayout layout) {
+        this.columnReader = columnReader;
+        this.layout = layout;
+    }
 
     public static PropertyResolver create(ResultSet resultSet, SqlTypeMapper typeMapper) {
-        return FlattenedPropertyResolver.of(new JdbcResultSetPropertyResolver(resultSet, typeMapper));
+        try {
+            return new JdbcResultSetPropertyResolver(resultSet::getObject, JdbcRowLayout.of(resultSet.getMetaData(), typeMapper));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
     }
 
-    private JdbcResultSetPropertyResolver(ResultSet resultSet, SqlTypeMapper typeMapper) {
-        this.resultSet = resultSet;
-        this.typeMapper = typeMapper;
-        this.columnNames = Lazy.fromCallable(this::getColumns);
+    // Resolvers stay valid only until result set is advanced
+    public static Function<ResultSet, PropertyResolver> rowMapper(SqlTypeMapper typeMapper) {
+        return rowMapper(typeMapper, false);
+    }
+
+    // Column values are copied, so resolvers stay valid after result set is advanced or closed
+    public static Function<ResultSet, PropertyResolver> detachedRowMapper(SqlTypeMapper typeMapper) {
+        return rowMapper(typeMapper, true);
+    }
+
+    private static Function<ResultSet, PropertyResolver> rowMapper(SqlTypeMapper typeMapper, boolean detached) {
+        return new Function<ResultSet, PropertyResolver>() {
+            private JdbcRowLayout layout;
+
+            @Override
+            public PropertyResolver apply(ResultSet resultSet) throws SQLException {
+                if (layout == null) {
+                    layout = JdbcRowLayout.of(resultSet.getMetaData(), typeMapper);
+                }
+                return new JdbcResultSetPropertyResolver(detached ? readColumns(resultSet, layout) : resultSet::getObject, layout);
+            }
+        };
     }
 
-    private Map<String, Integer> getColumns() throws SQLException {
-        ResultSetMetaData metaData = resultSet.getMetaData();
-        return IntStream.range(0, metaData.getColumnCount())
-                .boxed()
-                .collect(ImmutableMap.toImmutableMap(i -> {
-                    try {
-                        return metaData.getColumnName(i + 1);
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e);
-                    }
-                }, i -> i));
+    private static ColumnReader readColumns(ResultSet resultSet, JdbcRowLayout layout) throws SQLException {
+        Object[] values = new Object[layout.columnCount()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = resultSet.getObject(i + 1);
+        }
+        return index -> values[index - 1];
     }
 
     @Override
     public Iterable<String> propertyNames() {
-        return columnNames.get().keySet();
+        return layout.propertyNames();
     }
 
     @Override
     public Object getProperty(String name, Class<?> type) {
-        return Optional.ofNullable(columnNames.get().get(name))
-                .map(Safe.ofFunction(index -> resultSet.getObject(index + 1)))
-                .map(val -> typeMapper.fromSqlValue(TypeToken.of(type), val))
-                .orElse(null);
+        JdbcRowLayout nestedLayout = layout.nestedLayout(name);
+        if (nestedLayout != null) {
+            return new JdbcResultSetPropertyResolver(columnReader, nestedLayout);
+        }
+        Integer index = layout.columnIndex(name);
+        if (index == null) {
+            return null;
+        }
+        try {
+            return layout.fromSqlValue(columnReader.read(index), type);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
     }
 }
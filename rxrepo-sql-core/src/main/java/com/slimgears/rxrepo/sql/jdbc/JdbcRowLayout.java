@@ -0,0 +1,106 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.sql.FlattenedPropertyResolver;
+import com.slimgears.rxrepo.sql.SqlTypeMapper;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Column layout of query result, read once from {@link ResultSetMetaData} and shared by all its rows.
+ * Flattened column names (e.g. {@code "ref.name"}) are grouped into nested layouts the same way
+ * {@link FlattenedPropertyResolver} does, and value converters are resolved once per requested type.
+ */
+@SuppressWarnings("UnstableApiUsage")
+class JdbcRowLayout {
+    private final SqlTypeMapper typeMapper;
+    private final Map<Class<?>, Function<Object, ?>> converters;
+    private final int columnCount;
+    private final Map<String, Integer> columns;
+    private final Map<String, JdbcRowLayout> nestedLayouts;
+    private final Set<String> propertyNames;
+
+    static JdbcRowLayout of(ResultSetMetaData metaData, SqlTypeMapper typeMapper) throws SQLException {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); ++i) {
+            columns.putIfAbsent(metaData.getColumnName(i), i);
+        }
+        return new JdbcRowLayout(typeMapper, new ConcurrentHashMap<>(), metaData.getColumnCount(), columns);
+    }
+
+    private JdbcRowLayout(SqlTypeMapper typeMapper,
+                          Map<Class<?>, Function<Object, ?>> converters,
+                          int columnCount,
+                          Map<String, Integer> columns) {
+        this.typeMapper = typeMapper;
+        this.converters = converters;
+        this.columnCount = columnCount;
+
+        Map<String, Map<String, Integer>> groups = new LinkedHashMap<>();
+        columns.forEach((name, index) -> groups
+                .computeIfAbsent(firstSegment(name), key -> new LinkedHashMap<>())
+                .put(name, index));
+
+        Map<String, Integer> leafColumns = new LinkedHashMap<>();
+        Map<String, JdbcRowLayout> nestedLayouts = new LinkedHashMap<>();
+        groups.forEach((key, group) -> {
+            String firstName = group.keySet().iterator().next();
+            String canonicKey = key.replace("`", "");
+            if (firstName.length() > key.length()) {
+                String prefix = key + ".";
+                Map<String, Integer> nestedColumns = new LinkedHashMap<>();
+                group.forEach((name, index) -> {
+                    if (name.startsWith(prefix)) {
+                        nestedColumns.put(name.substring(prefix.length()), index);
+                    }
+                });
+                nestedLayouts.putIfAbsent(canonicKey, new JdbcRowLayout(typeMapper, converters, columnCount, nestedColumns));
+            } else {
+                leafColumns.putIfAbsent(canonicKey, group.get(firstName));
+            }
+        });
+
+        this.columns = ImmutableMap.copyOf(leafColumns);
+        this.nestedLayouts = ImmutableMap.copyOf(nestedLayouts);
+        this.propertyNames = ImmutableSet.<String>builder()
+                .addAll(leafColumns.keySet())
+                .addAll(nestedLayouts.keySet())
+                .build();
+    }
+
+    private static String firstSegment(String name) {
+        int delimiterPos = name.indexOf('.');
+        return delimiterPos >= 0 ? name.substring(0, delimiterPos) : name;
+    }
+
+    int columnCount() {
+        return columnCount;
+    }
+
+    Set<String> propertyNames() {
+        return propertyNames;
+    }
+
+    // 1-based column index, or null if there is no such column
+    Integer columnIndex(String name) {
+        return columns.get(name);
+    }
+
+    JdbcRowLayout nestedLayout(String name) {
+        return nestedLayouts.get(name);
+    }
+
+    Object fromSqlValue(Object sqlValue, Class<?> type) {
+        return sqlValue != null
+                ? converters.computeIfAbsent(type, cls -> typeMapper.fromSqlValueConverter(TypeToken.of(cls))).apply(sqlValue)
+                : null;
+    }
+}
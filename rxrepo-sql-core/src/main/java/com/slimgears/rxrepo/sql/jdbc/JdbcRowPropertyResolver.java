@@ -0,0 +1,40 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.sql.FlattenedPropertyResolver;
+import com.slimgears.rxrepo.sql.SqlTypeMapper;
+import com.slimgears.rxrepo.util.PropertyResolver;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Property resolver over a row already read from result set (see {@link JdbcHelper#readRow}), so unlike
+ * {@link JdbcResultSetPropertyResolver} it stays valid after the result set is advanced or closed.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class JdbcRowPropertyResolver implements PropertyResolver {
+    private final Map<String, Object> row;
+    private final SqlTypeMapper typeMapper;
+
+    private JdbcRowPropertyResolver(Map<String, Object> row, SqlTypeMapper typeMapper) {
+        this.row = row;
+        this.typeMapper = typeMapper;
+    }
+
+    public static PropertyResolver create(Map<String, Object> row, SqlTypeMapper typeMapper) {
+        return FlattenedPropertyResolver.of(new JdbcRowPropertyResolver(row, typeMapper));
+    }
+
+    @Override
+    public Iterable<String> propertyNames() {
+        return row.keySet();
+    }
+
+    @Override
+    public Object getProperty(String name, Class<?> type) {
+        return Optional.ofNullable(row.get(name))
+                .map(val -> typeMapper.fromSqlValue(TypeToken.of(type), val))
+                .orElse(null);
+    }
+}
@@ -0,0 +1,76 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.slimgears.rxrepo.sql.DefaultSqlStatementProvider;
+import com.slimgears.rxrepo.sql.SqlFields;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlStatementExecutor;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fingerprints (hash of DDL statements) of the tables created by {@link JdbcSchemaGenerator}, stored in
+ * '&lt;schema&gt;.__schema' table. All fingerprints are read with single query, so on start DDL is only issued
+ * for the tables which are new or whose definition has changed.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class JdbcSchemaFingerprints {
+    private final static Logger log = LoggerFactory.getLogger(JdbcSchemaFingerprints.class);
+    private final SqlStatementExecutor statementExecutor;
+    private final DefaultSqlStatementProvider statementProvider;
+    private final AtomicReference<Single<Map<String, String>>> fingerprints = new AtomicReference<>();
+
+    private JdbcSchemaFingerprints(SqlStatementExecutor statementExecutor, DefaultSqlStatementProvider statementProvider) {
+        this.statementExecutor = statementExecutor;
+        this.statementProvider = statementProvider;
+        this.clear();
+    }
+
+    public static JdbcSchemaFingerprints create(SqlStatementExecutor statementExecutor, DefaultSqlStatementProvider statementProvider) {
+        return new JdbcSchemaFingerprints(statementExecutor, statementProvider);
+    }
+
+    public Completable createTable() {
+        return statementExecutor.executeCommand(statementProvider.forCreateSchemaFingerprints());
+    }
+
+    public Single<Boolean> matches(String tableName, String fingerprint) {
+        return fingerprints.get().map(map -> Objects.equals(map.get(tableName), fingerprint));
+    }
+
+    // Failing to save fingerprint (e.g. on concurrent start) only makes the next start to repeat the DDL
+    public Completable save(String tableName, String fingerprint) {
+        return statementExecutor
+                .executeCommands(Arrays.asList(
+                        statementProvider.forDeleteSchemaFingerprint(tableName),
+                        statementProvider.forInsertSchemaFingerprint(tableName, fingerprint)))
+                .doOnError(e -> log.debug("Could not save schema fingerprint of {}", tableName, e))
+                .onErrorComplete();
+    }
+
+    public void clear() {
+        fingerprints.set(Single.defer(() -> statementExecutor
+                .executeQuery(statementProvider.forReadSchemaFingerprints())
+                .toMap(pr -> (String)pr.getProperty(SqlFields.schemaTableField, String.class),
+                        pr -> (String)pr.getProperty(SqlFields.schemaFingerprintField, String.class)))
+                .cache());
+    }
+
+    public static String fingerprintOf(List<SqlStatement> statements) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        statements.forEach(statement -> hasher
+                .putString(statement.statement(), StandardCharsets.UTF_8)
+                .putString(Arrays.deepToString(statement.args()), StandardCharsets.UTF_8));
+        return hasher.hash().toString();
+    }
+}
@@ -7,29 +7,63 @@ import com.slimgears.rxrepo.sql.SqlStatementProvider;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
 
+import java.util.Collections;
+import java.util.List;
+
 public class JdbcSchemaGenerator implements SqlSchemaGenerator {
     protected final SqlStatementExecutor statementExecutor;
     protected final SqlStatementProvider statementProvider;
+    private final JdbcSchemaFingerprints fingerprints;
 
     public JdbcSchemaGenerator(SqlStatementExecutor statementExecutor, SqlStatementProvider statementProvider) {
+        this(statementExecutor, statementProvider, null);
+    }
+
+    public JdbcSchemaGenerator(SqlStatementExecutor statementExecutor,
+                               SqlStatementProvider statementProvider,
+                               JdbcSchemaFingerprints fingerprints) {
         this.statementExecutor = statementExecutor;
         this.statementProvider = statementProvider;
+        this.fingerprints = fingerprints;
     }
 
     public Completable createDatabase() {
         SqlStatement statement = statementProvider.forCreateSchema();
-        return statementExecutor.executeCommand(statement);
+        return fingerprints != null
+                ? statementExecutor.executeCommand(statement).andThen(fingerprints.createTable())
+                : statementExecutor.executeCommand(statement);
     }
 
     @Override
     public <K, T> Completable createOrUpdate(MetaClassWithKey<K, T> metaClass) {
-        SqlStatement statement = statementProvider.forCreateTable(metaClass);
-        return statementExecutor.executeCommand(statement);
+        List<SqlStatement> statements = tableStatements(metaClass);
+        if (fingerprints == null) {
+            return statementExecutor.executeCommands(statements);
+        }
+        String tableName = statementProvider.tableName(metaClass);
+        String fingerprint = JdbcSchemaFingerprints.fingerprintOf(statements);
+        return fingerprints.matches(tableName, fingerprint)
+                .flatMapCompletable(matches -> matches
+                        ? Completable.complete()
+                        : statementExecutor.executeCommands(statements).andThen(fingerprints.save(tableName, fingerprint)));
+    }
+
+    @Override
+    public boolean supportsParallelCreation() {
+        return true;
     }
 
     @Override
     public void clear() {
         SqlStatement statement = statementProvider.forDropSchema();
         statementExecutor.executeCommand(statement).blockingAwait();
+        if (fingerprints != null) {
+            fingerprints.clear();
+        }
+    }
+
+    // All statements are part of table fingerprint, so they are skipped together when table is up to date
+    protected <K, T> List<SqlStatement> tableStatements(MetaClassWithKey<K, T> metaClass) {
+        return Collections.singletonList(statementProvider.forCreateTable(metaClass));
     }
 }
@@ -1,50 +1,127 @@
 package com.slimgears.rxrepo.sql.jdbc;
 
+import com.google.common.collect.ImmutableSet;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.sql.AbstractSqlStatementExecutor;
+import com.slimgears.rxrepo.sql.SqlFields;
 import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlStatementExecutor;
 import com.slimgears.rxrepo.sql.SqlTypeMapper;
 import com.slimgears.rxrepo.util.PropertyResolver;
-import com.slimgears.util.stream.Safe;
-import com.slimgears.util.stream.Streams;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collection;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Callable;
-import java.util.stream.Collectors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class JdbcSqlStatementExecutor extends AbstractSqlStatementExecutor {
-    private final Callable<Connection> connectionSupplier;
-    private final SqlTypeMapper typeMapper;
+    private final static Pattern insertValuesPattern = Pattern.compile("(?is)\\s*insert\\s+into\\s+.+?\\s+values\\s*\\(");
+    private final static int maxParamsPerStatement = Short.MAX_VALUE;
+    protected final Callable<Connection> connectionSupplier;
+    protected final SqlTypeMapper typeMapper;
+    private final int maxBatchSize;
+    private final boolean rewriteBatchedInserts;
+    private final int fetchSize;
 
     public JdbcSqlStatementExecutor(Callable<Connection> connectionSupplier,
                                     SqlTypeMapper typeMapper) {
+        this(connectionSupplier, typeMapper, 1000, false);
+    }
+
+    public JdbcSqlStatementExecutor(Callable<Connection> connectionSupplier,
+                                    SqlTypeMapper typeMapper,
+                                    int maxBatchSize,
+                                    boolean rewriteBatchedInserts) {
+        this(connectionSupplier, typeMapper, maxBatchSize, rewriteBatchedInserts, 0);
+    }
+
+    // fetchSize > 0 makes streaming queries read through a cursor (see executeStreamingQuery)
+    public JdbcSqlStatementExecutor(Callable<Connection> connectionSupplier,
+                                    SqlTypeMapper typeMapper,
+                                    int maxBatchSize,
+                                    boolean rewriteBatchedInserts,
+                                    int fetchSize) {
         this.connectionSupplier = connectionSupplier;
         this.typeMapper = typeMapper;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.rewriteBatchedInserts = rewriteBatchedInserts;
+        this.fetchSize = Math.max(0, fetchSize);
     }
 
     @Override
     public Observable<PropertyResolver> executeQuery(SqlStatement statement) {
-        return Observable.defer(() -> {
-            try (Connection connection = connectionSupplier.call()) {
-                PreparedStatement preparedStatement = JdbcHelper.prepareStatement(
-                        connection,
-                        statement);
-                logStatement("Executing query", statement);
-                ResultSet resultSet = preparedStatement.executeQuery();
-                return JdbcHelper.toObservable(resultSet)
-                        .map(rs -> JdbcResultSetPropertyResolver.create(rs, typeMapper))
-                        .onErrorResumeNext((Throwable e) -> Observable.error(mapException(e)));
-            }
-        });
+        return executeQuery(statement, JdbcResultSetPropertyResolver.rowMapper(typeMapper));
+    }
+
+    /**
+     * Holds connection and cursor for the lifetime of subscription, fetching {@code fetchSize} rows at a time,
+     * and only as many as requested downstream. Rows are detached from result set, so they can be consumed
+     * asynchronously. Without fetch size the query is read as a regular one.
+     */
+    @Override
+    public Flowable<PropertyResolver> executeStreamingQuery(SqlStatement statement) {
+        if (fetchSize == 0) {
+            return executeQuery(statement).toFlowable(BackpressureStrategy.BUFFER);
+        }
+        Function<ResultSet, PropertyResolver> rowMapper = JdbcResultSetPropertyResolver.detachedRowMapper(typeMapper);
+        return Flowable.<PropertyResolver, Cursor>generate(
+                () -> Cursor.open(connectionSupplier, statement, fetchSize),
+                (cursor, emitter) -> {
+                    if (cursor.resultSet.next()) {
+                        emitter.onNext(rowMapper.apply(cursor.resultSet));
+                    } else {
+                        emitter.onComplete();
+                    }
+                },
+                Cursor::close)
+                .doOnSubscribe(s -> logStatement("Executing streaming query", statement))
+                .onErrorResumeNext((Throwable e) -> Flowable.error(mapException(e)));
+    }
+
+    protected <T> Observable<T> executeQuery(SqlStatement statement, Function<ResultSet, T> rowMapper) {
+        return Observable.<T, Connection>using(
+                connectionSupplier,
+                connection -> {
+                    PreparedStatement preparedStatement = JdbcHelper.prepareStatement(
+                            connection,
+                            statement);
+                    logStatement("Executing query", statement);
+                    ResultSet resultSet = preparedStatement.executeQuery();
+                    return JdbcHelper.toObservable(resultSet).map(rowMapper);
+                },
+                Connection::close)
+                .onErrorResumeNext((Throwable e) -> Observable.error(mapException(e)));
+    }
+
+    // Reads detached rows of a live query, mapped by live key (see LiveQueryStatement)
+    protected Single<Map<String, PropertyResolver>> queryByLiveKey(SqlStatement statement) {
+        return executeQuery(statement, rs -> {
+            Map<String, Object> row = JdbcHelper.readRow(rs);
+            String key = String.valueOf(row.remove(SqlFields.liveKeyField));
+            return new AbstractMap.SimpleEntry<>(key, JdbcRowPropertyResolver.create(row, typeMapper));
+        })
+                .toMap(Map.Entry::getKey, Map.Entry::getValue);
     }
 
     @Override
@@ -54,7 +131,7 @@ public class JdbcSqlStatementExecutor extends AbstractSqlStatementExecutor {
                 PreparedStatement ps = JdbcHelper.prepareStatement(connection, statement);
                 try (ResultSet rs = ps.executeQuery()) {
                     Disposable disposable = JdbcHelper.toObservable(rs)
-                            .map(_rs -> JdbcResultSetPropertyResolver.create(_rs, typeMapper))
+                            .map(JdbcResultSetPropertyResolver.rowMapper(typeMapper))
                             .subscribe(emitter::onNext, emitter::onError, emitter::onComplete);
                     emitter.setDisposable(disposable);
                 } catch (SQLException e) {
@@ -82,26 +159,137 @@ public class JdbcSqlStatementExecutor extends AbstractSqlStatementExecutor {
         return Completable.create(emitter -> {
             try (Connection connection = connectionSupplier.call()) {
                 connection.setAutoCommit(false);
-                Collection<PreparedStatement> preparedStatements = Streams.fromIterable(statements)
-                        .peek(s -> logStatement("Executing command", s))
-                        .map(s -> JdbcHelper.prepareStatement(connection, s))
-                        .peek(Safe.ofConsumer(PreparedStatement::execute))
-                        .collect(Collectors.toList());
                 try {
+                    for (List<SqlStatement> batch : toBatches(statements)) {
+                        executeBatch(connection, batch);
+                    }
                     connection.commit();
-                    emitter.onComplete();
-                } finally {
-                    preparedStatements.forEach(Safe.ofConsumer(PreparedStatement::close));
+                } catch (Exception e) {
+                    connection.rollback();
+                    throw e;
                 }
+                emitter.onComplete();
             }
         }).onErrorResumeNext(e -> Completable.error(mapException(e)));
     }
 
+    private void executeBatch(Connection connection, List<SqlStatement> batch) throws SQLException {
+        if (batch.size() == 1) {
+            SqlStatement statement = batch.get(0);
+            logStatement("Executing command", statement);
+            try (PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, statement)) {
+                preparedStatement.execute();
+            }
+            return;
+        }
+
+        if (rewriteBatchedInserts) {
+            Optional<SqlStatement> multiRowInsert = toMultiRowInsert(batch);
+            if (multiRowInsert.isPresent()) {
+                logStatement("Executing multi-row insert", multiRowInsert.get());
+                try (PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, multiRowInsert.get())) {
+                    preparedStatement.execute();
+                }
+                return;
+            }
+        }
+
+        log.trace("Executing batch of {} commands: {}", batch.size(), batch.get(0).statement());
+        try (PreparedStatement preparedStatement = connection.prepareStatement(batch.get(0).statement())) {
+            try {
+                for (SqlStatement statement : batch) {
+                    JdbcHelper.setParams(preparedStatement, statement.args());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            } finally {
+                // Pooled statements are reused, batch should not outlive current execution
+                preparedStatement.clearBatch();
+            }
+        }
+    }
+
+    // Consecutive statements sharing the same SQL text are grouped, so the original order of execution is kept
+    private List<List<SqlStatement>> toBatches(Iterable<SqlStatement> statements) {
+        List<List<SqlStatement>> batches = new ArrayList<>();
+        List<SqlStatement> current = new ArrayList<>();
+        for (SqlStatement statement : statements) {
+            if (!current.isEmpty() && (current.size() >= maxBatchSize || !current.get(0).statement().equals(statement.statement()))) {
+                batches.add(current);
+                current = new ArrayList<>();
+            }
+            current.add(statement);
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    static Optional<SqlStatement> toMultiRowInsert(List<SqlStatement> batch) {
+        SqlStatement first = batch.get(0);
+        if ((long)first.args().length * batch.size() > maxParamsPerStatement) {
+            return Optional.empty();
+        }
+        Matcher matcher = insertValuesPattern.matcher(first.statement());
+        if (!matcher.lookingAt()) {
+            return Optional.empty();
+        }
+        int valuesStart = matcher.end() - 1;
+        int valuesEnd = endOfParentheses(first.statement(), valuesStart);
+        if (valuesEnd < 0 || !first.statement().substring(valuesEnd).trim().isEmpty()) {
+            return Optional.empty();
+        }
+        String values = first.statement().substring(valuesStart, valuesEnd);
+        Object[] args = batch.stream()
+                .flatMap(statement -> Arrays.stream(statement.args()))
+                .toArray();
+        return Optional.of(SqlStatement.create(
+                first.statement().substring(0, valuesStart) + String.join(", ", Collections.nCopies(batch.size(), values)),
+                args));
+    }
+
+    // Returns position right after parenthesis, matching the one at 'start' (or -1 if there is none).
+    // Nested parentheses, quoted literals and identifiers (e.g. nextval('db.generation')) are skipped
+    private static int endOfParentheses(String sql, int start) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = start; i < sql.length(); ++i) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                ++depth;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
         return notImplemented();
     }
 
+    @Override
+    public <T> Maybe<T> executeInTransaction(Function<SqlStatementExecutor, Maybe<T>> work) {
+        return Maybe.using(
+                () -> Transaction.begin(connectionSupplier),
+                transaction -> work
+                        .apply(new JdbcSqlStatementExecutor(transaction::connection, typeMapper, maxBatchSize, rewriteBatchedInserts, fetchSize))
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .doOnSuccess(result -> transaction.commit())
+                        .flatMap(result -> result.map(Maybe::just).orElseGet(Maybe::empty)),
+                Transaction::close)
+                .onErrorResumeNext((Throwable e) -> Maybe.error(mapException(e)));
+    }
+
     private Throwable mapException(Throwable e) {
         if (e.getMessage().contains("duplicate")) {
             return new ConcurrentModificationException(e);
@@ -112,4 +300,106 @@ public class JdbcSqlStatementExecutor extends AbstractSqlStatementExecutor {
     private static <T> T notImplemented() {
         throw new UnsupportedOperationException("Not implemented yet");
     }
+
+    // Statements of transaction get connection which ignores close() and transaction control calls,
+    // so that connection is released and transaction is ended only by the transaction itself
+    private static class Transaction {
+        private final static ImmutableSet<String> transactionMethods = ImmutableSet.of("close", "commit", "rollback", "setAutoCommit");
+        private final Connection connection;
+        private final Connection sharedConnection;
+        private final boolean autoCommit;
+        private boolean committed;
+
+        private Transaction(Connection connection, boolean autoCommit) {
+            this.connection = connection;
+            this.sharedConnection = (Connection)Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class},
+                    (proxy, method, args) -> {
+                        if (transactionMethods.contains(method.getName())) {
+                            return null;
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+            this.autoCommit = autoCommit;
+        }
+
+        private static Transaction begin(Callable<Connection> connectionSupplier) throws Exception {
+            Connection connection = connectionSupplier.call();
+            try {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                return new Transaction(connection, autoCommit);
+            } catch (Exception e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        private Connection connection() {
+            return sharedConnection;
+        }
+
+        private void commit() throws SQLException {
+            connection.commit();
+            committed = true;
+        }
+
+        private void close() throws SQLException {
+            try (Connection ignored = connection) {
+                try {
+                    if (!committed) {
+                        connection.rollback();
+                    }
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+        }
+    }
+
+    // Drivers (e.g. postgres) only honor fetch size outside of auto-commit mode, otherwise the whole result is read at once
+    private static class Cursor {
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private final boolean autoCommit;
+
+        private Cursor(Connection connection, PreparedStatement statement, ResultSet resultSet, boolean autoCommit) {
+            this.connection = connection;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.autoCommit = autoCommit;
+        }
+
+        private static Cursor open(Callable<Connection> connectionSupplier, SqlStatement statement, int fetchSize) throws Exception {
+            Connection connection = connectionSupplier.call();
+            try {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, statement);
+                preparedStatement.setFetchSize(fetchSize);
+                return new Cursor(connection, preparedStatement, preparedStatement.executeQuery(), autoCommit);
+            } catch (Exception e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        private void close() throws SQLException {
+            try (Connection ignored = connection) {
+                try {
+                    resultSet.close();
+                    statement.close();
+                } finally {
+                    connection.rollback();
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+        }
+    }
 }
@@ -21,9 +21,13 @@ public class JdbcSqlStatementExecutorDecorator extends AbstractSqlStatementExecu
         return src -> new JdbcSqlStatementExecutorDecorator(src, typeMapper, keyEncoder);
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     protected Object mapArgument(Object arg) {
+        return toSqlArgument(arg, typeMapper, keyEncoder);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Object toSqlArgument(Object arg, SqlTypeMapper typeMapper, KeyEncoder keyEncoder) {
         if (arg instanceof HasMetaClassWithKey) {
             arg = ((HasMetaClassWithKey)arg).metaClass().keyOf(arg);
         }
@@ -0,0 +1,101 @@
+package com.slimgears.rxrepo.sql;
+
+import com.slimgears.rxrepo.sql.jdbc.JdbcConnectionPool;
+import com.slimgears.rxrepo.sql.jdbc.JdbcSchemaGenerator;
+import com.slimgears.rxrepo.sql.jdbc.JdbcSqlStatementExecutor;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class DefaultSqlQueryProviderTransactionTest {
+    private static final String connectionUrl = "jdbc:h2:mem:transactions;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    private JdbcConnectionPool connectionPool;
+    private SqlStatementExecutor statementExecutor;
+
+    @After
+    public void tearDown() {
+        statementExecutor.executeCommand(SqlStatement.of("drop schema repository cascade")).blockingAwait();
+        connectionPool.close();
+    }
+
+    @Test
+    public void testAtomicInsertWithSingleConnection() {
+        DefaultSqlQueryProvider queryProvider = createQueryProvider(1);
+
+        queryProvider.insertOrUpdate(Inventory.metaClass, 1, false, inventory -> inventory
+                .map(i -> i.toBuilder().name(i.name() + "a").build())
+                .switchIfEmpty(Maybe.just(Inventory.builder().id(1).name("a").build())))
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertNoErrors();
+
+        Assert.assertEquals("a", nameOf(1));
+    }
+
+    @Test
+    public void testConcurrentAtomicUpdates() {
+        DefaultSqlQueryProvider queryProvider = createQueryProvider(2);
+        queryProvider.insert(Inventory.metaClass, Collections.singleton(Inventory.builder().id(1).name("").build()), false)
+                .blockingAwait();
+
+        // Both writers read and update the same row, each update has to see the previous one
+        Observable.range(0, 20)
+                .flatMapCompletable(i -> Completable
+                        .defer(() -> queryProvider.insertOrUpdate(Inventory.metaClass, 1, false, inventory -> inventory
+                                .map(inv -> inv.toBuilder().name(inv.name() + "a").build()))
+                                .ignoreElement())
+                        .subscribeOn(Schedulers.io()), false, 2)
+                .blockingAwait();
+
+        Assert.assertEquals(20, nameOf(1).length());
+    }
+
+    private DefaultSqlQueryProvider createQueryProvider(int maxConnections) {
+        connectionPool = JdbcConnectionPool.builder()
+                .connectionFactory(() -> DriverManager.getConnection(connectionUrl))
+                .maxSize(maxConnections)
+                .acquireTimeout(Duration.ofSeconds(2))
+                .build();
+        statementExecutor = new JdbcSqlStatementExecutor(connectionPool, SqlTypes.instance);
+        SqlExpressionGenerator expressionGenerator = new DefaultSqlExpressionGenerator();
+        SqlStatementProvider statementProvider = new H2SqlStatementProvider(expressionGenerator);
+        return new DefaultSqlQueryProvider(
+                statementProvider,
+                statementExecutor,
+                new JdbcSchemaGenerator(statementExecutor, statementProvider, null),
+                new DefaultSqlReferenceResolver(DigestKeyEncoder.create(), expressionGenerator),
+                metaClass -> true);
+    }
+
+    private String nameOf(int id) {
+        return statementExecutor
+                .executeQuery(SqlStatement.create("select \"name\" from repository.Inventory where \"id\" = ?", id))
+                .map(pr -> (String)pr.getProperty("name", String.class))
+                .blockingFirst();
+    }
+
+    // H2 has no 'on conflict' clause, so updates are issued as 'merge', returning the merged row
+    private static class H2SqlStatementProvider extends DefaultSqlStatementProvider {
+        private H2SqlStatementProvider(SqlExpressionGenerator expressionGenerator) {
+            super(expressionGenerator, SqlTypes.instance, () -> "repository");
+        }
+
+        @Override
+        public <K, S> SqlStatement forUpdate(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, SqlReferenceResolver resolver) {
+            SqlStatement insert = forInsert(metaClass, propertyResolver, resolver);
+            String merge = insert.statement().replaceFirst("^insert into (\\S+) (\\(.*?\\)) values", "merge into $1 $2 key(\"id\") values");
+            return SqlStatement.create("select * from final table (" + merge + ")", insert.args());
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package com.slimgears.rxrepo.sql;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.PropertyUpdateInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.sql.jdbc.JdbcResultSetPropertyResolver;
+import com.slimgears.rxrepo.sql.jdbc.JdbcRowPropertyResolver;
+import com.slimgears.rxrepo.sql.jdbc.JdbcSchemaFingerprints;
+import com.slimgears.rxrepo.sql.jdbc.JdbcSchemaGenerator;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.functions.Function;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.util.Arrays;
+import java.util.Collections;
 
 public class SqlStatementProviderTest {
     private SqlStatementProvider statementProvider;
@@ -48,6 +60,24 @@ public class SqlStatementProviderTest {
                 new Object[]{"substr", 100, Arrays.asList(ProductPrototype.Type.ComputeHardware, ProductPrototype.Type.ComputerSoftware)});
     }
 
+    @Test
+    public void testLockingQueryStatementGeneration() {
+        SqlStatement statement = statementProvider.forLockingQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.id.eq(5))
+                .properties(ImmutableSet.of(Product.$.name, Product.$.id))
+                .limit(1L)
+                .build());
+
+        Assert.assertEquals(
+                "select \"name\", \"id\" from repository.Product " +
+                        "where (\"id\" = ?) " +
+                        "limit 1 " +
+                        "for update",
+                statement.statement());
+        Assert.assertArrayEquals(new Object[]{5}, statement.args());
+    }
+
     @Test
     public void testQueryWithMappingStatementGeneration() {
         SqlStatement statement = statementProvider.forQuery(QueryInfo.<Integer, Product, Integer>builder()
@@ -118,4 +148,108 @@ public class SqlStatementProviderTest {
                 statement.statement());
         Assert.assertArrayEquals(new Object[]{"aa", "bbb"}, statement.args());
     }
+
+    @Test
+    public void testChangeLogStatementGeneration() {
+        DefaultSqlStatementProvider provider = (DefaultSqlStatementProvider)statementProvider;
+
+        SqlStatement logImages = provider.forLogChangeImages(Product.metaClass, Arrays.asList(1, 2));
+        Assert.assertEquals(
+                "insert into repository.Product__changes " +
+                        "(\"id\", \"name\", \"inventory\", \"type\", \"price\", \"__changeKey\") " +
+                        "select \"id\", \"name\", \"inventory\", \"type\", \"price\", \"id\" " +
+                        "from repository.Product where \"id\" in (?, ?)",
+                logImages.statement());
+        Assert.assertArrayEquals(new Object[]{1, 2}, logImages.args());
+
+        SqlStatement logMarkers = provider.forLogChangeMarkers(Product.metaClass, Arrays.asList(1, 2));
+        Assert.assertEquals("insert into repository.Product__changes (\"__changeKey\") values (?), (?)", logMarkers.statement());
+        Assert.assertArrayEquals(new Object[]{1, 2}, logMarkers.args());
+
+        SqlStatement readLog = provider.forReadChangeLog(Product.metaClass, 10L, Collections.emptyList(), 100);
+        Assert.assertEquals(
+                "select \"__changeId\", \"__changeKey\", \"id\" as \"__changeImage\", \"__changeId\" as \"__changeSeq\" " +
+                        "from repository.Product__changes where \"__changeId\" > ? order by \"__changeId\" limit 100",
+                readLog.statement());
+        Assert.assertArrayEquals(new Object[]{10L}, readLog.args());
+
+        SqlStatement readMissing = provider.forReadChangeLog(Product.metaClass, 10L, Arrays.asList(7L, 9L), 100);
+        Assert.assertEquals(
+                "select \"__changeId\", \"__changeKey\", \"id\" as \"__changeImage\", \"__changeId\" as \"__changeSeq\" " +
+                        "from repository.Product__changes where \"__changeId\" > ? or \"__changeId\" in (?, ?) order by \"__changeId\" limit 100",
+                readMissing.statement());
+        Assert.assertArrayEquals(new Object[]{10L, 7L, 9L}, readMissing.args());
+    }
+
+    @Test
+    public void testLiveQueryStatementWithSource() {
+        SqlStatement statement = SqlStatement.create("select \"name\", \"id\" from repository.Product where (\"price\" < ?)", 100);
+        LiveQueryStatement liveQuery = LiveQueryStatement.of(statement).orElseThrow(AssertionError::new);
+        Assert.assertEquals("repository.Product", liveQuery.fullTableName());
+        Assert.assertEquals("Product", liveQuery.tableName());
+
+        SqlStatement changedRows = liveQuery.withSource("\"id\"", "(select * from repository.Product where \"id\" in (?, ?))", 5, 6);
+        Assert.assertEquals(
+                "select \"name\", \"id\", \"id\" as \"__liveKey\" " +
+                        "from (select * from repository.Product where \"id\" in (?, ?)) as Product " +
+                        "where (\"price\" < ?)",
+                changedRows.statement());
+        Assert.assertArrayEquals(new Object[]{5, 6, 100}, changedRows.args());
+    }
+
+    @Test
+    public void testResultSetPropertyResolverReadsRequestedColumnsOnly() throws Exception {
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(metaData.getColumnCount()).thenReturn(3);
+        Mockito.when(metaData.getColumnName(1)).thenReturn("id");
+        Mockito.when(metaData.getColumnName(2)).thenReturn("inventory.id");
+        Mockito.when(metaData.getColumnName(3)).thenReturn("inventory.name");
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(resultSet.getObject(1)).thenReturn(5);
+        Mockito.when(resultSet.getObject(3)).thenReturn("inventory 1");
+
+        Function<ResultSet, PropertyResolver> rowMapper = JdbcResultSetPropertyResolver.rowMapper(SqlTypes.instance);
+        PropertyResolver first = rowMapper.apply(resultSet);
+        PropertyResolver second = rowMapper.apply(resultSet);
+        Assert.assertEquals(ImmutableSet.of("id", "inventory"), ImmutableSet.copyOf(first.propertyNames()));
+        Assert.assertEquals(5, first.getProperty("id", Integer.class));
+        PropertyResolver inventory = (PropertyResolver)second.getProperty("inventory", Object.class);
+        Assert.assertEquals("inventory 1", inventory.getProperty("name", String.class));
+
+        Mockito.verify(resultSet, Mockito.times(1)).getMetaData();
+        Mockito.verify(resultSet, Mockito.never()).getObject(2);
+    }
+
+    @Test
+    public void testHashKeyEncoder() {
+        KeyEncoder keyEncoder = HashKeyEncoder.create().cached(100);
+        String encodedKey = keyEncoder.encode(inventory(1));
+        Assert.assertEquals(22, encodedKey.length());
+        Assert.assertEquals(encodedKey, HashKeyEncoder.create().encode(inventory(1)));
+        Assert.assertNotEquals(encodedKey, keyEncoder.encode(inventory(2)));
+    }
+
+    @Test
+    public void testSchemaFingerprintSkipsUnchangedTables() {
+        DefaultSqlStatementProvider provider = (DefaultSqlStatementProvider)statementProvider;
+        String productFingerprint = JdbcSchemaFingerprints.fingerprintOf(Collections.singletonList(provider.forCreateTable(Product.metaClass)));
+        SqlStatementExecutor executor = Mockito.mock(SqlStatementExecutor.class);
+        Mockito.when(executor.executeQuery(Mockito.any())).thenReturn(Observable.just(JdbcRowPropertyResolver.create(
+                ImmutableMap.<String, Object>of(SqlFields.schemaTableField, "Product", SqlFields.schemaFingerprintField, productFingerprint),
+                SqlTypes.instance)));
+        Mockito.when(executor.executeCommands(Mockito.any())).thenReturn(Completable.complete());
+
+        SqlSchemaGenerator schemaGenerator = new JdbcSchemaGenerator(executor, provider, JdbcSchemaFingerprints.create(executor, provider));
+        schemaGenerator.createOrUpdate(Product.metaClass).blockingAwait();
+        schemaGenerator.createOrUpdate(Inventory.metaClass).blockingAwait();
+
+        // Fingerprints are read once; Product is skipped, Inventory is created and its fingerprint saved
+        Mockito.verify(executor, Mockito.times(1)).executeQuery(Mockito.any());
+        Mockito.verify(executor, Mockito.times(2)).executeCommands(Mockito.any());
+    }
+
+    private static Inventory inventory(int id) {
+        return Inventory.builder().id(id).name("Inventory " + id).build();
+    }
 }
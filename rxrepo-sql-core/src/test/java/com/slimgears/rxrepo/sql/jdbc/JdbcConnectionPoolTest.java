@@ -0,0 +1,169 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JdbcConnectionPoolTest {
+    private final List<Connection> physicalConnections = new ArrayList<>();
+    private final Map<Connection, Map<String, PreparedStatement>> preparedStatements = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        physicalConnections.clear();
+        preparedStatements.clear();
+    }
+
+    @Test
+    public void testAcquireTimeout() throws SQLException {
+        JdbcConnectionPool pool = createPool(1, 10);
+        Connection connection = pool.getConnection();
+        try {
+            pool.getConnection();
+            Assert.fail("Expected acquire timeout");
+        } catch (SQLTimeoutException ignored) {
+        }
+        connection.close();
+        pool.getConnection().close();
+        Assert.assertEquals(1, physicalConnections.size());
+    }
+
+    @Test
+    public void testMaxSizeBound() throws SQLException {
+        JdbcConnectionPool pool = createPool(2, 10);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        Assert.assertEquals(2, physicalConnections.size());
+
+        first.close();
+        Assert.assertTrue(first.isClosed());
+        Connection third = pool.getConnection();
+        Assert.assertEquals(2, physicalConnections.size());
+
+        second.close();
+        third.close();
+        verify(physicalConnections.get(0), never()).close();
+        verify(physicalConnections.get(1), never()).close();
+    }
+
+    @Test
+    public void testStatementCacheReuseAndEviction() throws SQLException {
+        JdbcConnectionPool pool = createPool(1, 2);
+        Connection connection = pool.getConnection();
+        PreparedStatement statementA = connection.prepareStatement("a");
+        statementA.close();
+        connection.prepareStatement("b").close();
+
+        PreparedStatement reusedA = connection.prepareStatement("a");
+        reusedA.setFetchSize(100);
+        reusedA.close();
+        Connection physical = physicalConnections.get(0);
+        verify(physical, times(1)).prepareStatement("a");
+        PreparedStatement physicalA = lastPrepared(physical, "a");
+        verify(physicalA, never()).close();
+        verify(physicalA).clearParameters();
+        verify(physicalA).clearBatch();
+        verify(physicalA).setFetchSize(0);
+        verify(physicalA).setMaxRows(0);
+
+        // "b" is the least recently used statement, and is evicted by "c"
+        PreparedStatement physicalB = lastPrepared(physical, "b");
+        connection.prepareStatement("c").close();
+        verify(physicalB).close();
+        connection.prepareStatement("b").close();
+        verify(physical, times(2)).prepareStatement("b");
+        connection.close();
+    }
+
+    @Test
+    public void testValidationOnlyAfterFailure() throws SQLException {
+        JdbcConnectionPool pool = createPool(1, 10);
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection = pool.getConnection();
+        Connection physical = physicalConnections.get(0);
+        verify(physical, never()).isValid(anyInt());
+
+        when(physical.createStatement()).thenThrow(new SQLException("Connection reset"));
+        try {
+            connection.createStatement();
+            Assert.fail("Expected SQLException");
+        } catch (SQLException ignored) {
+        }
+        connection.close();
+
+        when(physical.isValid(anyInt())).thenReturn(false);
+        pool.getConnection().close();
+        verify(physical).isValid(anyInt());
+        verify(physical).close();
+        Assert.assertEquals(2, physicalConnections.size());
+    }
+
+    @Test
+    public void testClose() throws SQLException {
+        JdbcConnectionPool pool = createPool(2, 10);
+        Connection idle = pool.getConnection();
+        Connection active = pool.getConnection();
+        idle.close();
+
+        pool.close();
+        verify(physicalConnections.get(0)).close();
+        verify(physicalConnections.get(1), never()).close();
+
+        active.close();
+        verify(physicalConnections.get(1)).close();
+
+        try {
+            pool.getConnection();
+            Assert.fail("Expected SQLException");
+        } catch (SQLException e) {
+            Assert.assertFalse(e instanceof SQLTimeoutException);
+        }
+    }
+
+    private JdbcConnectionPool createPool(int maxSize, int maxStatements) {
+        return JdbcConnectionPool.builder()
+                .connectionFactory(this::createConnection)
+                .maxSize(maxSize)
+                .maxStatementsPerConnection(maxStatements)
+                .acquireTimeout(Duration.ofMillis(100))
+                .build();
+    }
+
+    private Connection createConnection() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        Map<String, PreparedStatement> statements = new HashMap<>();
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+            PreparedStatement statement = mock(PreparedStatement.class);
+            statements.put(invocation.getArgument(0), statement);
+            return statement;
+        });
+        preparedStatements.put(connection, statements);
+        physicalConnections.add(connection);
+        return connection;
+    }
+
+    private PreparedStatement lastPrepared(Connection connection, String sql) {
+        return preparedStatements.get(connection).get(sql);
+    }
+}
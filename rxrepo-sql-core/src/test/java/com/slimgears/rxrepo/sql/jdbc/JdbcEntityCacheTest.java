@@ -0,0 +1,83 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.sql.Inventory;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+public class JdbcEntityCacheTest {
+    private static final String connectionUrl = "jdbc:h2:mem:entitycache;DB_CLOSE_DELAY=-1";
+    private Repository cachedRepository;
+    private Repository remoteRepository;
+
+    @After
+    public void tearDown() throws SQLException {
+        if (cachedRepository != null) {
+            cachedRepository.close();
+        }
+        if (remoteRepository != null) {
+            remoteRepository.close();
+        }
+        executeSql("drop schema if exists repository cascade");
+    }
+
+    @Test
+    public void testRemoteWriteInvalidatesCache() throws SQLException {
+        cachedRepository = JdbcRepository.builder()
+                .connection(connectionUrl)
+                .enableChangeLog(Duration.ofMillis(10), Duration.ofMillis(50))
+                .enableEntityCache(100, Inventory.metaClass)
+                .build();
+        remoteRepository = JdbcRepository.builder()
+                .connection(connectionUrl)
+                .enableChangeLog(Duration.ofMillis(10), Duration.ofMillis(50))
+                .build();
+        EntitySet<Integer, Inventory> cachedInventory = cachedRepository.entities(Inventory.metaClass);
+        EntitySet<Integer, Inventory> remoteInventory = remoteRepository.entities(Inventory.metaClass);
+
+        remoteInventory.update(1, inventory -> Maybe.just(Inventory.builder().id(1).name("a").build()))
+                .ignoreElement()
+                .blockingAwait();
+        Assert.assertEquals("a", cachedInventory.find(1).blockingGet().name());
+
+        // Written bypassing change log, so cached entity is not invalidated
+        executeSql("update repository.Inventory set \"name\" = 'b' where \"id\" = 1");
+        Assert.assertEquals("a", cachedInventory.find(1).blockingGet().name());
+
+        // Change log is polled from the moment the live query is started, so remote write is repeated until observed
+        Observable.interval(50, TimeUnit.MILLISECONDS)
+                .map(i -> {
+                    remoteInventory.update().set(Inventory.$.name, "c").where(Inventory.$.id.eq(1)).execute().blockingGet();
+                    return cachedInventory.find(1).blockingGet().name();
+                })
+                .filter("c"::equals)
+                .timeout(5, TimeUnit.SECONDS)
+                .blockingFirst();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEntityCacheWithoutChangeLogFails() {
+        JdbcRepository.builder()
+                .connection(connectionUrl)
+                .enableEntityCache(100, Inventory.metaClass)
+                .build();
+    }
+
+    private static void executeSql(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(connectionUrl);
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
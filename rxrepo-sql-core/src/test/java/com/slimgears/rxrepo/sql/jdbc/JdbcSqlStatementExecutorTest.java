@@ -0,0 +1,141 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlTypeMapper;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JdbcSqlStatementExecutorTest {
+    private static final String postgresInsert = "insert into repository.Product (id, name, price, \"__sequenceNum\") " +
+            "values (?, ?, ?, nextval('repository.generation'))";
+
+    @Test
+    public void testMultiRowInsertWithNestedParentheses() {
+        Optional<SqlStatement> statement = JdbcSqlStatementExecutor.toMultiRowInsert(Arrays.asList(
+                SqlStatement.create(postgresInsert, 1, "Product 1", 10),
+                SqlStatement.create(postgresInsert, 2, "Product 2", 20)));
+
+        Assert.assertTrue(statement.isPresent());
+        Assert.assertEquals(
+                "insert into repository.Product (id, name, price, \"__sequenceNum\") values " +
+                        "(?, ?, ?, nextval('repository.generation')), (?, ?, ?, nextval('repository.generation'))",
+                statement.get().statement());
+        Assert.assertArrayEquals(new Object[]{1, "Product 1", 10, 2, "Product 2", 20}, statement.get().args());
+    }
+
+    @Test
+    public void testMultiRowInsertSkipsQuotedParentheses() {
+        String insert = "insert into repository.Product (id, name) values (?, coalesce(?, ')('))";
+        Optional<SqlStatement> statement = JdbcSqlStatementExecutor.toMultiRowInsert(Arrays.asList(
+                SqlStatement.create(insert, 1, "Product 1"),
+                SqlStatement.create(insert, 2, "Product 2")));
+
+        Assert.assertTrue(statement.isPresent());
+        Assert.assertEquals(
+                "insert into repository.Product (id, name) values (?, coalesce(?, ')(')), (?, coalesce(?, ')('))",
+                statement.get().statement());
+    }
+
+    @Test
+    public void testUpsertIsNotRewritten() {
+        String upsert = postgresInsert + " on conflict(id) do update set price = excluded.price";
+        Assert.assertFalse(JdbcSqlStatementExecutor.toMultiRowInsert(Arrays.asList(
+                SqlStatement.create(upsert, 1, "Product 1", 10),
+                SqlStatement.create(upsert, 2, "Product 2", 20))).isPresent());
+    }
+
+    @Test
+    public void testBatchIsClearedOnFailure() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeBatch()).thenThrow(new SQLException("Batch failed"));
+        JdbcSqlStatementExecutor executor = new JdbcSqlStatementExecutor(() -> connection, mock(SqlTypeMapper.class), 1000, false);
+
+        String update = "update repository.Product set price = ? where id = ?";
+        executor.executeCommands(Arrays.asList(
+                SqlStatement.create(update, 10, 1),
+                SqlStatement.create(update, 20, 2)))
+                .test()
+                .assertError(Exception.class);
+
+        verify(preparedStatement).clearBatch();
+        verify(preparedStatement).close();
+        verify(connection).rollback();
+    }
+
+    @Test
+    public void testStreamingQueryReadsRowsAsRequested() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnName(1)).thenReturn("id");
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getObject(1)).thenReturn(1);
+        JdbcSqlStatementExecutor executor = new JdbcSqlStatementExecutor(() -> connection, mock(SqlTypeMapper.class), 1000, false, 10);
+
+        // Slow subscriber: rows are read from cursor only as requested, driver fetches them by fetch size
+        TestSubscriber<PropertyResolver> subscriber = executor
+                .executeStreamingQuery(SqlStatement.of("select id from repository.Product"))
+                .test(0);
+        verify(preparedStatement).setFetchSize(10);
+        verify(connection).setAutoCommit(false);
+        verify(resultSet, never()).next();
+
+        subscriber.request(5);
+        subscriber.assertValueCount(5);
+        verify(resultSet, times(5)).next();
+
+        subscriber.request(10);
+        subscriber.assertValueCount(15);
+        verify(resultSet, times(15)).next();
+
+        subscriber.dispose();
+        verify(resultSet).close();
+        verify(connection).rollback();
+        verify(connection).setAutoCommit(true);
+        verify(connection).close();
+    }
+
+    @Test
+    public void testStreamingQueryWithoutFetchSizeIsRegularQuery() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(false);
+        JdbcSqlStatementExecutor executor = new JdbcSqlStatementExecutor(() -> connection, mock(SqlTypeMapper.class));
+
+        executor.executeStreamingQuery(SqlStatement.of("select id from repository.Product"))
+                .test()
+                .assertNoValues()
+                .assertComplete();
+        verify(preparedStatement, never()).setFetchSize(anyInt());
+        verify(connection, never()).setAutoCommit(false);
+    }
+}
@@ -0,0 +1,115 @@
+package com.slimgears.rxrepo.sql.jdbc;
+
+import com.slimgears.rxrepo.sql.DefaultSqlExpressionGenerator;
+import com.slimgears.rxrepo.sql.DefaultSqlStatementProvider;
+import com.slimgears.rxrepo.sql.Product;
+import com.slimgears.rxrepo.sql.SqlChangeLog;
+import com.slimgears.rxrepo.sql.SqlChangeLogPoller;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlStatementExecutor;
+import com.slimgears.rxrepo.sql.SqlTypes;
+import io.reactivex.observers.TestObserver;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class SqlChangeLogPollerTest {
+    private static final String connectionUrl = "jdbc:h2:mem:changelog;DB_CLOSE_DELAY=-1";
+    private DefaultSqlStatementProvider statementProvider;
+    private SqlStatementExecutor statementExecutor;
+    private SqlChangeLog changeLog;
+
+    @Before
+    public void setUp() {
+        statementProvider = new DefaultSqlStatementProvider(new DefaultSqlExpressionGenerator(), SqlTypes.instance, () -> "repository");
+        statementExecutor = new JdbcSqlStatementExecutor(() -> DriverManager.getConnection(connectionUrl), SqlTypes.instance);
+        statementExecutor.executeCommand(statementProvider.forCreateSchema()).blockingAwait();
+        statementExecutor.executeCommand(statementProvider.forCreateChangeLog(Product.metaClass)).blockingAwait();
+        changeLog = SqlChangeLog.create(Duration.ofMillis(10), Duration.ofMillis(50));
+        changeLog.register(Product.metaClass, statementProvider);
+    }
+
+    @After
+    public void tearDown() {
+        statementExecutor.executeCommand(SqlStatement.of("drop schema repository cascade")).blockingAwait();
+    }
+
+    @Test
+    public void testChangeCommittedAfterLaterChangeIsNotSkipped() throws SQLException, InterruptedException {
+        SqlChangeLogPoller poller = SqlChangeLogPoller.create(statementExecutor, changeLog);
+        TestObserver<List<SqlChangeLogPoller.Change>> changes = poller
+                .changes(changeLog.table("repository.Product").orElseThrow(AssertionError::new))
+                .test();
+
+        try (Connection firstWriter = DriverManager.getConnection(connectionUrl);
+             Connection secondWriter = DriverManager.getConnection(connectionUrl)) {
+            firstWriter.setAutoCommit(false);
+            secondWriter.setAutoCommit(false);
+
+            // First writer allocates lower change id, but commits after the second one
+            logChangeMarker(firstWriter, 1);
+            logChangeMarker(secondWriter, 2);
+            secondWriter.commit();
+
+            changes.awaitCount(1);
+            Assert.assertEquals(Collections.singletonList(2), keysOf(changes.values().get(0)));
+
+            firstWriter.commit();
+            changes.awaitCount(2);
+            Assert.assertEquals(Collections.singletonList(1), keysOf(changes.values().get(1)));
+        }
+
+        changes.dispose();
+    }
+
+    @Test
+    public void testChangeLogWithoutLiveQueriesIsCompacted() throws SQLException, InterruptedException {
+        SqlChangeLog changeLog = SqlChangeLog.create(Duration.ofMillis(10), Duration.ofMillis(50), 1000, Duration.ofMillis(200));
+        changeLog.register(Product.metaClass, statementProvider);
+
+        try (Connection writer = DriverManager.getConnection(connectionUrl)) {
+            logChangeMarker(writer, 1);
+        }
+        changeLog.compact(statementExecutor).blockingAwait();
+        Assert.assertEquals(1, countChangeLogRows());
+
+        Thread.sleep(300);
+        try (Connection writer = DriverManager.getConnection(connectionUrl)) {
+            logChangeMarker(writer, 2);
+        }
+        changeLog.compact(statementExecutor).blockingAwait();
+        Assert.assertEquals(1, countChangeLogRows());
+    }
+
+    private long countChangeLogRows() {
+        return statementExecutor
+                .executeQuery(SqlStatement.of("select * from " + statementProvider.changeLogTableName(Product.metaClass)))
+                .count()
+                .blockingGet();
+    }
+
+    private void logChangeMarker(Connection connection, int key) throws SQLException {
+        SqlStatement statement = statementProvider.forLogChangeMarkers(Product.metaClass, Collections.singletonList(key));
+        try (PreparedStatement preparedStatement = connection.prepareStatement(statement.statement())) {
+            preparedStatement.setObject(1, key);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    private static List<Object> keysOf(List<SqlChangeLogPoller.Change> changes) {
+        return changes.stream()
+                .map(SqlChangeLogPoller.Change::key)
+                .collect(Collectors.toList());
+    }
+}
@@ -452,6 +452,52 @@ public abstract class AbstractRepositoryTest {
                 .assertValueCount(113);
     }
 
+    @Test
+    public void testInsertThenRetrievePages() throws InterruptedException {
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        productSet.update(Products.createMany(100))
+                .test()
+                .await()
+                .assertNoErrors();
+
+        List<Product> retrieved = new ArrayList<>();
+        ContinuationToken token = null;
+        int pageCount = 0;
+        do {
+            Page<Product> page = productSet.query()
+                    .where(Product.$.type.in(ProductEntity.Type.ComputerSoftware, ProductEntity.Type.ComputeHardware))
+                    .orderByDescending(Product.$.price)
+                    .retrievePage(token, 15)
+                    .test()
+                    .await()
+                    .assertNoErrors()
+                    .values()
+                    .get(0);
+            Assert.assertTrue(page.items().size() <= 15);
+            retrieved.addAll(page.items());
+            // Tokens are passed to clients as strings
+            token = page.next() != null ? ContinuationToken.parse(page.next().toString()) : null;
+            ++pageCount;
+        } while (token != null);
+
+        Assert.assertEquals(66, retrieved.size());
+        Assert.assertEquals(5, pageCount);
+        Assert.assertEquals(66, retrieved.stream().map(Product::key).distinct().count());
+        for (int i = 1; i < retrieved.size(); ++i) {
+            Assert.assertTrue(retrieved.get(i - 1).price() >= retrieved.get(i).price());
+        }
+    }
+
+    @Test
+    public void testRetrievePageSortedByNullablePropertyFails() {
+        repository.entities(Product.metaClass)
+                .query()
+                .orderBy(Product.$.name)
+                .retrievePage(15)
+                .test()
+                .assertError(IllegalArgumentException.class);
+    }
+
     @Test
     @UseLogLevel(LogLevel.TRACE)
     public void testInsertThenSearch() throws InterruptedException {
@@ -557,6 +603,72 @@ public abstract class AbstractRepositoryTest {
                 .assertValue(l -> l.get(0).inventory() == null);
     }
 
+    @Test
+    public void testObserveAsListChanges() {
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(20));
+        productSet.update(productList).blockingAwait();
+
+        TestObserver<List<Product>> listObserver = productSet.query()
+                .orderBy(Product.$.price)
+                .orderBy(Product.$.key.id)
+                .limit(5)
+                .liveSelect()
+                .observeAs(Notifications.toListChanges())
+                .scan(Collections.<Product>emptyList(), AbstractRepositoryTest::applyListChanges)
+                .skip(1)
+                .test()
+                .assertOf(countAtLeast(1));
+
+        Supplier<List<Product>> expected = () -> productSet.query()
+                .orderBy(Product.$.price)
+                .orderBy(Product.$.key.id)
+                .limit(5)
+                .retrieve()
+                .toList()
+                .blockingGet();
+
+        listObserver.assertValueAt(0, expected.get());
+
+        Product first = listObserver.values().get(0).get(0);
+        productSet.update(first.toBuilder().price(10000).build()).ignoreElement().blockingAwait();
+        listObserver.assertOf(countAtLeast(2)).assertValueAt(1, expected.get());
+
+        productSet.delete().where(Product.$.key.eq(listObserver.values().get(1).get(2).key())).execute().blockingGet();
+        listObserver.assertOf(countAtLeast(3)).assertValueAt(2, expected.get());
+    }
+
+    @Test
+    public void testObserveAsTopList() {
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        productSet.update(Products.createMany(20)).blockingAwait();
+
+        TestObserver<List<Product>> listObserver = productSet.query()
+                .orderBy(Product.$.price)
+                .orderBy(Product.$.key.id)
+                .limit(4)
+                .liveSelect()
+                .observeAs(Notifications.toTopList())
+                .test()
+                .assertOf(countAtLeast(1));
+
+        Supplier<List<Product>> expected = () -> productSet.query()
+                .orderBy(Product.$.price)
+                .orderBy(Product.$.key.id)
+                .limit(4)
+                .retrieve()
+                .toList()
+                .blockingGet();
+
+        listObserver.assertValueAt(0, expected.get());
+
+        for (int i = 1; i <= 5; ++i) {
+            Product first = listObserver.values().get(i - 1).get(0);
+            productSet.delete().where(Product.$.key.eq(first.key())).execute().blockingGet();
+            listObserver.assertOf(countAtLeast(i + 1)).assertValueAt(i, expected.get());
+        }
+    }
+
     @Test
     @UseLogLevel(LogLevel.TRACE)
     public void testObserveCountThenDelete() throws InterruptedException {
@@ -1743,4 +1855,39 @@ public abstract class AbstractRepositoryTest {
                 .assertValueAt(1, NotificationPrototype::isDelete);
 
     }
+
+    @Test
+    public void testPreparedQuery() {
+        List<Product> productList = Products.createMany(100);
+        products.update(productList).blockingAwait();
+
+        PreparedQuery<Product> query = products.prepare(q -> q
+                .where(Product.$.price.greaterThan(QueryParameter.of(0))
+                        .and(Product.$.price.lessThan(QueryParameter.of(1))))
+                .select());
+
+        Arrays.asList(100, 125, 150, 175).forEach(minPrice -> {
+            int maxPrice = minPrice + 50;
+            long expectedCount = productList.stream().filter(p -> p.price() > minPrice && p.price() < maxPrice).count();
+            Assert.assertEquals(Long.valueOf(expectedCount), query.count(minPrice, maxPrice).blockingGet());
+            Assert.assertEquals(expectedCount, query.retrieveAsList(minPrice, maxPrice).blockingGet().size());
+        });
+
+        PreparedQuery<Product> byKey = products.prepare(q -> q.where(Product.$.key.eq(QueryParameter.of(0))).select());
+        Assert.assertEquals(productList.get(7).key(), byKey.first(productList.get(7).key()).blockingGet().key());
+        byKey.first(UniqueId.productId(1000)).test().assertNoValues().assertComplete();
+    }
+
+    private static <T> List<T> applyListChanges(List<T> list, List<ListChange<T>> changes) {
+        List<T> result = new ArrayList<>(list);
+        changes.forEach(change -> {
+            switch (change.type()) {
+                case Insert: result.add(change.index(), change.value()); break;
+                case Remove: result.remove(change.index()); break;
+                case Update: result.set(change.index(), change.value()); break;
+                case Move: result.remove(requireNonNull(change.previousIndex()).intValue()); result.add(change.index(), change.value()); break;
+            }
+        });
+        return ImmutableList.copyOf(result);
+    }
 }